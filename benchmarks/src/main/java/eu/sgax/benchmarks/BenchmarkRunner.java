@@ -0,0 +1,59 @@
+package eu.sgax.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto de entrada de {@code benchmarks.jar}. Acepta las mismas opciones que la línea de comandos de JMH
+ * y, salvo que se indique otra cosa con {@code -rf} o {@code -rff}, guarda los resultados en JSON en
+ * {@code results/jmh-<fecha>.json} para poder compararlos entre versiones.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public final class BenchmarkRunner {
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListWithParams() || cmd.shouldListProfilers()
+                || cmd.shouldListResultFormats()) {
+            // La ayuda y los listados los resuelve el lanzador de JMH
+            Main.main(args);
+            return;
+        }
+
+        // Los servidores embebidos registran cada conexión; solo interesan los avisos
+        List<String> jvmArgs = new ArrayList<>(cmd.getJvmArgsAppend().orElse(List.of()));
+        jvmArgs.add(0, "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn");
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(cmd)
+                .jvmArgsAppend(jvmArgs.toArray(new String[0]));
+        if (cmd.getResultFormat().hasValue() || cmd.getResult().hasValue()) {
+            new Runner(options.build()).run();
+            return;
+        }
+
+        Path results = Path.of("results");
+        Files.createDirectories(results);
+        Path file = results.resolve("jmh-" + LocalDateTime.now().format(TIMESTAMP) + ".json");
+        options.resultFormat(ResultFormatType.JSON).result(file.toString());
+        new Runner(options.build()).run();
+        System.out.println("Resultados guardados en " + file.toAbsolutePath());
+    }
+}
@@ -0,0 +1,77 @@
+package eu.sgax.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.ftpserver.ftplet.FtpException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import eu.sgax.benchmarks.servers.LocalFtpServer;
+import eu.sgax.connect.ftp.FTPConnect;
+import eu.sgax.connect.ftp.FTPDownloader;
+import eu.sgax.connect.ftp.FTPUploader;
+
+/**
+ * Subidas y descargas con {@link FTPUploader} y {@link FTPDownloader} contra un servidor FTP embebido.
+ * Cada cliente mantiene su propia sesión FTP durante toda la medición.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class FtpBenchmark extends TransferBenchmark {
+
+    @Param({"1024", "1048576", "104857600", "1073741824"})
+    public long size;
+
+    private LocalFtpServer server;
+    private FTPConnect[] clients;
+    private Path source;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, FtpException {
+        startWorkers("bench-ftp-client", size * (2L * concurrency + 2));
+        server = LocalFtpServer.start(concurrency);
+        source = TempFiles.create(workDir, size);
+        // Archivo remoto que leen las descargas
+        Files.copy(source, server.getRoot().resolve("source.bin"));
+
+        clients = new FTPConnect[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            clients[i] = new FTPConnect("127.0.0.1", server.getPort(), LocalFtpServer.USER, LocalFtpServer.PASSWORD);
+            clients[i].connect();
+        }
+    }
+
+    @Benchmark
+    public void upload(Bytes counter) throws Exception {
+        runConcurrently(i -> new FTPUploader(clients[i]).uploadFile(source, "upload-" + i + ".bin"));
+        counter.bytes += size * concurrency;
+    }
+
+    @Benchmark
+    public void download(Bytes counter) throws Exception {
+        runConcurrently(i -> new FTPDownloader(clients[i]).downloadFile("source.bin",
+                workDir.resolve("download-" + i + ".bin")));
+        counter.bytes += size * concurrency;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (clients != null) {
+            for (FTPConnect client : clients) {
+                if (client != null && client.isConnected()) {
+                    client.disconnect();
+                }
+            }
+        }
+        if (server != null) {
+            server.close();
+        }
+        stopWorkers();
+    }
+}
@@ -0,0 +1,161 @@
+package eu.sgax.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.icegreen.greenmail.store.FolderException;
+import com.icegreen.greenmail.user.GreenMailUser;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+import eu.sgax.connect.mail.ReadMail;
+import eu.sgax.connect.mail.SendMail;
+
+import jakarta.activation.DataHandler;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import jakarta.mail.util.ByteArrayDataSource;
+
+/**
+ * Envío con {@link SendMail} y lectura IMAP y POP3 con {@link ReadMail} contra GreenMail.
+ * Los mensajes llevan un adjunto del tamaño indicado; los tamaños se limitan a 10 MB porque GreenMail guarda
+ * el correo en memoria. Para la lectura cada cliente mantiene su conexión y descarga el último mensaje con su
+ * adjunto.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class MailBenchmark extends TransferBenchmark {
+
+    private static final String USER = "bench";
+    private static final String PASSWORD = "bench";
+    private static final String INBOX = "bench@localhost";
+    private static final String SINK = "sink@localhost";
+
+    @Param({"1024", "1048576", "10485760"})
+    public int size;
+
+    private GreenMail greenMail;
+    private GreenMailUser sink;
+    private SendMail sender;
+    private MimeMessage[] messages;
+    private ReadMail[] imapClients;
+    private ReadMail[] pop3Clients;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, MessagingException {
+        startWorkers("bench-mail", 4L * size * concurrency);
+        greenMail = new GreenMail(ServerSetup.dynamicPort(ServerSetupTest.SMTP_POP3_IMAP));
+        greenMail.start();
+        greenMail.setUser(INBOX, USER, PASSWORD);
+        sink = greenMail.setUser(SINK, "sink", PASSWORD);
+
+        sender = new SendMail("127.0.0.1", greenMail.getSmtp().getPort(), USER, PASSWORD, false, false);
+        sender.enableConnectionReuse(concurrency, 0, Duration.ofMinutes(5));
+
+        // Un mensaje por cliente: el envío modifica las cabeceras del mensaje
+        messages = new MimeMessage[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            messages[i] = buildMessage(SINK, i);
+        }
+        // Mensaje que leen los clientes IMAP y POP3
+        sender.send(buildMessage(INBOX, 0));
+
+        imapClients = new ReadMail[concurrency];
+        pop3Clients = new ReadMail[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            imapClients[i] = new ReadMail("127.0.0.1", greenMail.getImap().getPort(), USER, PASSWORD, false, "imap");
+            imapClients[i].connect();
+            pop3Clients[i] = new ReadMail("127.0.0.1", greenMail.getPop3().getPort(), USER, PASSWORD, false, "pop3");
+            pop3Clients[i].connect();
+        }
+    }
+
+    @Benchmark
+    public void send(Bytes counter) throws Exception {
+        runConcurrently(i -> sender.send(messages[i]));
+        counter.bytes += (long) size * concurrency;
+    }
+
+    @Benchmark
+    public void readImap(Bytes counter, Blackhole blackhole) throws Exception {
+        runConcurrently(i -> read(imapClients[i], workDir.resolve("imap-" + i), blackhole));
+        counter.bytes += (long) size * concurrency;
+    }
+
+    @Benchmark
+    public void readPop3(Bytes counter, Blackhole blackhole) throws Exception {
+        runConcurrently(i -> read(pop3Clients[i], workDir.resolve("pop3-" + i), blackhole));
+        counter.bytes += (long) size * concurrency;
+    }
+
+    // Vaciar el buzón que recibe los envíos para no agotar la memoria de GreenMail
+    @TearDown(Level.Iteration)
+    public void purgeSink() throws FolderException {
+        greenMail.getManagers().getImapHostManager().getInbox(sink).deleteAllMessages();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, MessagingException {
+        for (ReadMail[] clients : List.of(imapClients, pop3Clients)) {
+            for (ReadMail client : clients) {
+                if (client != null && client.isConnected()) {
+                    client.disconnect();
+                }
+            }
+        }
+        if (sender != null) {
+            sender.close();
+        }
+        if (greenMail != null) {
+            greenMail.stop();
+        }
+        stopWorkers();
+    }
+
+    private static void read(ReadMail client, Path directory, Blackhole blackhole)
+            throws MessagingException, IOException {
+        for (ReadMail.EmailMessage email : client.getMessages(1)) {
+            blackhole.consume(email.getTextBody());
+            client.downloadAllAttachments(email, directory);
+        }
+    }
+
+    private MimeMessage buildMessage(String to, int index) throws MessagingException {
+        MimeMessage message = new MimeMessage(sender.getSession());
+        message.setFrom(INBOX);
+        message.setRecipients(Message.RecipientType.TO, to);
+        message.setSubject("Benchmark " + index);
+
+        MimeBodyPart text = new MimeBodyPart();
+        text.setText("Mensaje de prueba", "UTF-8");
+        byte[] content = new byte[size];
+        new Random(index).nextBytes(content);
+        MimeBodyPart attachment = new MimeBodyPart();
+        attachment.setDataHandler(new DataHandler(new ByteArrayDataSource(content, "application/octet-stream")));
+        attachment.setFileName("adjunto-" + index + ".bin");
+        attachment.setDisposition(Part.ATTACHMENT);
+
+        MimeMultipart multipart = new MimeMultipart("mixed");
+        multipart.addBodyPart(text);
+        multipart.addBodyPart(attachment);
+        message.setContent(multipart);
+        message.saveChanges();
+        return message;
+    }
+}
@@ -0,0 +1,159 @@
+package eu.sgax.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import eu.sgax.connect.mail.MimeStructureParser;
+
+import jakarta.activation.DataHandler;
+import jakarta.mail.BodyPart;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import jakarta.mail.util.ByteArrayDataSource;
+
+/**
+ * Compara el recorrido de la estructura de un mensaje con {@code Part.getContent()}, como hace
+ * {@code ReadMail.parseContent}, frente a {@link MimeStructureParser} sobre los mismos bytes.
+ * Ambos extraen los cuerpos de texto y HTML y localizan los adjuntos sin decodificarlos.
+ *
+ * <p>Para ver la memoria asignada por operación ejecutar con {@code -prof gc}.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MimeParsingBenchmark {
+
+    @Param({"16384", "1048576"})
+    public int attachmentSize;
+
+    @Param({"1", "4"})
+    public int attachments;
+
+    private Session session;
+    private byte[] raw;
+
+    @Setup
+    public void setUp() throws MessagingException, IOException {
+        session = Session.getInstance(new Properties());
+        raw = buildMessage(session, attachmentSize, attachments);
+    }
+
+    @Benchmark
+    public void jakartaMailGetContent(Blackhole blackhole) throws MessagingException, IOException {
+        MimeMessage message = new MimeMessage(session, new ByteArrayInputStream(raw));
+        walk(message, blackhole);
+    }
+
+    @Benchmark
+    public void streamingParser(Blackhole blackhole) throws MessagingException, IOException {
+        walk(MimeStructureParser.parse(raw), blackhole);
+    }
+
+    // Mismo criterio que ReadMail.parseContent
+    private static void walk(Part part, Blackhole blackhole) throws MessagingException, IOException {
+        if (part.isMimeType("text/plain") || part.isMimeType("text/html")) {
+            blackhole.consume(part.getContent().toString());
+        } else if (part.isMimeType("multipart/*")) {
+            Multipart multipart = (Multipart) part.getContent();
+            for (int i = 0; i < multipart.getCount(); i++) {
+                BodyPart bodyPart = multipart.getBodyPart(i);
+                String disposition = bodyPart.getDisposition();
+                if (disposition != null && (disposition.equalsIgnoreCase(Part.ATTACHMENT)
+                        || disposition.equalsIgnoreCase(Part.INLINE))) {
+                    blackhole.consume(bodyPart.getFileName());
+                    blackhole.consume(bodyPart.getContentType());
+                    blackhole.consume(bodyPart.getSize());
+                } else {
+                    walk(bodyPart, blackhole);
+                }
+            }
+        }
+    }
+
+    private static void walk(MimeStructureParser.MimePart part, Blackhole blackhole)
+            throws MessagingException, IOException {
+        if (part.isMimeType("text/plain") || part.isMimeType("text/html")) {
+            blackhole.consume(part.getText());
+        } else if (part.isMultipart()) {
+            for (MimeStructureParser.MimePart child : part.getChildren()) {
+                String disposition = child.getDisposition();
+                if (disposition != null && (disposition.equalsIgnoreCase(Part.ATTACHMENT)
+                        || disposition.equalsIgnoreCase(Part.INLINE))) {
+                    blackhole.consume(child.getFileName());
+                    blackhole.consume(child.getContentTypeHeader());
+                    blackhole.consume(child.getBodyLength());
+                } else {
+                    walk(child, blackhole);
+                }
+            }
+        }
+    }
+
+    // Mensaje multipart/mixed con texto y HTML alternativos y adjuntos binarios en base64
+    static byte[] buildMessage(Session session, int attachmentSize, int attachments)
+            throws MessagingException, IOException {
+        MimeMessage message = new MimeMessage(session);
+        message.setFrom("bench@example.com");
+        message.setRecipients(Message.RecipientType.TO, "inbox@example.com");
+        message.setSubject("Benchmark");
+
+        MimeMultipart alternative = new MimeMultipart("alternative");
+        MimeBodyPart text = new MimeBodyPart();
+        text.setText("Línea de prueba con acentos: áéíóú ñ €\r\n".repeat(200), "UTF-8", "plain");
+        MimeBodyPart html = new MimeBodyPart();
+        html.setText("<p>Línea de prueba con <b>acentos</b>: áéíóú ñ €</p>\r\n".repeat(200), "UTF-8", "html");
+        alternative.addBodyPart(text);
+        alternative.addBodyPart(html);
+
+        MimeMultipart mixed = new MimeMultipart("mixed");
+        MimeBodyPart body = new MimeBodyPart();
+        body.setContent(alternative);
+        mixed.addBodyPart(body);
+
+        Random random = new Random(42);
+        for (int i = 0; i < attachments; i++) {
+            byte[] content = new byte[attachmentSize];
+            random.nextBytes(content);
+            MimeBodyPart attachment = new MimeBodyPart();
+            attachment.setDataHandler(new DataHandler(new ByteArrayDataSource(content, "application/octet-stream")));
+            attachment.setFileName("adjunto-" + i + ".bin");
+            attachment.setDisposition(Part.ATTACHMENT);
+            mixed.addBodyPart(attachment);
+        }
+        message.setContent(mixed);
+        message.saveChanges();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(attachmentSize * attachments * 2 + 65536);
+        message.writeTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,96 @@
+package eu.sgax.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import eu.sgax.benchmarks.servers.LocalS3Server;
+import eu.sgax.connect.s3.S3Connect;
+import eu.sgax.connect.s3.S3Downloader;
+import eu.sgax.connect.s3.S3Uploader;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+
+/**
+ * Subidas y descargas con {@link S3Uploader} y {@link S3Downloader} contra un servidor local compatible con S3.
+ * El cliente S3 es seguro entre hilos, así que todas las transferencias simultáneas lo comparten, como haría
+ * una aplicación. {@code uploadStream} pasa a carga multiparte cuando el contenido supera el tamaño de parte.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class S3Benchmark extends TransferBenchmark {
+
+    private static final String BUCKET = "bench";
+
+    @Param({"1024", "1048576", "104857600", "1073741824"})
+    public long size;
+
+    private LocalS3Server server;
+    private S3Connect connect;
+    private S3Uploader uploader;
+    private S3Downloader downloader;
+    private Path source;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        startWorkers("bench-s3-client", size * (3L * concurrency + 2));
+        server = LocalS3Server.start(Math.max(8, concurrency * 2));
+        source = TempFiles.create(workDir, size);
+
+        connect = new S3Connect(Region.US_EAST_1,
+                StaticCredentialsProvider.create(AwsBasicCredentials.create("bench", "bench")), server.getEndpoint());
+        connect.getClient().createBucket(CreateBucketRequest.builder().bucket(BUCKET).build());
+        uploader = new S3Uploader(connect.getClient());
+        downloader = new S3Downloader(connect.getClient());
+        // Objeto que leen las descargas
+        uploader.upload(BUCKET, "source.bin", source);
+    }
+
+    @Benchmark
+    public void upload(Bytes counter) throws Exception {
+        runConcurrently(i -> uploader.upload(BUCKET, "upload-" + i + ".bin", source));
+        counter.bytes += size * concurrency;
+    }
+
+    @Benchmark
+    public void uploadStream(Bytes counter) throws Exception {
+        runConcurrently(i -> {
+            try (InputStream input = Files.newInputStream(source)) {
+                uploader.uploadStream(BUCKET, "stream-" + i + ".bin", input, "application/octet-stream");
+            }
+        });
+        counter.bytes += size * concurrency;
+    }
+
+    @Benchmark
+    public void download(Bytes counter) throws Exception {
+        runConcurrently(i -> {
+            Path target = workDir.resolve("download-" + i + ".bin");
+            Files.deleteIfExists(target);
+            downloader.download(BUCKET, "source.bin", target);
+        });
+        counter.bytes += size * concurrency;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (connect != null) {
+            connect.getClient().close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        stopWorkers();
+    }
+}
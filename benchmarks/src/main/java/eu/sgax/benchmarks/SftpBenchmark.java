@@ -0,0 +1,78 @@
+package eu.sgax.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.jcraft.jsch.JSchException;
+
+import eu.sgax.benchmarks.servers.LocalSftpServer;
+import eu.sgax.connect.sftp.SFTPConnect;
+import eu.sgax.connect.sftp.SFTPDownloader;
+import eu.sgax.connect.sftp.SFTPUploader;
+
+/**
+ * Subidas y descargas con {@link SFTPUploader} y {@link SFTPDownloader} contra un servidor SFTP embebido
+ * (Apache MINA SSHD). Cada cliente mantiene su propia sesión SSH durante toda la medición.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class SftpBenchmark extends TransferBenchmark {
+
+    @Param({"1024", "1048576", "104857600", "1073741824"})
+    public long size;
+
+    private LocalSftpServer server;
+    private SFTPConnect[] clients;
+    private Path source;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, JSchException {
+        startWorkers("bench-sftp-client", size * (2L * concurrency + 2));
+        server = LocalSftpServer.start();
+        source = TempFiles.create(workDir, size);
+        // Archivo remoto que leen las descargas
+        Files.copy(source, server.getRoot().resolve("source.bin"));
+
+        clients = new SFTPConnect[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            clients[i] = new SFTPConnect("127.0.0.1", server.getPort(), LocalSftpServer.USER, LocalSftpServer.PASSWORD);
+            clients[i].connect();
+        }
+    }
+
+    @Benchmark
+    public void upload(Bytes counter) throws Exception {
+        runConcurrently(i -> new SFTPUploader(clients[i]).uploadFile(source, "/upload-" + i + ".bin"));
+        counter.bytes += size * concurrency;
+    }
+
+    @Benchmark
+    public void download(Bytes counter) throws Exception {
+        runConcurrently(i -> new SFTPDownloader(clients[i]).downloadFile("/source.bin",
+                workDir.resolve("download-" + i + ".bin")));
+        counter.bytes += size * concurrency;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (clients != null) {
+            for (SFTPConnect client : clients) {
+                if (client != null) {
+                    client.disconnect();
+                }
+            }
+        }
+        if (server != null) {
+            server.close();
+        }
+        stopWorkers();
+    }
+}
@@ -0,0 +1,74 @@
+package eu.sgax.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Archivos temporales para las mediciones.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public final class TempFiles {
+
+    private TempFiles() {
+    }
+
+    /**
+     * Crea un archivo del tamaño indicado con contenido pseudoaleatorio (no comprimible).
+     * Se escribe un bloque de 1 MB repetido para que los archivos grandes se creen rápido.
+     *
+     * @param directory directorio donde crearlo
+     * @param size tamaño en bytes
+     * @return ruta del archivo
+     * @throws IOException si ocurre un error al escribir
+     */
+    public static Path create(Path directory, long size) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve("data-" + size + ".bin");
+        if (Files.exists(file) && Files.size(file) == size) {
+            return file;
+        }
+        byte[] block = new byte[(int) Math.min(size, 1024 * 1024)];
+        new Random(size).nextBytes(block);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long written = 0;
+            while (written < size) {
+                ByteBuffer buffer = ByteBuffer.wrap(block, 0, (int) Math.min(block.length, size - written));
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Borra un directorio y su contenido, ignorando los archivos que ya no existen.
+     *
+     * @param directory directorio a borrar
+     * @throws IOException si ocurre un error al recorrerlo
+     */
+    public static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    // Ignorar archivos que no se pueden borrar
+                }
+            });
+        }
+    }
+}
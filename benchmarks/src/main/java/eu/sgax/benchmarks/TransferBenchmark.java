@@ -0,0 +1,127 @@
+package eu.sgax.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Base de las mediciones de transferencia contra servidores locales.
+ * Cada operación lanza {@code concurrency} transferencias simultáneas, una por cliente, y espera a que
+ * terminen; así el modo {@code Throughput} da operaciones por unidad de tiempo y el modo {@code SampleTime}
+ * la latencia de un lote completo. El contador auxiliar {@link Bytes} añade los bytes transferidos.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public abstract class TransferBenchmark {
+
+    @Param({"1", "4", "16", "64"})
+    public int concurrency;
+
+    protected Path workDir;
+    private ExecutorService executor;
+
+    /**
+     * Crea el directorio de trabajo y los hilos de los clientes.
+     *
+     * @param name prefijo del directorio de trabajo
+     * @param requiredBytes espacio en disco que necesita la medición
+     * @throws IOException si no hay espacio suficiente o no se puede crear el directorio
+     */
+    protected void startWorkers(String name, long requiredBytes) throws IOException {
+        workDir = Files.createTempDirectory(name);
+        long usable = Files.getFileStore(workDir).getUsableSpace();
+        if (usable < requiredBytes) {
+            TempFiles.deleteRecursively(workDir);
+            throw new IOException("Espacio en disco insuficiente: se necesitan " + requiredBytes
+                    + " bytes y hay " + usable);
+        }
+        executor = Executors.newFixedThreadPool(concurrency);
+    }
+
+    /**
+     * Ejecuta una tarea por cliente en paralelo y espera a que terminen todas.
+     *
+     * @param worker tarea a ejecutar con el índice del cliente
+     * @throws Exception el primer error de las tareas
+     */
+    protected void runConcurrently(Worker worker) throws Exception {
+        if (concurrency == 1) {
+            worker.run(0);
+            return;
+        }
+        List<Future<Void>> futures = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                worker.run(index);
+                return null;
+            }));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /**
+     * Detiene los hilos y borra el directorio de trabajo.
+     *
+     * @throws IOException si ocurre un error al borrar
+     */
+    protected void stopWorkers() throws IOException {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (workDir != null) {
+            TempFiles.deleteRecursively(workDir);
+        }
+    }
+
+    // Tarea de un cliente
+    @FunctionalInterface
+    protected interface Worker {
+        void run(int index) throws Exception;
+    }
+
+    // Bytes transferidos, informados por JMH como tasa junto a las operaciones
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+}
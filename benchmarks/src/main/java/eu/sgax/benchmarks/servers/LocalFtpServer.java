@@ -0,0 +1,101 @@
+package eu.sgax.benchmarks.servers;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.ftpserver.ConnectionConfigFactory;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.UserManager;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+
+import eu.sgax.benchmarks.TempFiles;
+
+/**
+ * Servidor FTP embebido (Apache FtpServer) sobre un directorio temporal, para las mediciones.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class LocalFtpServer implements AutoCloseable {
+
+    public static final String USER = "bench";
+    public static final String PASSWORD = "bench";
+
+    private final Path root;
+    private final int port;
+    private final FtpServer server;
+
+    private LocalFtpServer(Path root, int port, FtpServer server) {
+        this.root = root;
+        this.port = port;
+        this.server = server;
+    }
+
+    /**
+     * Arranca el servidor en un puerto libre de localhost.
+     *
+     * @param maxConnections número máximo de sesiones simultáneas
+     * @return servidor arrancado
+     * @throws IOException si no se puede crear el directorio raíz
+     * @throws FtpException si el servidor no arranca
+     */
+    public static LocalFtpServer start(int maxConnections) throws IOException, FtpException {
+        Path root = Files.createTempDirectory("bench-ftp");
+        int port = freePort();
+
+        FtpServerFactory factory = new FtpServerFactory();
+        ListenerFactory listener = new ListenerFactory();
+        listener.setServerAddress("127.0.0.1");
+        listener.setPort(port);
+        factory.addListener("default", listener.createListener());
+
+        ConnectionConfigFactory connections = new ConnectionConfigFactory();
+        connections.setMaxLogins(maxConnections + 8);
+        connections.setMaxThreads(maxConnections + 8);
+        factory.setConnectionConfig(connections.createConnectionConfig());
+
+        UserManager users = new PropertiesUserManagerFactory().createUserManager();
+        BaseUser user = new BaseUser();
+        user.setName(USER);
+        user.setPassword(PASSWORD);
+        user.setHomeDirectory(root.toString());
+        user.setAuthorities(List.of(new WritePermission(), new ConcurrentLoginPermission(0, 0)));
+        users.save(user);
+        factory.setUserManager(users);
+
+        FtpServer server = factory.createServer();
+        server.start();
+        return new LocalFtpServer(root, port, server);
+    }
+
+    // Puerto de control
+    public int getPort() {
+        return port;
+    }
+
+    // Directorio raíz del usuario
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.stop();
+        TempFiles.deleteRecursively(root);
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package eu.sgax.benchmarks.servers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import eu.sgax.benchmarks.TempFiles;
+
+/**
+ * Servidor local compatible con S3 para las mediciones, sobre el servidor HTTP del JDK.
+ * Implementa solo lo que usan {@code S3Uploader} y {@code S3Downloader} con acceso por ruta
+ * ({@code /bucket/clave}): crear bucket, PUT, GET, HEAD y DELETE de objetos y las cargas multiparte.
+ * Los objetos se guardan en un directorio temporal; no se validan firmas ni checksums.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class LocalS3Server implements AutoCloseable {
+
+    private final Path root;
+    private final Path uploads;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private LocalS3Server(Path root, HttpServer server, ExecutorService executor) {
+        this.root = root;
+        this.uploads = root.resolve(".uploads");
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Arranca el servidor en un puerto libre de localhost.
+     *
+     * @param threads hilos para atender peticiones simultáneas
+     * @return servidor arrancado
+     * @throws IOException si el servidor no arranca
+     */
+    public static LocalS3Server start(int threads) throws IOException {
+        Path root = Files.createTempDirectory("bench-s3");
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        LocalS3Server s3 = new LocalS3Server(root, server, executor);
+        Files.createDirectories(s3.uploads);
+        server.createContext("/", s3::handle);
+        server.setExecutor(executor);
+        server.start();
+        return s3;
+    }
+
+    // URI del endpoint para S3Connect
+    public URI getEndpoint() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        TempFiles.deleteRecursively(root);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), StandardCharsets.UTF_8);
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String[] parts = path.substring(1).split("/", 2);
+            String bucket = parts[0];
+            String key = parts.length > 1 ? parts[1] : "";
+            String method = exchange.getRequestMethod();
+
+            if (key.isEmpty()) {
+                // Crear o consultar bucket
+                Files.createDirectories(root.resolve(bucket));
+                drain(exchange);
+                respond(exchange, 200, null);
+            } else if (method.equals("POST") && query.containsKey("uploads")) {
+                createMultipart(exchange, bucket, key);
+            } else if (method.equals("PUT") && query.containsKey("uploadId")) {
+                uploadPart(exchange, query.get("uploadId"), Integer.parseInt(query.get("partNumber")));
+            } else if (method.equals("POST") && query.containsKey("uploadId")) {
+                completeMultipart(exchange, bucket, key, query.get("uploadId"));
+            } else if (method.equals("DELETE") && query.containsKey("uploadId")) {
+                TempFiles.deleteRecursively(uploads.resolve(query.get("uploadId")));
+                respond(exchange, 204, null);
+            } else if (method.equals("PUT")) {
+                Path target = object(bucket, key);
+                Files.createDirectories(target.getParent());
+                Path temp = Files.createTempFile(uploads, "put", ".tmp");
+                receive(exchange, temp);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                exchange.getResponseHeaders().add("ETag", etag(target));
+                respond(exchange, 200, null);
+            } else if (method.equals("GET") || method.equals("HEAD")) {
+                sendObject(exchange, object(bucket, key), method.equals("HEAD"));
+            } else if (method.equals("DELETE")) {
+                Files.deleteIfExists(object(bucket, key));
+                respond(exchange, 204, null);
+            } else {
+                respond(exchange, 405, null);
+            }
+        } catch (RuntimeException e) {
+            respond(exchange, 500, null);
+        }
+    }
+
+    private void createMultipart(HttpExchange exchange, String bucket, String key) throws IOException {
+        drain(exchange);
+        String uploadId = UUID.randomUUID().toString();
+        Files.createDirectories(uploads.resolve(uploadId));
+        respond(exchange, 200, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<InitiateMultipartUploadResult><Bucket>" + bucket + "</Bucket><Key>" + escape(key) + "</Key>"
+                + "<UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+    }
+
+    private void uploadPart(HttpExchange exchange, String uploadId, int partNumber) throws IOException {
+        Path part = uploads.resolve(uploadId).resolve(String.format("%05d", partNumber));
+        receive(exchange, part);
+        exchange.getResponseHeaders().add("ETag", etag(part));
+        respond(exchange, 200, null);
+    }
+
+    private void completeMultipart(HttpExchange exchange, String bucket, String key, String uploadId) throws IOException {
+        drain(exchange);
+        Path target = object(bucket, key);
+        Files.createDirectories(target.getParent());
+        Path directory = uploads.resolve(uploadId);
+        try (OutputStream out = Files.newOutputStream(target);
+             Stream<Path> parts = Files.list(directory)) {
+            for (Path part : (Iterable<Path>) parts.sorted()::iterator) {
+                Files.copy(part, out);
+            }
+        }
+        TempFiles.deleteRecursively(directory);
+        respond(exchange, 200, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<CompleteMultipartUploadResult><Bucket>" + bucket + "</Bucket><Key>" + escape(key) + "</Key>"
+                + "<ETag>" + etag(target) + "</ETag></CompleteMultipartUploadResult>");
+    }
+
+    private void sendObject(HttpExchange exchange, Path file, boolean headOnly) throws IOException {
+        if (!Files.exists(file)) {
+            respond(exchange, 404, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<Error><Code>NoSuchKey</Code><Message>No existe</Message></Error>");
+            return;
+        }
+        long size = Files.size(file);
+        exchange.getResponseHeaders().add("ETag", etag(file));
+        exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+        if (headOnly) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(size));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, size == 0 ? -1 : size);
+        try (OutputStream out = exchange.getResponseBody()) {
+            Files.copy(file, out);
+        }
+    }
+
+    // Guardar el cuerpo de la petición, decodificando aws-chunked si el SDK lo usa
+    private static void receive(HttpExchange exchange, Path target) throws IOException {
+        String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        String sha = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        boolean chunked = (encoding != null && encoding.contains("aws-chunked"))
+                || (sha != null && sha.startsWith("STREAMING-"));
+        try (InputStream in = exchange.getRequestBody();
+             OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            if (!chunked) {
+                in.transferTo(out);
+                return;
+            }
+            byte[] buffer = new byte[64 * 1024];
+            while (true) {
+                String header = readLine(in);
+                int separator = header.indexOf(';');
+                long chunkSize = Long.parseLong((separator < 0 ? header : header.substring(0, separator)).trim(), 16);
+                if (chunkSize == 0) {
+                    // Cabeceras finales (checksums) hasta la línea vacía
+                    while (!readLine(in).isEmpty()) {
+                        // Ignorar
+                    }
+                    break;
+                }
+                long remaining = chunkSize;
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new IOException("Cuerpo aws-chunked truncado");
+                    }
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+                readLine(in);
+            }
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static void drain(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String xml) throws IOException {
+        if (xml == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = xml.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Path object(String bucket, String key) {
+        Path bucketDir = root.resolve(bucket).normalize();
+        Path file = bucketDir.resolve(key).normalize();
+        if (!file.startsWith(bucketDir)) {
+            throw new IllegalArgumentException("Clave no válida: " + key);
+        }
+        return file;
+    }
+
+    // ETag simplificado: no se calcula MD5 para no falsear las mediciones con trabajo del servidor
+    private static String etag(Path file) throws IOException {
+        return "\"" + Long.toHexString(Files.size(file)) + "-" + Long.toHexString(System.nanoTime()) + "\"";
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            query.put(name, value);
+        }
+        return query;
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
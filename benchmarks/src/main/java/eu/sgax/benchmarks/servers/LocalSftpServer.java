@@ -0,0 +1,70 @@
+package eu.sgax.benchmarks.servers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+
+import eu.sgax.benchmarks.TempFiles;
+
+/**
+ * Servidor SFTP embebido (Apache MINA SSHD) sobre un directorio temporal, para las mediciones.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class LocalSftpServer implements AutoCloseable {
+
+    public static final String USER = "bench";
+    public static final String PASSWORD = "bench";
+
+    private final Path root;
+    private final SshServer server;
+
+    private LocalSftpServer(Path root, SshServer server) {
+        this.root = root;
+        this.server = server;
+    }
+
+    /**
+     * Arranca el servidor en un puerto libre de localhost.
+     *
+     * @return servidor arrancado
+     * @throws IOException si el servidor no arranca
+     */
+    public static LocalSftpServer start() throws IOException {
+        Path root = Files.createTempDirectory("bench-sftp");
+        Path hostKey = Files.createTempDirectory("bench-sftp-key").resolve("hostkey.ser");
+
+        SshServer server = SshServer.setUpDefaultServer();
+        server.setHost("127.0.0.1");
+        server.setPort(0);
+        server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider(hostKey));
+        server.setPasswordAuthenticator((user, password, session) -> USER.equals(user) && PASSWORD.equals(password));
+        server.setSubsystemFactories(List.of(new SftpSubsystemFactory()));
+        server.setFileSystemFactory(new VirtualFileSystemFactory(root));
+        server.start();
+        return new LocalSftpServer(root, server);
+    }
+
+    // Puerto SSH
+    public int getPort() {
+        return server.getPort();
+    }
+
+    // Directorio raíz que ven los clientes como "/"
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.stop(true);
+        TempFiles.deleteRecursively(root);
+    }
+}
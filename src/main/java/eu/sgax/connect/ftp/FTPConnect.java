@@ -9,6 +9,13 @@ import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
 import org.apache.commons.net.ftp.FTPReply;
 
+import eu.sgax.connect.metrics.Counter;
+import eu.sgax.connect.metrics.MetricsRegistry;
+import eu.sgax.connect.metrics.TransferMetrics;
+import eu.sgax.connect.tracing.TransferPhase;
+import eu.sgax.connect.tracing.TransferSpan;
+import eu.sgax.connect.tracing.TransferTracer;
+
 public class FTPConnect {
 
     private final FTPClient ftpClient;
@@ -17,6 +24,10 @@ public class FTPConnect {
     private final String username;
     private final String password;
     private boolean connected = false;
+    private Counter connections = MetricsRegistry.NOOP.counter("");
+    private TransferMetrics uploadMetrics = TransferMetrics.NOOP;
+    private TransferMetrics downloadMetrics = TransferMetrics.NOOP;
+    private TransferTracer tracer = TransferTracer.NOOP;
 
     /**
      * Constructor con credenciales completas.
@@ -54,21 +65,75 @@ public class FTPConnect {
         if (connected) {
             return;
         }
-        ftpClient.connect(host, port);
-        int reply = ftpClient.getReplyCode();
-        if (!FTPReply.isPositiveCompletion(reply)) {
-            ftpClient.disconnect();
-            throw new IOException("Fallo al conectar al servidor FTP. Código de respuesta: " + reply);
-        }
+        TransferSpan span = startSpan("ftp.connect");
+        try {
+            ftpClient.connect(host, port);
+            int reply = ftpClient.getReplyCode();
+            if (!FTPReply.isPositiveCompletion(reply)) {
+                ftpClient.disconnect();
+                throw new IOException("Fallo al conectar al servidor FTP. Código de respuesta: " + reply);
+            }
+            span.event(TransferPhase.CONNECT);
 
-        if (!ftpClient.login(username, password)) {
-            ftpClient.disconnect();
-            throw new IOException("Fallo al autenticar en el servidor FTP.");
+            if (!ftpClient.login(username, password)) {
+                ftpClient.disconnect();
+                throw new IOException("Fallo al autenticar en el servidor FTP.");
+            }
+            span.event(TransferPhase.AUTH);
+
+            ftpClient.enterLocalPassiveMode();
+            ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
+            connected = true;
+            connections.increment();
+        } catch (IOException | RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
         }
+    }
 
-        ftpClient.enterLocalPassiveMode();
-        ftpClient.setFileType(FTP.BINARY_FILE_TYPE);
-        connected = true;
+    /**
+     * Activa las métricas de conexiones y transferencias de esta conexión y de los
+     * {@link FTPUploader} y {@link FTPDownloader} que la usan.
+     * 
+     * @param registry registro de métricas (null para desactivarlas)
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        MetricsRegistry target = registry != null ? registry : MetricsRegistry.NOOP;
+        this.connections = target.counter("connect.connections", "connector", "ftp");
+        this.uploadMetrics = new TransferMetrics(target, "ftp", "upload");
+        this.downloadMetrics = new TransferMetrics(target, "ftp", "download");
+    }
+
+    // Métricas de las subidas
+    TransferMetrics getUploadMetrics() {
+        return uploadMetrics;
+    }
+
+    // Métricas de las descargas
+    TransferMetrics getDownloadMetrics() {
+        return downloadMetrics;
+    }
+
+    /**
+     * Activa las trazas de la conexión, los listados y las transferencias de esta conexión y de los
+     * {@link FTPUploader} y {@link FTPDownloader} que la usan.
+     * 
+     * @param tracer trazador (null para desactivarlas)
+     */
+    public void setTracer(TransferTracer tracer) {
+        this.tracer = tracer != null ? tracer : TransferTracer.NOOP;
+    }
+
+    // Abrir una traza de esta conexión con el servidor como atributo
+    TransferSpan startSpan(String name) {
+        TransferSpan span = tracer.startSpan(name, "ftp");
+        if (span.isRecording()) {
+            span.setAttribute("server.address", host);
+            span.setAttribute("server.port", port);
+        }
+        return span;
     }
 
     /**
@@ -124,7 +189,7 @@ public class FTPConnect {
             throw new IOException("No conectado al servidor FTP.");
         }
 
-        FTPFile[] files = remotePath == null ? ftpClient.listFiles() : ftpClient.listFiles(remotePath);
+        FTPFile[] files = list(remotePath);
         List<String> fileNames = new ArrayList<>();
         for (FTPFile file : files) {
             if (file.isFile()) {
@@ -156,7 +221,7 @@ public class FTPConnect {
             throw new IOException("No conectado al servidor FTP.");
         }
 
-        FTPFile[] files = remotePath == null ? ftpClient.listFiles() : ftpClient.listFiles(remotePath);
+        FTPFile[] files = list(remotePath);
         List<String> dirNames = new ArrayList<>();
         for (FTPFile file : files) {
             if (file.isDirectory()) {
@@ -166,6 +231,25 @@ public class FTPConnect {
         return dirNames;
     }
 
+    // Obtener el listado de un directorio marcando la fase de listado
+    private FTPFile[] list(String remotePath) throws IOException {
+        TransferSpan span = startSpan("ftp.list");
+        try {
+            FTPFile[] files = remotePath == null ? ftpClient.listFiles() : ftpClient.listFiles(remotePath);
+            span.event(TransferPhase.LIST);
+            if (span.isRecording()) {
+                span.setAttribute("file.directory", remotePath != null ? remotePath : ".");
+                span.setAttribute("entries", files.length);
+            }
+            return files;
+        } catch (IOException | RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
     /**
      * Crea un directorio en el servidor FTP.
      * 
@@ -8,6 +8,11 @@ import java.nio.file.Path;
 
 import org.apache.commons.net.ftp.FTPClient;
 
+import eu.sgax.connect.metrics.TransferMetrics;
+import eu.sgax.connect.tracing.TracingStreams;
+import eu.sgax.connect.tracing.TransferPhase;
+import eu.sgax.connect.tracing.TransferSpan;
+
 /**
  * Clase para descargar archivos desde un servidor FTP.
  * Proporciona métodos para descargar archivos individuales, directorios completos y obtener streams de archivos.
@@ -49,12 +54,25 @@ public class FTPDownloader {
             Files.createDirectories(localPath.getParent());
         }
 
+        TransferMetrics metrics = ftpConnect.getDownloadMetrics();
+        TransferSpan span = ftpConnect.startSpan("ftp.download");
+        span.setAttribute("file.path", remoteFilePath);
+        long start = System.nanoTime();
         try (FileOutputStream outputStream = new FileOutputStream(localPath.toFile())) {
-            boolean success = ftpClient.retrieveFile(remoteFilePath, outputStream);
+            boolean success = ftpClient.retrieveFile(remoteFilePath, TracingStreams.firstByte(outputStream, span));
             if (!success) {
                 throw new IOException("Fallo al descargar el archivo: " + remoteFilePath);
             }
+            long bytes = outputStream.getChannel().position();
+            metrics.success(start, bytes);
+            span.event(TransferPhase.COMPLETE, bytes);
             return true;
+        } catch (IOException e) {
+            metrics.failure();
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
         }
     }
 
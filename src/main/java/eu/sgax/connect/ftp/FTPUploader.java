@@ -8,6 +8,11 @@ import java.nio.file.Path;
 
 import org.apache.commons.net.ftp.FTPClient;
 
+import eu.sgax.connect.metrics.TransferMetrics;
+import eu.sgax.connect.tracing.TracingStreams;
+import eu.sgax.connect.tracing.TransferPhase;
+import eu.sgax.connect.tracing.TransferSpan;
+
 /**
  * Clase para subir archivos a un servidor FTP.
  * Proporciona métodos para subir archivos individuales, directorios completos y streams de archivos.
@@ -46,13 +51,26 @@ public class FTPUploader {
         }
 
         FTPClient ftpClient = ftpConnect.getClient();
+        TransferMetrics metrics = ftpConnect.getUploadMetrics();
+        TransferSpan span = ftpConnect.startSpan("ftp.upload");
+        span.setAttribute("file.path", remoteFilePath);
+        long start = System.nanoTime();
 
         try (FileInputStream inputStream = new FileInputStream(localPath.toFile())) {
-            boolean success = ftpClient.storeFile(remoteFilePath, inputStream);
+            boolean success = ftpClient.storeFile(remoteFilePath, TracingStreams.firstByte(inputStream, span));
             if (!success) {
                 throw new IOException("Fallo al subir el archivo: " + localPath);
             }
+            long bytes = inputStream.getChannel().position();
+            metrics.success(start, bytes);
+            span.event(TransferPhase.COMPLETE, bytes);
             return true;
+        } catch (IOException e) {
+            metrics.failure();
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
         }
     }
 
@@ -0,0 +1,428 @@
+package eu.sgax.connect.mail;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpException;
+
+import eu.sgax.connect.s3.S3Uploader;
+import eu.sgax.connect.sftp.SFTPConnect;
+import jakarta.mail.FetchProfile;
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.ParseException;
+
+/**
+ * Descarga en paralelo de los adjuntos de muchos mensajes IMAP.
+ * Reparte los mensajes entre varias conexiones independientes al servidor, cada una con su carpeta abierta,
+ * y envía el contenido de cada adjunto como stream a un {@link AttachmentSink}: un directorio local, un bucket S3
+ * o un servidor SFTP. El contenido se pide al servidor en bloques del tamaño configurado con
+ * {@link ReadMail#setFetchSize(int)}, sin cargar el adjunto completo en memoria.
+ *
+ * <p>Los adjuntos se nombran como {@code <uid>_<nombre de archivo>} para que no colisionen entre mensajes.
+ * Si un mensaje tiene varios adjuntos con el mismo nombre, se añade el índice de la parte antes de la extensión
+ * ({@code <uid>_factura-1.pdf}) para que no se sobrescriban.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class AttachmentDownloader {
+
+    // Mensajes que pide cada conexión en cada vuelta
+    private static final int BATCH_SIZE = 50;
+
+    private final ReadMail source;
+    private final String folderName;
+    private final int connections;
+
+    /**
+     * Constructor para AttachmentDownloader.
+     *
+     * @param source instancia de ReadMail con la configuración del servidor IMAP
+     * @param folderName carpeta de la que descargar
+     * @param connections número de conexiones simultáneas al servidor
+     */
+    public AttachmentDownloader(ReadMail source, String folderName, int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("El número de conexiones debe ser al menos 1: " + connections);
+        }
+        this.source = source;
+        this.folderName = folderName;
+        this.connections = connections;
+    }
+
+    /**
+     * Descarga los adjuntos de los mensajes resumidos.
+     *
+     * @param messages resúmenes de los mensajes (deben tener UID)
+     * @param sink destino de los adjuntos
+     * @return resultado de la descarga
+     */
+    public DownloadResult downloadSummaries(List<ReadMail.MessageSummary> messages, AttachmentSink sink) {
+        return download(messages.stream().map(summary -> summary.uid).toList(), sink);
+    }
+
+    /**
+     * Descarga los adjuntos de los mensajes indicados por UID.
+     *
+     * @param uids UIDs de los mensajes
+     * @param sink destino de los adjuntos
+     * @return resultado de la descarga, con los errores por UID
+     */
+    public DownloadResult download(Collection<Long> uids, AttachmentSink sink) {
+        long[] all = uids.stream().mapToLong(Long::longValue).toArray();
+        DownloadResult result = new DownloadResult();
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(connections, Math.max(1, (all.length + BATCH_SIZE - 1) / BATCH_SIZE));
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "mail-attachments");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.execute(() -> work(all, next, sink, result));
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Esperar a que terminen todas las conexiones
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        // UIDs que no llegó a procesar ninguna conexión
+        MessagingException notProcessed = new MessagingException("No se pudo conectar al servidor de correo.");
+        for (int i = next.getAndAdd(all.length); i < all.length; i++) {
+            result.failures.putIfAbsent(all[i], notProcessed);
+        }
+        return result;
+    }
+
+    // Bucle de cada conexión: toma lotes de UIDs hasta agotarlos
+    private void work(long[] uids, AtomicInteger next, AttachmentSink sink, DownloadResult result) {
+        Store store = null;
+        Folder folder = null;
+        try {
+            while (true) {
+                int start = next.getAndAdd(BATCH_SIZE);
+                if (start >= uids.length) {
+                    return;
+                }
+                long[] batch = Arrays.copyOfRange(uids, start, Math.min(uids.length, start + BATCH_SIZE));
+                try {
+                    if (folder == null || !folder.isOpen()) {
+                        closeQuietly(folder, store);
+                        store = source.openStore();
+                        folder = store.getFolder(folderName);
+                        folder.open(Folder.READ_ONLY);
+                    }
+                    downloadBatch((UIDFolder) folder, batch, sink, result);
+                } catch (MessagingException | RuntimeException e) {
+                    for (long uid : batch) {
+                        result.failures.putIfAbsent(uid, e);
+                    }
+                    if (store == null || !store.isConnected()) {
+                        // Sin conexión: los lotes restantes los procesan las demás conexiones
+                        return;
+                    }
+                }
+            }
+        } finally {
+            closeQuietly(folder, store);
+        }
+    }
+
+    private void downloadBatch(UIDFolder folder, long[] batch, AttachmentSink sink, DownloadResult result)
+            throws MessagingException {
+        Message[] messages = folder.getMessagesByUID(batch);
+        FetchProfile profile = new FetchProfile();
+        profile.add(FetchProfile.Item.CONTENT_INFO);
+        profile.add(UIDFolder.FetchProfileItem.UID);
+        ((Folder) folder).fetch(Arrays.stream(messages).filter(m -> m != null).toArray(Message[]::new), profile);
+
+        for (int i = 0; i < batch.length; i++) {
+            Message message = messages[i];
+            if (message == null) {
+                result.failures.put(batch[i], new MessagingException("Mensaje no encontrado: UID " + batch[i]));
+                continue;
+            }
+            try {
+                int index = 0;
+                Set<String> used = new HashSet<>();
+                for (ReadMail.AttachmentInfo attachment : ReadMail.findAttachments(message)) {
+                    String name = batch[i] + "_" + uniqueFileName(attachment.fileName, index++, used);
+                    try (CountingInputStream in = new CountingInputStream(attachment.getBodyPart().getInputStream())) {
+                        sink.store(name, baseType(attachment.contentType), in);
+                        result.bytes.addAndGet(in.count);
+                    }
+                    result.attachments.incrementAndGet();
+                }
+                result.messages.incrementAndGet();
+            } catch (IOException | MessagingException e) {
+                if (e instanceof MessagingException && !((Folder) folder).isOpen()) {
+                    throw (MessagingException) e;
+                }
+                result.failures.put(batch[i], e);
+            }
+        }
+    }
+
+    /**
+     * Destino que guarda los adjuntos en un directorio local.
+     * Cada adjunto se escribe en un temporal con un FileChannel y se renombra al terminar.
+     *
+     * @param directory directorio destino
+     * @param bufferSize tamaño del buffer de escritura en bytes
+     * @return destino de adjuntos
+     * @throws IOException si no se puede crear el directorio
+     */
+    public static AttachmentSink toDirectory(Path directory, int bufferSize) throws IOException {
+        Files.createDirectories(directory);
+        return (name, contentType, content) -> {
+            Path target = directory.resolve(name);
+            Path temp = directory.resolve(name + ".part");
+            try {
+                ReadMail.copyToFile(content, temp, bufferSize);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Destino que sube los adjuntos directamente a un bucket S3, con cargas multiparte para los grandes.
+     *
+     * @param uploader cargador S3
+     * @param bucket bucket destino
+     * @param prefix prefijo de las claves (por ejemplo "facturas/"), puede estar vacío
+     * @return destino de adjuntos
+     */
+    public static AttachmentSink toS3(S3Uploader uploader, String bucket, String prefix) {
+        String keyPrefix = prefix == null || prefix.isEmpty() || prefix.endsWith("/") ? prefix : prefix + "/";
+        return (name, contentType, content) ->
+                uploader.uploadStream(bucket, keyPrefix == null ? name : keyPrefix + name, content, contentType);
+    }
+
+    /**
+     * Destino que sube los adjuntos directamente a un servidor SFTP.
+     * Cada hilo usa su propio canal sobre la sesión SSH existente; los canales se cierran al cerrar el destino.
+     *
+     * @param sftpConnect conexión SFTP ya establecida
+     * @param remoteDir directorio remoto destino (ruta absoluta)
+     * @return destino de adjuntos
+     */
+    public static AttachmentSink toSftp(SFTPConnect sftpConnect, String remoteDir) {
+        String dir = remoteDir.endsWith("/") ? remoteDir : remoteDir + "/";
+        return new AttachmentSink() {
+            private final Queue<ChannelSftp> idle = new ConcurrentLinkedQueue<>();
+            private final Queue<ChannelSftp> opened = new ConcurrentLinkedQueue<>();
+
+            @Override
+            public void store(String name, String contentType, InputStream content) throws IOException {
+                ChannelSftp channel = idle.poll();
+                try {
+                    if (channel == null || !channel.isConnected()) {
+                        channel = sftpConnect.openChannel();
+                        opened.add(channel);
+                    }
+                    channel.put(content, dir + name);
+                    idle.offer(channel);
+                } catch (JSchException | SftpException e) {
+                    throw new IOException("Error al subir el adjunto por SFTP: " + name, e);
+                }
+            }
+
+            @Override
+            public void close() {
+                ChannelSftp channel;
+                while ((channel = opened.poll()) != null) {
+                    channel.disconnect();
+                }
+                idle.clear();
+            }
+        };
+    }
+
+    /**
+     * Resuelve la ruta de un adjunto dentro de un directorio a partir de su nombre en el mensaje.
+     * El nombre se limpia de separadores y caracteres de control, y la ruta resultante debe quedar dentro del
+     * directorio; así un nombre como {@code ../../x} no puede escribir ni borrar archivos fuera de él.
+     *
+     * @param directory directorio destino
+     * @param fileName nombre del adjunto en el mensaje (puede ser null)
+     * @param index posición del adjunto en el mensaje, para nombres vacíos o repetidos
+     * @param used nombres ya usados en el mismo mensaje
+     * @return ruta del adjunto dentro del directorio
+     * @throws IOException si la ruta queda fuera del directorio
+     */
+    static Path resolveInside(Path directory, String fileName, int index, Set<String> used) throws IOException {
+        Path base = directory.toAbsolutePath().normalize();
+        Path target = base.resolve(uniqueFileName(fileName, index, used)).normalize();
+        if (!target.startsWith(base) || target.equals(base)) {
+            throw new IOException("Nombre de adjunto fuera del directorio destino: " + fileName);
+        }
+        return target;
+    }
+
+    // Nombre seguro y no repetido dentro del mensaje
+    private static String uniqueFileName(String fileName, int index, Set<String> used) {
+        return withIndex(safeFileName(fileName, index), index, used);
+    }
+
+    private static String safeFileName(String fileName, int index) {
+        String name = fileName;
+        if (name != null) {
+            try {
+                name = MimeUtility.decodeText(name);
+            } catch (UnsupportedEncodingException e) {
+                // Mantener el nombre sin decodificar
+            }
+        }
+        if (name == null || name.isBlank() || name.equals(".") || name.equals("..")) {
+            return "adjunto-" + index;
+        }
+        return name.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_");
+    }
+
+    // Añadir el índice de la parte si el nombre ya se ha usado en el mismo mensaje (sin distinguir mayúsculas)
+    private static String withIndex(String name, int index, Set<String> used) {
+        String unique = name;
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int n = 0; !used.add(unique.toLowerCase(Locale.ROOT)); n++) {
+            unique = base + "-" + index + (n == 0 ? "" : "-" + n) + extension;
+        }
+        return unique;
+    }
+
+    private static String baseType(String contentType) {
+        if (contentType == null) {
+            return "application/octet-stream";
+        }
+        try {
+            return new ContentType(contentType).getBaseType().toLowerCase();
+        } catch (ParseException e) {
+            return "application/octet-stream";
+        }
+    }
+
+    private static void closeQuietly(Folder folder, Store store) {
+        try {
+            if (folder != null && folder.isOpen()) {
+                folder.close(false);
+            }
+        } catch (MessagingException | IllegalStateException e) {
+            // Ignorar errores al cerrar
+        }
+        try {
+            if (store != null) {
+                store.close();
+            }
+        } catch (MessagingException e) {
+            // Ignorar errores al cerrar
+        }
+    }
+
+    // Stream que cuenta los bytes leídos
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+
+    // Resultado de una descarga de adjuntos
+    public static class DownloadResult {
+        private final AtomicInteger messages = new AtomicInteger();
+        private final AtomicInteger attachments = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final Map<Long, Exception> failures = new ConcurrentHashMap<>();
+
+        // Número de mensajes procesados correctamente
+        public int getMessages() {
+            return messages.get();
+        }
+
+        // Número de adjuntos guardados
+        public int getAttachments() {
+            return attachments.get();
+        }
+
+        // Total de bytes guardados
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        // Errores por UID de mensaje
+        public Map<Long, Exception> getFailures() {
+            return failures;
+        }
+
+        // Verificar si todos los mensajes se procesaron correctamente
+        public boolean isSuccess() {
+            return failures.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "DownloadResult{" +
+                    "messages=" + messages.get() +
+                    ", attachments=" + attachments.get() +
+                    ", bytes=" + bytes.get() +
+                    ", failed=" + failures.size() +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package eu.sgax.connect.mail;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Destino de los adjuntos descargados por {@link AttachmentDownloader}.
+ * El contenido se recibe como stream a medida que llega del servidor de correo,
+ * de modo que puede escribirse directamente en el destino sin archivos intermedios.
+ * Las implementaciones deben admitir llamadas simultáneas desde varios hilos.
+ *
+ * @author SGAX
+ * @version 1.0
+ * @see AttachmentDownloader#toDirectory(java.nio.file.Path, int)
+ * @see AttachmentDownloader#toS3(eu.sgax.connect.s3.S3Uploader, String, String)
+ * @see AttachmentDownloader#toSftp(eu.sgax.connect.sftp.SFTPConnect, String)
+ */
+public interface AttachmentSink extends AutoCloseable {
+
+    /**
+     * Guarda un adjunto.
+     *
+     * @param name nombre único del adjunto dentro de la descarga
+     * @param contentType tipo de contenido del adjunto, sin parámetros
+     * @param content contenido ya decodificado (lo cierra quien llama)
+     * @throws IOException si ocurre un error al guardar el adjunto
+     */
+    void store(String name, String contentType, InputStream content) throws IOException;
+
+    /**
+     * Libera los recursos del destino.
+     *
+     * @throws IOException si ocurre un error al cerrar
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,320 @@
+package eu.sgax.connect.mail;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Almacén de adjuntos direccionado por contenido.
+ * Cada adjunto se guarda una sola vez con su SHA-256 como nombre, calculado mientras se escribe el stream, sin
+ * cargar el adjunto en memoria. Los adjuntos repetidos, aunque lleguen en mensajes o buzones distintos, solo
+ * añaden una referencia en el índice.
+ *
+ * <p>Estructura del directorio:</p>
+ * <pre>
+ * objects/ab/abcdef...   contenido de cada adjunto, de solo lectura
+ * tmp/                   escrituras en curso
+ * index.log              una línea por adjunto recibido: hash, tamaño, tipo y nombre
+ * </pre>
+ *
+ * <p>Los adjuntos pueden exponerse con su nombre original en otro directorio mediante enlaces duros, que no
+ * ocupan espacio adicional; si el sistema de archivos no los admite, se copian. Como implementación de
+ * {@link AttachmentSink} puede usarse directamente con {@link AttachmentDownloader}. Es seguro entre hilos.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class AttachmentStore implements AttachmentSink {
+
+    private final Path objects;
+    private final Path temp;
+    private final Path indexFile;
+    private final int bufferSize;
+    private final Map<String, Long> sizes = new HashMap<>();
+    private final Map<String, Integer> references = new HashMap<>();
+    private BufferedWriter index;
+    private long storedBytes = 0;
+    private long receivedBytes = 0;
+    private long duplicates = 0;
+
+    private AttachmentStore(Path root, int bufferSize) {
+        this.objects = root.resolve("objects");
+        this.temp = root.resolve("tmp");
+        this.indexFile = root.resolve("index.log");
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Abre o crea un almacén en un directorio, leyendo su índice.
+     *
+     * @param root directorio del almacén
+     * @return almacén abierto
+     * @throws IOException si ocurre un error al leer el índice
+     */
+    public static AttachmentStore open(Path root) throws IOException {
+        return open(root, 256 * 1024);
+    }
+
+    /**
+     * Abre o crea un almacén en un directorio con un tamaño de buffer de escritura concreto.
+     *
+     * @param root directorio del almacén
+     * @param bufferSize tamaño del buffer de escritura en bytes
+     * @return almacén abierto
+     * @throws IOException si ocurre un error al leer el índice
+     */
+    public static AttachmentStore open(Path root, int bufferSize) throws IOException {
+        AttachmentStore store = new AttachmentStore(root, bufferSize);
+        Files.createDirectories(store.objects);
+        Files.createDirectories(store.temp);
+        store.loadIndex();
+        store.index = Files.newBufferedWriter(store.indexFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return store;
+    }
+
+    /**
+     * Guarda un adjunto calculando su SHA-256 mientras se escribe.
+     * Si el contenido ya estaba en el almacén, se descarta la copia y solo se añade la referencia.
+     *
+     * @param fileName nombre original del adjunto (puede ser null)
+     * @param contentType tipo de contenido (puede ser null)
+     * @param content contenido decodificado (lo cierra quien llama)
+     * @return adjunto guardado
+     * @throws IOException si ocurre un error al escribir
+     */
+    public StoredAttachment put(String fileName, String contentType, InputStream content) throws IOException {
+        Path part = Files.createTempFile(temp, "att", ".part");
+        String hash;
+        long size;
+        try {
+            DigestInputStream digest = new DigestInputStream(content, sha256());
+            size = ReadMail.copyToFile(digest, part, bufferSize);
+            hash = HexFormat.of().formatHex(digest.getMessageDigest().digest());
+
+            Path object = objectPath(hash);
+            if (!Files.exists(object)) {
+                Files.createDirectories(object.getParent());
+                try {
+                    Files.move(part, object, StandardCopyOption.ATOMIC_MOVE);
+                    object.toFile().setReadOnly();
+                } catch (FileAlreadyExistsException e) {
+                    // Otro hilo ha guardado el mismo contenido a la vez
+                }
+            }
+        } finally {
+            Files.deleteIfExists(part);
+        }
+
+        boolean duplicate;
+        synchronized (this) {
+            duplicate = sizes.containsKey(hash);
+            record(hash, size);
+            index.write(hash + '\t' + size + '\t' + escape(contentType) + '\t' + escape(fileName));
+            index.newLine();
+            index.flush();
+        }
+        return new StoredAttachment(hash, size, objectPath(hash), fileName, duplicate);
+    }
+
+    // Guardar un adjunto recibido por AttachmentDownloader
+    @Override
+    public void store(String name, String contentType, InputStream content) throws IOException {
+        put(name, contentType, content);
+    }
+
+    /**
+     * Expone un adjunto guardado con otro nombre mediante un enlace duro, o una copia si no se admiten.
+     * El archivo enlazado comparte contenido con el almacén y no debe modificarse.
+     *
+     * @param attachment adjunto guardado
+     * @param target ruta del enlace (se sustituye si existe)
+     * @return ruta del enlace
+     * @throws IOException si no se puede crear el enlace ni la copia
+     */
+    public Path link(StoredAttachment attachment, Path target) throws IOException {
+        if (target.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(target.toAbsolutePath().getParent());
+        }
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, attachment.getPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            // Sistema de archivos sin enlaces duros o en otro dispositivo
+            Files.copy(attachment.getPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return target;
+    }
+
+    /**
+     * Crea un destino para {@link AttachmentDownloader} que guarda los adjuntos en el almacén
+     * y los enlaza con su nombre en un directorio. Los nombres que saldrían del directorio se rechazan.
+     *
+     * @param directory directorio donde aparecen los adjuntos
+     * @return destino de adjuntos
+     * @throws IOException si no se puede crear el directorio
+     */
+    public AttachmentSink linkingSink(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return (name, contentType, content) -> {
+            Path target = AttachmentDownloader.resolveInside(directory, name, 0, new HashSet<>());
+            link(put(name, contentType, content), target);
+        };
+    }
+
+    // Ruta del contenido con el hash indicado (null si no está en el almacén)
+    public synchronized Path find(String hash) {
+        return sizes.containsKey(hash) ? objectPath(hash) : null;
+    }
+
+    // Número de veces que se ha recibido el contenido con el hash indicado
+    public synchronized int getReferences(String hash) {
+        return references.getOrDefault(hash, 0);
+    }
+
+    // Número de contenidos distintos guardados
+    public synchronized int getObjectCount() {
+        return sizes.size();
+    }
+
+    // Bytes ocupados por los contenidos distintos
+    public synchronized long getStoredBytes() {
+        return storedBytes;
+    }
+
+    // Bytes recibidos, incluidas las copias repetidas
+    public synchronized long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    // Número de adjuntos recibidos cuyo contenido ya estaba guardado
+    public synchronized long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Cierra el índice del almacén.
+     *
+     * @throws IOException si ocurre un error al cerrar
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        index.close();
+    }
+
+    private void loadIndex() throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        for (String line : lines) {
+            String[] fields = line.split("\t", 4);
+            if (fields.length < 2 || fields[0].length() != 64) {
+                // Línea incompleta por una escritura interrumpida
+                continue;
+            }
+            try {
+                if (Files.exists(objectPath(fields[0]))) {
+                    record(fields[0], Long.parseLong(fields[1]));
+                }
+            } catch (NumberFormatException e) {
+                // Ignorar líneas no válidas
+            }
+        }
+    }
+
+    private void record(String hash, long size) {
+        if (sizes.putIfAbsent(hash, size) == null) {
+            storedBytes += size;
+        } else {
+            duplicates++;
+        }
+        references.merge(hash, 1, Integer::sum);
+        receivedBytes += size;
+    }
+
+    private Path objectPath(String hash) {
+        return objects.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static String escape(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    // Adjunto guardado en el almacén
+    public static class StoredAttachment {
+        private final String hash;
+        private final long size;
+        private final Path path;
+        private final String fileName;
+        private final boolean duplicate;
+
+        private StoredAttachment(String hash, long size, Path path, String fileName, boolean duplicate) {
+            this.hash = hash;
+            this.size = size;
+            this.path = path;
+            this.fileName = fileName;
+            this.duplicate = duplicate;
+        }
+
+        // SHA-256 del contenido en hexadecimal
+        public String getHash() {
+            return hash;
+        }
+
+        // Tamaño del contenido en bytes
+        public long getSize() {
+            return size;
+        }
+
+        // Ruta del contenido en el almacén (de solo lectura)
+        public Path getPath() {
+            return path;
+        }
+
+        // Nombre original del adjunto
+        public String getFileName() {
+            return fileName;
+        }
+
+        // Verificar si el contenido ya estaba guardado
+        public boolean isDuplicate() {
+            return duplicate;
+        }
+
+        @Override
+        public String toString() {
+            return "StoredAttachment{" +
+                    "hash='" + hash + '\'' +
+                    ", size=" + size +
+                    ", fileName='" + fileName + '\'' +
+                    ", duplicate=" + duplicate +
+                    '}';
+        }
+    }
+}
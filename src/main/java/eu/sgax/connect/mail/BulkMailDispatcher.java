@@ -0,0 +1,510 @@
+package eu.sgax.connect.mail;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+
+/**
+ * Despachador de envíos masivos de correo a través de un pool de conexiones SMTP persistentes.
+ * Cada mensaje se envía en un hilo virtual, con un máximo de envíos simultáneos igual al número de conexiones,
+ * un límite opcional de mensajes por segundo para el servidor y reintentos con espera exponencial
+ * para los rechazos temporales (respuestas 4xx y errores de conexión).
+ * Los mensajes en espera de reintento liberan su envío simultáneo hasta un máximo
+ * ({@link #maxParkedRetries(int)}); por encima de ese máximo esperan ocupándolo, lo que frena la lectura de
+ * mensajes nuevos en lugar de acumular reintentos sin límite.
+ *
+ * <p>El resultado de cada mensaje se notifica a un {@link DispatchListener}. Los destinatarios rechazados de forma
+ * definitiva (respuestas 5xx) no se reintentan; si el resto recibe el mensaje, el resultado es parcial: no es
+ * correcto, su error enumera los rechazados y se cuenta en {@link DispatchSummary#getPartial()}. Ejemplo:</p>
+ * <pre>
+ * try (BulkMailDispatcher dispatcher = new BulkMailDispatcher(sendMail)
+ *         .concurrency(16)
+ *         .rateLimit(100)
+ *         .maxRetries(3)) {
+ *     DispatchSummary summary = dispatcher.dispatch(messages, result -&gt; log(result));
+ * }
+ * </pre>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class BulkMailDispatcher implements AutoCloseable {
+
+    private final SendMail sender;
+    private int concurrency = 8;
+    private int maxMessagesPerConnection = 500;
+    private Duration idleTimeout = Duration.ofSeconds(30);
+    private double maxMessagesPerSecond = 0;
+    private int maxRetries = 3;
+    private Duration retryDelay = Duration.ofSeconds(30);
+    private int maxParkedRetries = 10_000;
+
+    private final Set<Delivery> parked = ConcurrentHashMap.newKeySet();
+    private SmtpConnectionPool pool;
+    private ExecutorService workers;
+    private ScheduledExecutorService retryScheduler;
+    private RateLimiter rateLimiter;
+
+    /**
+     * Constructor para BulkMailDispatcher.
+     *
+     * @param sender instancia de SendMail con la configuración del servidor SMTP
+     */
+    public BulkMailDispatcher(SendMail sender) {
+        this.sender = sender;
+    }
+
+    // Número de conexiones SMTP y envíos simultáneos
+    public BulkMailDispatcher concurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("La concurrencia debe ser al menos 1: " + concurrency);
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    // Mensajes tras los que se renueva cada conexión (0 sin límite)
+    public BulkMailDispatcher maxMessagesPerConnection(int maxMessagesPerConnection) {
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        return this;
+    }
+
+    // Tiempo de inactividad tras el que se cierra una conexión
+    public BulkMailDispatcher idleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    // Límite de mensajes por segundo hacia el servidor (0 sin límite)
+    public BulkMailDispatcher rateLimit(double maxMessagesPerSecond) {
+        this.maxMessagesPerSecond = maxMessagesPerSecond;
+        return this;
+    }
+
+    // Número máximo de reintentos por mensaje ante rechazos temporales
+    public BulkMailDispatcher maxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+        return this;
+    }
+
+    // Espera antes del primer reintento; se duplica en cada reintento posterior
+    public BulkMailDispatcher retryDelay(Duration retryDelay) {
+        this.retryDelay = retryDelay;
+        return this;
+    }
+
+    // Máximo de mensajes por envío masivo esperando un reintento sin ocupar un envío simultáneo
+    public BulkMailDispatcher maxParkedRetries(int maxParkedRetries) {
+        this.maxParkedRetries = Math.max(0, maxParkedRetries);
+        return this;
+    }
+
+    /**
+     * Envía todos los mensajes de un stream y espera a que terminen, incluidos los reintentos.
+     * El stream se consume a medida que hay capacidad, por lo que no se cargan todos los mensajes en memoria.
+     *
+     * @param messages mensajes a enviar
+     * @param listener receptor del resultado de cada mensaje (puede ser null)
+     * @return resumen del envío
+     * @throws InterruptedException si el hilo se interrumpe mientras espera
+     */
+    public DispatchSummary dispatch(Stream<? extends Message> messages, DispatchListener listener) throws InterruptedException {
+        try (messages) {
+            return dispatch(messages.iterator(), listener);
+        }
+    }
+
+    /**
+     * Envía todos los mensajes de una colección y espera a que terminen, incluidos los reintentos.
+     *
+     * @param messages mensajes a enviar
+     * @param listener receptor del resultado de cada mensaje (puede ser null)
+     * @return resumen del envío
+     * @throws InterruptedException si el hilo se interrumpe mientras espera
+     */
+    public DispatchSummary dispatch(Iterable<? extends Message> messages, DispatchListener listener) throws InterruptedException {
+        return dispatch(messages.iterator(), listener);
+    }
+
+    private DispatchSummary dispatch(Iterator<? extends Message> messages, DispatchListener listener) throws InterruptedException {
+        Batch batch = start(listener);
+        long startNanos = System.nanoTime();
+
+        try {
+            while (messages.hasNext()) {
+                Message message = messages.next();
+                batch.inFlight.acquire();
+                batch.pending.incrementAndGet();
+                Delivery delivery = new Delivery(message, batch);
+                try {
+                    batch.workers.execute(delivery);
+                } catch (RejectedExecutionException e) {
+                    delivery.finish(new MessagingException("Despachador cerrado antes del envío.", e));
+                }
+            }
+        } finally {
+            batch.arrive();
+        }
+
+        batch.done.await();
+        batch.summary.elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+        return batch.summary;
+    }
+
+    // Número de conexiones SMTP abiertas por el despachador
+    public int getOpenConnections() {
+        return pool != null ? pool.getOpenConnections() : 0;
+    }
+
+    /**
+     * Cierra las conexiones SMTP y detiene los hilos del despachador.
+     * Los mensajes que esperaban un reintento se dan por fallidos con su último error.
+     */
+    @Override
+    public synchronized void close() {
+        if (retryScheduler != null) {
+            retryScheduler.shutdownNow();
+            retryScheduler = null;
+        }
+        for (Delivery delivery : parked) {
+            delivery.cancel();
+        }
+        if (workers != null) {
+            workers.shutdown();
+            workers = null;
+        }
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private synchronized Batch start(DispatchListener listener) {
+        if (pool == null) {
+            pool = sender.createConnectionPool(concurrency, maxMessagesPerConnection, idleTimeout);
+            workers = Executors.newVirtualThreadPerTaskExecutor();
+            retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mail-retry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rateLimiter = maxMessagesPerSecond > 0 ? new RateLimiter(maxMessagesPerSecond) : null;
+        }
+        return new Batch(listener, pool, workers, retryScheduler, rateLimiter);
+    }
+
+    // Estado de una llamada a dispatch: recursos en uso, límites y mensajes pendientes
+    private class Batch {
+        private final DispatchListener listener;
+        private final SmtpConnectionPool pool;
+        private final ExecutorService workers;
+        private final ScheduledExecutorService retryScheduler;
+        private final RateLimiter rateLimiter;
+        private final DispatchSummary summary = new DispatchSummary();
+        private final Semaphore inFlight = new Semaphore(concurrency);
+        private final Semaphore parkingSlots = new Semaphore(maxParkedRetries);
+        // Mensajes sin terminar más uno por el hilo que lee los mensajes
+        private final AtomicLong pending = new AtomicLong(1);
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private Batch(DispatchListener listener, SmtpConnectionPool pool, ExecutorService workers,
+                      ScheduledExecutorService retryScheduler, RateLimiter rateLimiter) {
+            this.listener = listener;
+            this.pool = pool;
+            this.workers = workers;
+            this.retryScheduler = retryScheduler;
+            this.rateLimiter = rateLimiter;
+        }
+
+        private void arrive() {
+            if (pending.decrementAndGet() == 0) {
+                done.countDown();
+            }
+        }
+    }
+
+    // Envío de un mensaje con sus reintentos
+    private class Delivery implements Runnable {
+        private final Message message;
+        private final Batch batch;
+        private Address[] recipients;
+        private final Set<Address> rejected = new LinkedHashSet<>();
+        private MessagingException lastError;
+        private boolean delivered = false;
+        private int attempts = 0;
+        private boolean holdsSlot = true;
+
+        private Delivery(Message message, Batch batch) {
+            this.message = message;
+            this.batch = batch;
+        }
+
+        @Override
+        public void run() {
+            if (!holdsSlot) {
+                batch.inFlight.acquireUninterruptibly();
+                holdsSlot = true;
+            }
+            while (attempt()) {
+                // Reintento en este mismo hilo, sin hueco para esperar fuera
+            }
+        }
+
+        // Realiza un intento; devuelve true si hay que reintentar en el mismo hilo
+        private boolean attempt() {
+            attempts++;
+            try {
+                if (batch.rateLimiter != null) {
+                    batch.rateLimiter.acquire();
+                }
+                if (recipients == null) {
+                    recipients = SmtpConnectionPool.prepare(message);
+                }
+                batch.pool.send(message, recipients);
+                delivered = true;
+                finish(rejected.isEmpty() ? null : partialFailure());
+                return false;
+            } catch (MessagingException e) {
+                Address[] retry = new Address[0];
+                if (recipients != null) {
+                    retry = SmtpConnectionPool.retryableRecipients(e, recipients);
+                    rejected.addAll(List.of(SmtpConnectionPool.rejectedRecipients(e, recipients)));
+                }
+                if (retry.length == 0 || attempts > maxRetries) {
+                    finish(e);
+                    return false;
+                }
+                recipients = retry;
+                lastError = e;
+                batch.summary.retries.incrementAndGet();
+                long delay = retryDelay.toMillis() << Math.min(attempts - 1, 16);
+                if (park(delay)) {
+                    return false;
+                }
+                // Sin hueco para esperar fuera: se espera ocupando el envío simultáneo
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                    return true;
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    finish(e);
+                    return false;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                finish(new MessagingException("Envío interrumpido.", e));
+                return false;
+            } catch (RuntimeException e) {
+                finish(new MessagingException("Error inesperado en el envío: " + e.getMessage(), e));
+                return false;
+            }
+        }
+
+        // Error de un mensaje enviado solo a parte de los destinatarios: el último intento llegó a los pendientes
+        private SendFailedException partialFailure() {
+            Address[] invalid = rejected.toArray(new Address[0]);
+            return new SendFailedException("Destinatarios rechazados de forma definitiva: " + InternetAddress.toString(invalid),
+                    null, recipients, null, invalid);
+        }
+
+        // Deja el mensaje esperando el reintento sin ocupar un envío simultáneo, si hay hueco
+        private boolean park(long delay) {
+            if (!batch.parkingSlots.tryAcquire()) {
+                return false;
+            }
+            parked.add(this);
+            holdsSlot = false;
+            batch.inFlight.release();
+            try {
+                batch.retryScheduler.schedule(this::resume, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                cancel();
+            }
+            return true;
+        }
+
+        private void resume() {
+            if (!unpark()) {
+                return;
+            }
+            try {
+                batch.workers.execute(this);
+            } catch (RejectedExecutionException e) {
+                finish(lastError);
+            }
+        }
+
+        // Da por fallido un mensaje que esperaba un reintento
+        private void cancel() {
+            if (unpark()) {
+                finish(lastError);
+            }
+        }
+
+        // Saca el mensaje de la espera; false si otro hilo ya lo ha hecho
+        private boolean unpark() {
+            if (!parked.remove(this)) {
+                return false;
+            }
+            batch.parkingSlots.release();
+            return true;
+        }
+
+        private void finish(MessagingException error) {
+            try {
+                if (error == null) {
+                    batch.summary.sent.incrementAndGet();
+                } else if (delivered) {
+                    batch.summary.partial.incrementAndGet();
+                } else {
+                    batch.summary.failed.incrementAndGet();
+                }
+                if (batch.listener != null) {
+                    batch.listener.onResult(new DispatchResult(message, error, attempts, List.copyOf(rejected)));
+                }
+            } finally {
+                if (holdsSlot) {
+                    batch.inFlight.release();
+                }
+                batch.arrive();
+            }
+        }
+    }
+
+    // Limitador de ritmo: reparte los envíos a intervalos regulares
+    private static class RateLimiter {
+        private final long intervalNanos;
+        private long nextSlot = System.nanoTime();
+
+        private RateLimiter(double permitsPerSecond) {
+            this.intervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+        }
+
+        private void acquire() throws InterruptedException {
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (nextSlot < now) {
+                    nextSlot = now;
+                }
+                wait = nextSlot - now;
+                nextSlot += intervalNanos;
+            }
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+    }
+
+    // Interfaz para recibir el resultado de cada mensaje
+    public interface DispatchListener {
+        void onResult(DispatchResult result);
+    }
+
+    // Clase para el resultado del envío de un mensaje
+    public static class DispatchResult {
+        private final Message message;
+        private final MessagingException error;
+        private final int attempts;
+        private final List<Address> rejectedRecipients;
+
+        private DispatchResult(Message message, MessagingException error, int attempts, List<Address> rejectedRecipients) {
+            this.message = message;
+            this.error = error;
+            this.attempts = attempts;
+            this.rejectedRecipients = rejectedRecipients;
+        }
+
+        public Message getMessage() {
+            return message;
+        }
+
+        // Error definitivo del envío (null si se envió correctamente a todos los destinatarios)
+        public MessagingException getError() {
+            return error;
+        }
+
+        // Número de intentos realizados
+        public int getAttempts() {
+            return attempts;
+        }
+
+        // Destinatarios rechazados de forma definitiva en cualquiera de los intentos
+        public List<Address> getRejectedRecipients() {
+            return rejectedRecipients;
+        }
+
+        public boolean isSuccess() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            return "DispatchResult{" +
+                    "success=" + isSuccess() +
+                    ", attempts=" + attempts +
+                    (!rejectedRecipients.isEmpty() ? ", rejected=" + rejectedRecipients : "") +
+                    (error != null ? ", error='" + error.getMessage() + '\'' : "") +
+                    '}';
+        }
+    }
+
+    // Clase para el resumen de un envío masivo
+    public static class DispatchSummary {
+        private final AtomicLong sent = new AtomicLong();
+        private final AtomicLong partial = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private Duration elapsed = Duration.ZERO;
+
+        public long getSent() {
+            return sent.get();
+        }
+
+        // Mensajes entregados solo a parte de los destinatarios por rechazos definitivos del resto
+        public long getPartial() {
+            return partial.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        public long getRetries() {
+            return retries.get();
+        }
+
+        public Duration getElapsed() {
+            return elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return "DispatchSummary{" +
+                    "sent=" + sent.get() +
+                    ", partial=" + partial.get() +
+                    ", failed=" + failed.get() +
+                    ", retries=" + retries.get() +
+                    ", elapsed=" + elapsed +
+                    '}';
+        }
+    }
+}
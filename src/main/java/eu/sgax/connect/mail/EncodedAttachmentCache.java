@@ -0,0 +1,302 @@
+package eu.sgax.connect.mail;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.DataSource;
+import jakarta.activation.FileTypeMap;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+
+/**
+ * Caché de adjuntos ya codificados en Base64.
+ * Cada archivo se codifica una sola vez, leyéndolo con un {@link FileChannel} y buffers reutilizados,
+ * y el resultado se guarda en disco. Los envíos posteriores del mismo archivo copian directamente los bytes
+ * codificados al socket SMTP, sin volver a codificar ni cargar el adjunto en memoria.
+ *
+ * <p>Las entradas se identifican por ruta, tamaño y fecha de modificación, por lo que un archivo modificado
+ * se vuelve a codificar. Cuando el tamaño total supera el máximo se descartan las entradas menos usadas;
+ * sus archivos se borran tras un periodo de gracia para no afectar a envíos en curso.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class EncodedAttachmentCache implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int POOLED_BUFFERS = 8;
+    private static final long DELETE_GRACE_MILLIS = 10 * 60 * 1000;
+    private static final Base64.Encoder MIME_ENCODER = Base64.getMimeEncoder();
+
+    private final Path cacheDir;
+    private final long maxBytes;
+    private final boolean ownsDirectory;
+    private final Map<String, EncodedAttachment> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Object> encodingLocks = new ConcurrentHashMap<>();
+    private final List<Retired> retired = new ArrayList<>();
+    private final BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(POOLED_BUFFERS);
+    private final AtomicLong sequence = new AtomicLong();
+    private long totalBytes = 0;
+
+    /**
+     * Constructor con directorio de caché explícito.
+     *
+     * @param cacheDir directorio donde guardar los adjuntos codificados
+     * @param maxBytes tamaño máximo total de la caché en bytes
+     * @throws IOException si no se puede crear el directorio
+     */
+    public EncodedAttachmentCache(Path cacheDir, long maxBytes) throws IOException {
+        this.cacheDir = Files.createDirectories(cacheDir);
+        this.maxBytes = maxBytes;
+        this.ownsDirectory = false;
+    }
+
+    /**
+     * Constructor con un directorio temporal propio, que se borra al cerrar la caché.
+     *
+     * @param maxBytes tamaño máximo total de la caché en bytes
+     * @throws IOException si no se puede crear el directorio
+     */
+    public EncodedAttachmentCache(long maxBytes) throws IOException {
+        this.cacheDir = Files.createTempDirectory("mail-attachments");
+        this.maxBytes = maxBytes;
+        this.ownsDirectory = true;
+    }
+
+    /**
+     * Crea una parte MIME para un adjunto a partir de su versión codificada, codificándolo si es necesario.
+     * Cada llamada devuelve una parte nueva que comparte el archivo codificado, por lo que puede añadirse
+     * a mensajes distintos que se envían en paralelo.
+     *
+     * @param file archivo a adjuntar
+     * @return parte MIME con el adjunto, o null si el archivo no existe
+     * @throws IOException si ocurre un error al leer o codificar el archivo
+     * @throws MessagingException si ocurre un error al construir la parte
+     */
+    public MimeBodyPart createPart(Path file) throws IOException, MessagingException {
+        EncodedAttachment encoded = get(file);
+        if (encoded == null) {
+            return null;
+        }
+        PreencodedMimeBodyPart part = new PreencodedMimeBodyPart("base64");
+        part.setDataHandler(new DataHandler(encoded));
+        // Con la codificación ya fijada no se analiza el contenido al preparar el mensaje
+        part.setHeader("Content-Transfer-Encoding", "base64");
+        part.setHeader("Content-Type", encoded.contentType);
+        // Añade también el parámetro name del Content-Type
+        part.setFileName(encoded.fileName);
+        return part;
+    }
+
+    // Número de adjuntos en caché
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Tamaño total de los adjuntos codificados en caché
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Borra todos los adjuntos codificados.
+     */
+    @Override
+    public synchronized void close() {
+        for (EncodedAttachment entry : entries.values()) {
+            deleteQuietly(entry.encodedFile);
+        }
+        entries.clear();
+        for (Retired entry : retired) {
+            deleteQuietly(entry.file);
+        }
+        retired.clear();
+        totalBytes = 0;
+        if (ownsDirectory) {
+            deleteQuietly(cacheDir);
+        }
+    }
+
+    // Obtener la entrada de un archivo, codificándolo una sola vez aunque se pida desde varios hilos
+    private EncodedAttachment get(Path file) throws IOException {
+        Path source = file.toAbsolutePath().normalize();
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(source, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        String key = source + "|" + attributes.size() + "|" + attributes.lastModifiedTime().toMillis();
+
+        EncodedAttachment cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+        Object lock = encodingLocks.computeIfAbsent(key, k -> new Object());
+        try {
+            synchronized (lock) {
+                cached = lookup(key);
+                if (cached != null) {
+                    return cached;
+                }
+                EncodedAttachment encoded = encode(source);
+                store(key, encoded);
+                return encoded;
+            }
+        } finally {
+            encodingLocks.remove(key);
+        }
+    }
+
+    private synchronized EncodedAttachment lookup(String key) {
+        EncodedAttachment entry = entries.get(key);
+        if (entry != null && !Files.exists(entry.encodedFile)) {
+            entries.remove(key);
+            totalBytes -= entry.encodedSize;
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void store(String key, EncodedAttachment encoded) {
+        entries.put(key, encoded);
+        totalBytes += encoded.encodedSize;
+        purgeRetired();
+
+        // Descartar las entradas menos usadas hasta quedar por debajo del máximo
+        Iterator<Map.Entry<String, EncodedAttachment>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, EncodedAttachment> eldest = it.next();
+            if (eldest.getValue() == encoded) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= eldest.getValue().encodedSize;
+            retired.add(new Retired(eldest.getValue().encodedFile, System.currentTimeMillis()));
+        }
+    }
+
+    private void purgeRetired() {
+        long now = System.currentTimeMillis();
+        retired.removeIf(entry -> {
+            if (now - entry.retiredAt < DELETE_GRACE_MILLIS) {
+                return false;
+            }
+            deleteQuietly(entry.file);
+            return true;
+        });
+    }
+
+    // Codificar el archivo en Base64 (líneas de 76 caracteres con CRLF) leyendo por bloques con un FileChannel
+    private EncodedAttachment encode(Path source) throws IOException {
+        Path temp = cacheDir.resolve(sequence.incrementAndGet() + "-" + System.nanoTime() + ".tmp");
+        Path target = cacheDir.resolve(temp.getFileName().toString().replace(".tmp", ".b64"));
+        ByteBuffer buffer = borrowBuffer();
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             OutputStream out = MIME_ENCODER.wrap(new BufferedOutputStream(
+                     Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW), BUFFER_SIZE))) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            releaseBuffer(buffer);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+
+        String fileName = source.getFileName().toString();
+        String contentType = FileTypeMap.getDefaultFileTypeMap().getContentType(fileName);
+        return new EncodedAttachment(target, Files.size(target), fileName, contentType);
+    }
+
+    private ByteBuffer borrowBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Ignorar errores al borrar archivos de la caché
+        }
+    }
+
+    // Adjunto codificado; se usa como DataSource de las partes MIME precodificadas
+    private static final class EncodedAttachment implements DataSource {
+        private final Path encodedFile;
+        private final long encodedSize;
+        private final String fileName;
+        private final String contentType;
+
+        private EncodedAttachment(Path encodedFile, long encodedSize, String fileName, String contentType) {
+            this.encodedFile = encodedFile;
+            this.encodedSize = encodedSize;
+            this.fileName = fileName;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new BufferedInputStream(Files.newInputStream(encodedFile), BUFFER_SIZE);
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("Adjunto codificado de solo lectura: " + fileName);
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public String getName() {
+            return fileName;
+        }
+    }
+
+    // Archivo retirado de la caché pendiente de borrar
+    private static final class Retired {
+        private final Path file;
+        private final long retiredAt;
+
+        private Retired(Path file, long retiredAt) {
+            this.file = file;
+            this.retiredAt = retiredAt;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package eu.sgax.connect.mail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+
+/**
+ * Recorrido en paralelo de varias carpetas de un buzón IMAP.
+ * Abre un número limitado de conexiones independientes y reparte entre ellas las carpetas, de modo que
+ * cada conexión procesa una carpeta cada vez. Los mensajes se entregan por lotes como
+ * {@link ReadMail.MessageSummary}, con los metadatos pedidos en un único FETCH por lote.
+ *
+ * <p>Con un {@link MailSyncCheckpoint} solo se recorren los mensajes posteriores al último UID procesado
+ * de cada carpeta, y el punto de control se guarda al terminar cada carpeta, de modo que un recorrido
+ * interrumpido continúa donde se quedó.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class MailFolderScanner {
+
+    private final ReadMail source;
+    private final int connections;
+    private int batchSize = 500;
+
+    /**
+     * Constructor para MailFolderScanner.
+     *
+     * @param source instancia de ReadMail con la configuración del servidor IMAP
+     * @param connections número máximo de conexiones simultáneas al servidor
+     */
+    public MailFolderScanner(ReadMail source, int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException("El número de conexiones debe ser al menos 1: " + connections);
+        }
+        this.source = source;
+        this.connections = connections;
+    }
+
+    // Mensajes por lote entregado al visitante (por defecto 500)
+    public MailFolderScanner setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Recorre todas las carpetas del buzón que contienen mensajes.
+     *
+     * @param visitor receptor de los lotes de mensajes
+     * @param checkpoint punto de control por carpeta (null para recorrer todo)
+     * @return resultado por carpeta
+     * @throws MessagingException si no se puede listar las carpetas
+     */
+    public ScanResult scanAll(FolderVisitor visitor, MailSyncCheckpoint checkpoint) throws MessagingException {
+        List<String> names = new ArrayList<>();
+        Store store = source.openStore();
+        try {
+            for (Folder folder : store.getDefaultFolder().list("*")) {
+                if ((folder.getType() & Folder.HOLDS_MESSAGES) != 0) {
+                    names.add(folder.getFullName());
+                }
+            }
+        } finally {
+            store.close();
+        }
+        return scan(names, visitor, checkpoint);
+    }
+
+    /**
+     * Recorre las carpetas indicadas en paralelo.
+     * El visitante puede recibir lotes de carpetas distintas desde varios hilos a la vez,
+     * pero los lotes de una misma carpeta llegan en orden de UID y desde un solo hilo.
+     *
+     * @param folders nombres completos de las carpetas
+     * @param visitor receptor de los lotes de mensajes
+     * @param checkpoint punto de control por carpeta (null para recorrer todo)
+     * @return resultado por carpeta
+     */
+    public ScanResult scan(List<String> folders, FolderVisitor visitor, MailSyncCheckpoint checkpoint) {
+        Queue<String> pending = new ConcurrentLinkedQueue<>(folders);
+        Map<String, FolderResult> results = Collections.synchronizedMap(new LinkedHashMap<>());
+        for (String folder : folders) {
+            results.put(folder, new FolderResult(folder));
+        }
+
+        int workers = Math.max(1, Math.min(connections, folders.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "mail-folder-scan");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.execute(() -> work(pending, visitor, checkpoint, results));
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Esperar a que terminen todas las conexiones
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        return new ScanResult(results);
+    }
+
+    // Bucle de cada conexión: toma carpetas pendientes hasta agotarlas
+    private void work(Queue<String> pending, FolderVisitor visitor, MailSyncCheckpoint checkpoint,
+                      Map<String, FolderResult> results) {
+        Store store = null;
+        try {
+            String name;
+            while ((name = pending.poll()) != null) {
+                FolderResult result = results.get(name);
+                try {
+                    if (store == null || !store.isConnected()) {
+                        store = source.openStore();
+                    }
+                    scanFolder(store, name, visitor, checkpoint, result);
+                } catch (MessagingException | IOException | RuntimeException e) {
+                    result.error = e;
+                }
+            }
+        } finally {
+            if (store != null) {
+                try {
+                    store.close();
+                } catch (MessagingException e) {
+                    // Ignorar errores al cerrar
+                }
+            }
+        }
+    }
+
+    private void scanFolder(Store store, String name, FolderVisitor visitor, MailSyncCheckpoint checkpoint,
+                            FolderResult result) throws MessagingException, IOException {
+        Folder folder = store.getFolder(name);
+        folder.open(Folder.READ_ONLY);
+        try {
+            if (!(folder instanceof UIDFolder)) {
+                throw new MessagingException("La carpeta no admite UIDs: " + name);
+            }
+            UIDFolder uidFolder = (UIDFolder) folder;
+            long uidValidity = uidFolder.getUIDValidity();
+            long lastUid = 0;
+            long modSeq = 0;
+            if (checkpoint != null && checkpoint.getUidValidity(name) == uidValidity) {
+                lastUid = checkpoint.getLastUid(name);
+                modSeq = checkpoint.getHighestModSeq(name);
+            }
+
+            List<Message> messages = new ArrayList<>();
+            for (Message message : uidFolder.getMessagesByUID(lastUid + 1, UIDFolder.LASTUID)) {
+                if (message != null && uidFolder.getUID(message) > lastUid) {
+                    messages.add(message);
+                }
+            }
+
+            Message[] all = messages.toArray(new Message[0]);
+            for (int i = 0; i < all.length; i += batchSize) {
+                Message[] batch = Arrays.copyOfRange(all, i, Math.min(all.length, i + batchSize));
+                List<ReadMail.MessageSummary> summaries = ReadMail.summarize(folder, batch);
+                visitor.visit(name, summaries);
+                for (ReadMail.MessageSummary summary : summaries) {
+                    lastUid = Math.max(lastUid, summary.uid);
+                }
+                result.messages += summaries.size();
+                if (checkpoint != null) {
+                    checkpoint.update(name, uidValidity, lastUid, modSeq);
+                }
+            }
+            result.lastUid = lastUid;
+            if (checkpoint != null) {
+                checkpoint.update(name, uidValidity, lastUid, modSeq);
+                checkpoint.save();
+            }
+        } finally {
+            if (folder.isOpen()) {
+                folder.close(false);
+            }
+        }
+    }
+
+    /**
+     * Receptor de los mensajes recorridos.
+     */
+    @FunctionalInterface
+    public interface FolderVisitor {
+        /**
+         * Se invoca con cada lote de mensajes de una carpeta.
+         *
+         * @param folder nombre completo de la carpeta
+         * @param messages resúmenes de los mensajes del lote, en orden de UID
+         * @throws MessagingException si el procesamiento falla; la carpeta se marca como fallida
+         */
+        void visit(String folder, List<ReadMail.MessageSummary> messages) throws MessagingException;
+    }
+
+    // Resultado del recorrido de una carpeta
+    public static class FolderResult {
+        private final String folder;
+        private int messages = 0;
+        private long lastUid = 0;
+        private Exception error;
+
+        private FolderResult(String folder) {
+            this.folder = folder;
+        }
+
+        // Nombre completo de la carpeta
+        public String getFolder() {
+            return folder;
+        }
+
+        // Número de mensajes entregados
+        public int getMessages() {
+            return messages;
+        }
+
+        // Último UID procesado
+        public long getLastUid() {
+            return lastUid;
+        }
+
+        // Error de la carpeta (null si se recorrió completa)
+        public Exception getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "FolderResult{" +
+                    "folder='" + folder + '\'' +
+                    ", messages=" + messages +
+                    ", lastUid=" + lastUid +
+                    ", error=" + error +
+                    '}';
+        }
+    }
+
+    // Resultado agregado de un recorrido
+    public static class ScanResult {
+        private final Map<String, FolderResult> folders;
+
+        private ScanResult(Map<String, FolderResult> folders) {
+            this.folders = folders;
+        }
+
+        // Resultado por carpeta
+        public Map<String, FolderResult> getFolders() {
+            return folders;
+        }
+
+        // Total de mensajes entregados
+        public long getTotalMessages() {
+            long total = 0;
+            for (FolderResult result : folders.values()) {
+                total += result.messages;
+            }
+            return total;
+        }
+
+        // Carpetas que no se pudieron recorrer completas
+        public List<FolderResult> getFailedFolders() {
+            List<FolderResult> failed = new ArrayList<>();
+            for (FolderResult result : folders.values()) {
+                if (result.error != null) {
+                    failed.add(result);
+                }
+            }
+            return failed;
+        }
+
+        // Verificar si todas las carpetas se recorrieron correctamente
+        public boolean isSuccess() {
+            return getFailedFolders().isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "ScanResult{" +
+                    "folders=" + folders.size() +
+                    ", messages=" + getTotalMessages() +
+                    ", failed=" + getFailedFolders().size() +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package eu.sgax.connect.mail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+
+import jakarta.mail.Folder;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.event.MessageCountAdapter;
+import jakarta.mail.event.MessageCountEvent;
+
+/**
+ * Vigilante de correo nuevo mediante IMAP IDLE.
+ * Mantiene una conexión propia con la carpeta en IDLE, de modo que el servidor avisa de los mensajes nuevos
+ * en cuanto llegan, sin sondeos. El IDLE se renueva periódicamente para que el servidor no cierre la conexión
+ * por inactividad. Si el servidor no admite IDLE, se sondea la carpeta con NOOP a intervalos fijos.
+ *
+ * <p>Si la conexión se pierde, se vuelve a conectar con espera creciente y se entregan los mensajes
+ * llegados mientras tanto, usando el último UID notificado. Los avisos se entregan como
+ * {@link ReadMail.MessageSummary}, sin descargar los cuerpos.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class MailIdleWatcher implements AutoCloseable {
+
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 60_000;
+
+    private final ReadMail source;
+    private final String folderName;
+    private final List<NewMailListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile Duration reIdleInterval = Duration.ofMinutes(9);
+    private volatile Duration pollInterval = Duration.ofSeconds(30);
+    private volatile Duration reconnectDelay = Duration.ofSeconds(1);
+    private volatile boolean running = false;
+    private volatile boolean idleSupported = false;
+    private volatile Store store;
+    private volatile IMAPFolder folder;
+    private Thread thread;
+    private ScheduledExecutorService scheduler;
+    private long uidValidity = -1;
+    private long lastUid = 0;
+
+    /**
+     * Constructor para MailIdleWatcher.
+     *
+     * @param source instancia de ReadMail con la configuración del servidor IMAP
+     * @param folderName carpeta a vigilar
+     */
+    public MailIdleWatcher(ReadMail source, String folderName) {
+        if (!"imap".equals(source.getProtocol())) {
+            throw new IllegalArgumentException("IMAP IDLE requiere el protocolo IMAP: " + source.getProtocol());
+        }
+        this.source = source;
+        this.folderName = folderName;
+    }
+
+    // Registrar un receptor de avisos de correo nuevo
+    public MailIdleWatcher addListener(NewMailListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    // Eliminar un receptor
+    public void removeListener(NewMailListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Intervalo de renovación del IDLE (por defecto 9 minutos, por debajo del límite de 29 minutos de RFC 2177)
+    public MailIdleWatcher setReIdleInterval(Duration reIdleInterval) {
+        this.reIdleInterval = reIdleInterval;
+        return this;
+    }
+
+    // Intervalo de sondeo con NOOP cuando el servidor no admite IDLE (por defecto 30 segundos)
+    public MailIdleWatcher setPollInterval(Duration pollInterval) {
+        this.pollInterval = pollInterval;
+        return this;
+    }
+
+    // Espera inicial antes de reconectar; se duplica en cada intento fallido hasta un minuto
+    public MailIdleWatcher setReconnectDelay(Duration reconnectDelay) {
+        this.reconnectDelay = reconnectDelay;
+        return this;
+    }
+
+    /**
+     * Conecta y empieza a vigilar la carpeta en un hilo propio.
+     * Los mensajes que ya están en la carpeta no se notifican.
+     *
+     * @throws MessagingException si no se puede establecer la primera conexión
+     */
+    public synchronized void start() throws MessagingException {
+        if (running) {
+            return;
+        }
+        running = true;
+        try {
+            open();
+            uidValidity = folder.getUIDValidity();
+            lastUid = currentLastUid(folder);
+        } catch (MessagingException e) {
+            running = false;
+            closeQuietly();
+            throw e;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "mail-idle-renew-" + folderName);
+            t.setDaemon(true);
+            return t;
+        });
+        long renew = reIdleInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::renewIdle, renew, renew, TimeUnit.MILLISECONDS);
+        thread = new Thread(this::watch, "mail-idle-" + folderName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Verificar si el vigilante está activo
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Verificar si el servidor admite IDLE (válido tras conectar)
+    public boolean isIdleSupported() {
+        return idleSupported;
+    }
+
+    /**
+     * Detiene la vigilancia y cierra la conexión.
+     */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        // Cerrar la conexión interrumpe el IDLE en curso
+        closeQuietly();
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Bucle principal: IDLE o sondeo, con reconexión si la conexión se pierde
+    private void watch() {
+        long delay = reconnectDelay.toMillis();
+        while (running) {
+            try {
+                IMAPFolder current = folder;
+                if (current == null || !current.isOpen()) {
+                    open();
+                    deliverSince();
+                    delay = reconnectDelay.toMillis();
+                    current = folder;
+                }
+                if (idleSupported) {
+                    // Vuelve tras cada respuesta del servidor o cuando otro hilo interrumpe el IDLE
+                    current.idle(true);
+                } else {
+                    Thread.sleep(pollInterval.toMillis());
+                    // Con la carpeta abierta envía NOOP y notifica los mensajes llegados
+                    current.getMessageCount();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (MessagingException | IllegalStateException e) {
+                if (!running) {
+                    return;
+                }
+                closeQuietly();
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        }
+    }
+
+    // Interrumpir el IDLE para renovarlo; cualquier operación sobre la carpeta termina el IDLE en curso
+    private void renewIdle() {
+        IMAPFolder current = folder;
+        if (current != null && idleSupported && running) {
+            try {
+                current.getMessageCount();
+            } catch (MessagingException | IllegalStateException e) {
+                // El hilo principal detectará la conexión perdida y reconectará
+            }
+        }
+    }
+
+    private void open() throws MessagingException {
+        Store newStore = source.openStore();
+        try {
+            Folder opened = newStore.getFolder(folderName);
+            if (!(opened instanceof IMAPFolder)) {
+                throw new MessagingException("IMAP IDLE requiere una carpeta IMAP: " + folderName);
+            }
+            IMAPFolder imapFolder = (IMAPFolder) opened;
+            imapFolder.open(Folder.READ_ONLY);
+            imapFolder.addMessageCountListener(new MessageCountAdapter() {
+                @Override
+                public void messagesAdded(MessageCountEvent event) {
+                    deliver(imapFolder, event.getMessages());
+                }
+            });
+            idleSupported = ((IMAPStore) newStore).hasCapability("IDLE");
+            store = newStore;
+            folder = imapFolder;
+        } catch (MessagingException | RuntimeException e) {
+            try {
+                newStore.close();
+            } catch (MessagingException ce) {
+                // Ignorar errores al cerrar una conexión fallida
+            }
+            throw e;
+        }
+    }
+
+    // Entregar los mensajes llegados mientras no había conexión
+    private void deliverSince() throws MessagingException {
+        IMAPFolder current = folder;
+        long validity = current.getUIDValidity();
+        long since;
+        synchronized (this) {
+            since = validity == uidValidity ? lastUid : -1;
+            uidValidity = validity;
+        }
+        if (since < 0) {
+            // UIDVALIDITY distinto: los UIDs anteriores no sirven, se continúa desde el estado actual
+            long last = currentLastUid(current);
+            synchronized (this) {
+                lastUid = last;
+            }
+            return;
+        }
+        List<Message> missed = new ArrayList<>();
+        for (Message message : current.getMessagesByUID(since + 1, UIDFolder.LASTUID)) {
+            if (message != null && current.getUID(message) > since) {
+                missed.add(message);
+            }
+        }
+        if (!missed.isEmpty()) {
+            // Un error aquí llega al bucle principal, que reconecta con espera y vuelve a intentarlo
+            notifyListeners(ReadMail.summarize(current, missed.toArray(new Message[0])));
+        }
+    }
+
+    // Resumir y notificar los mensajes avisados por el servidor
+    private void deliver(IMAPFolder source, Message[] messages) {
+        List<ReadMail.MessageSummary> summaries;
+        try {
+            summaries = ReadMail.summarize(source, messages);
+        } catch (MessagingException | IllegalStateException e) {
+            // Cerrar la conexión fuerza la reconexión, que recupera por UID los mensajes no notificados
+            if (source == folder) {
+                closeQuietly();
+            }
+            return;
+        }
+        notifyListeners(summaries);
+    }
+
+    // Notificar los mensajes nuevos, descartando los ya notificados
+    private void notifyListeners(List<ReadMail.MessageSummary> summaries) {
+        List<ReadMail.MessageSummary> fresh = new ArrayList<>(summaries.size());
+        synchronized (this) {
+            for (ReadMail.MessageSummary summary : summaries) {
+                if (summary.uid > lastUid) {
+                    fresh.add(summary);
+                    lastUid = summary.uid;
+                }
+            }
+        }
+        if (fresh.isEmpty()) {
+            return;
+        }
+        for (NewMailListener listener : listeners) {
+            try {
+                listener.onNewMessages(fresh);
+            } catch (RuntimeException e) {
+                // Un receptor con errores no detiene la vigilancia
+            }
+        }
+    }
+
+    // Último UID asignado en la carpeta
+    private static long currentLastUid(IMAPFolder folder) throws MessagingException {
+        long next = folder.getUIDNext();
+        if (next > 0) {
+            return next - 1;
+        }
+        int count = folder.getMessageCount();
+        return count == 0 ? 0 : folder.getUID(folder.getMessage(count));
+    }
+
+    private void closeQuietly() {
+        IMAPFolder currentFolder = folder;
+        Store currentStore = store;
+        folder = null;
+        store = null;
+        try {
+            if (currentFolder != null && currentFolder.isOpen()) {
+                currentFolder.close(false);
+            }
+        } catch (MessagingException | IllegalStateException e) {
+            // Ignorar errores al cerrar
+        }
+        try {
+            if (currentStore != null) {
+                currentStore.close();
+            }
+        } catch (MessagingException e) {
+            // Ignorar errores al cerrar
+        }
+    }
+
+    /**
+     * Receptor de avisos de correo nuevo.
+     */
+    @FunctionalInterface
+    public interface NewMailListener {
+        /**
+         * Se invoca con los mensajes nuevos de la carpeta, en orden de UID.
+         *
+         * @param messages resúmenes de los mensajes nuevos
+         */
+        void onNewMessages(List<ReadMail.MessageSummary> messages);
+    }
+}
@@ -0,0 +1,192 @@
+package eu.sgax.connect.mail;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import jakarta.mail.Flags;
+import jakarta.mail.Message;
+import jakarta.mail.search.AndTerm;
+import jakarta.mail.search.BodyTerm;
+import jakarta.mail.search.ComparisonTerm;
+import jakarta.mail.search.FlagTerm;
+import jakarta.mail.search.FromStringTerm;
+import jakarta.mail.search.HeaderTerm;
+import jakarta.mail.search.NotTerm;
+import jakarta.mail.search.OrTerm;
+import jakarta.mail.search.ReceivedDateTerm;
+import jakarta.mail.search.RecipientStringTerm;
+import jakarta.mail.search.SearchTerm;
+import jakarta.mail.search.SentDateTerm;
+import jakarta.mail.search.SizeTerm;
+import jakarta.mail.search.SubjectTerm;
+
+/**
+ * Consulta de búsqueda de correos que se ejecuta en el servidor.
+ * Los criterios se combinan con Y lógico y se traducen a un {@link SearchTerm}, que en IMAP se envía como
+ * un único comando SEARCH, en lugar de descargar todos los mensajes y filtrarlos en local.
+ *
+ * <p>Ejemplo:</p>
+ * <pre>
+ * MailQuery query = new MailQuery()
+ *         .from("facturas@proveedor.com")
+ *         .receivedSince(desde)
+ *         .largerThan(10_000)
+ *         .hasAttachments();
+ * List&lt;ReadMail.MessageSummary&gt; resultados = readMail.search(query);
+ * </pre>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class MailQuery {
+
+    private final List<SearchTerm> terms = new ArrayList<>();
+
+    // Remitente que contiene el texto
+    public MailQuery from(String text) {
+        return add(new FromStringTerm(text));
+    }
+
+    // Destinatario (To) que contiene el texto
+    public MailQuery to(String text) {
+        return add(new RecipientStringTerm(Message.RecipientType.TO, text));
+    }
+
+    // Destinatario en copia (Cc) que contiene el texto
+    public MailQuery cc(String text) {
+        return add(new RecipientStringTerm(Message.RecipientType.CC, text));
+    }
+
+    // Asunto que contiene el texto
+    public MailQuery subject(String text) {
+        return add(new SubjectTerm(text));
+    }
+
+    // Cuerpo que contiene el texto
+    public MailQuery body(String text) {
+        return add(new BodyTerm(text));
+    }
+
+    // Cabecera que contiene el texto
+    public MailQuery header(String name, String text) {
+        return add(new HeaderTerm(name, text));
+    }
+
+    // Recibido en la fecha indicada o después (IMAP compara solo el día)
+    public MailQuery receivedSince(Date date) {
+        return add(new ReceivedDateTerm(ComparisonTerm.GE, date));
+    }
+
+    // Recibido antes de la fecha indicada (IMAP compara solo el día)
+    public MailQuery receivedBefore(Date date) {
+        return add(new ReceivedDateTerm(ComparisonTerm.LT, date));
+    }
+
+    // Enviado en la fecha indicada o después (IMAP compara solo el día)
+    public MailQuery sentSince(Date date) {
+        return add(new SentDateTerm(ComparisonTerm.GE, date));
+    }
+
+    // Enviado antes de la fecha indicada (IMAP compara solo el día)
+    public MailQuery sentBefore(Date date) {
+        return add(new SentDateTerm(ComparisonTerm.LT, date));
+    }
+
+    // Tamaño mayor que el indicado en bytes
+    public MailQuery largerThan(int bytes) {
+        return add(new SizeTerm(ComparisonTerm.GT, bytes));
+    }
+
+    // Tamaño menor que el indicado en bytes
+    public MailQuery smallerThan(int bytes) {
+        return add(new SizeTerm(ComparisonTerm.LT, bytes));
+    }
+
+    // Solo mensajes no leídos
+    public MailQuery unread() {
+        return add(new FlagTerm(new Flags(Flags.Flag.SEEN), false));
+    }
+
+    // Solo mensajes leídos
+    public MailQuery read() {
+        return add(new FlagTerm(new Flags(Flags.Flag.SEEN), true));
+    }
+
+    // Solo mensajes marcados
+    public MailQuery flagged() {
+        return add(new FlagTerm(new Flags(Flags.Flag.FLAGGED), true));
+    }
+
+    // Solo mensajes respondidos
+    public MailQuery answered() {
+        return add(new FlagTerm(new Flags(Flags.Flag.ANSWERED), true));
+    }
+
+    /**
+     * Solo mensajes con adjuntos.
+     * IMAP no tiene un criterio para adjuntos; se aproxima con los mensajes de tipo multipart/mixed,
+     * que es la estructura habitual de un correo con adjuntos.
+     *
+     * @return esta consulta
+     */
+    public MailQuery hasAttachments() {
+        return add(new HeaderTerm("Content-Type", "multipart/mixed"));
+    }
+
+    // Cumple al menos una de las consultas
+    public MailQuery anyOf(MailQuery... queries) {
+        List<SearchTerm> alternatives = new ArrayList<>();
+        for (MailQuery query : queries) {
+            SearchTerm term = query.toSearchTerm();
+            if (term == null) {
+                // Una alternativa sin criterios coincide con todo
+                return this;
+            }
+            alternatives.add(term);
+        }
+        if (alternatives.isEmpty()) {
+            return this;
+        }
+        return add(alternatives.size() == 1 ? alternatives.get(0) : new OrTerm(alternatives.toArray(new SearchTerm[0])));
+    }
+
+    // No cumple la consulta
+    public MailQuery not(MailQuery query) {
+        SearchTerm term = query.toSearchTerm();
+        if (term == null) {
+            throw new IllegalArgumentException("No se puede negar una consulta sin criterios.");
+        }
+        return add(new NotTerm(term));
+    }
+
+    // Añadir un criterio propio
+    public MailQuery matching(SearchTerm term) {
+        return add(term);
+    }
+
+    // Verificar si la consulta no tiene criterios (coincide con todos los mensajes)
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    /**
+     * Traduce la consulta a un criterio de búsqueda de Jakarta Mail.
+     *
+     * @return criterio combinado, o null si la consulta no tiene criterios
+     */
+    public SearchTerm toSearchTerm() {
+        if (terms.isEmpty()) {
+            return null;
+        }
+        if (terms.size() == 1) {
+            return terms.get(0);
+        }
+        return new AndTerm(terms.toArray(new SearchTerm[0]));
+    }
+
+    private MailQuery add(SearchTerm term) {
+        terms.add(term);
+        return this;
+    }
+}
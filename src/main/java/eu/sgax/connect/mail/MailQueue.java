@@ -0,0 +1,502 @@
+package eu.sgax.connect.mail;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Cola de envío asíncrono de correos.
+ * Los mensajes se encolan en memoria en una cola acotada y se envían en segundo plano,
+ * de modo que el llamante no espera la conversación SMTP. Cada envío devuelve un {@link CompletableFuture}.
+ *
+ * <p>Los fallos temporales (respuestas 4xx y errores de conexión) se reintentan con espera exponencial
+ * ({@link #setMaxRetries(int)}, {@link #setRetryDelay(Duration)}), solo para los destinatarios pendientes.
+ * Si algún destinatario se rechaza de forma definitiva, el future falla con una {@link SendFailedException}
+ * cuyas direcciones no válidas son los rechazados, aunque el mensaje se haya entregado al resto.</p>
+ *
+ * <p>Opcionalmente los mensajes se guardan en un directorio de spool antes de encolarse, y se borran tras
+ * enviarse. Los mensajes que quedan en el spool (por ejemplo tras un reinicio) se vuelven a encolar al crear
+ * la cola. Solo los rechazados de forma definitiva (respuestas 5xx) se mueven al subdirectorio {@code failed};
+ * los que agotan los reintentos por fallos temporales siguen en el spool y se envían en la siguiente ejecución.
+ * Cuando un envío solo falla para parte de los destinatarios, los pendientes se guardan junto al mensaje en un
+ * archivo {@code .rcpt}, y la recuperación envía solo a ellos.</p>
+ *
+ * <p>Cuando la cola está llena, {@link #submit(MimeMessage)} bloquea al llamante hasta que haya espacio
+ * o, si se ha configurado {@link #setEnqueueTimeout(Duration)}, hasta agotar el tiempo, y entonces rechaza el mensaje.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class MailQueue implements AutoCloseable {
+
+    private static final String SPOOL_EXTENSION = ".eml";
+    private static final String RECIPIENTS_EXTENSION = ".rcpt";
+    private static final String FAILED_DIR = "failed";
+
+    private final SendMail sender;
+    private final BlockingQueue<QueuedMail> queue;
+    private final Path spoolDir;
+    private final List<Thread> workers = new ArrayList<>();
+    private final Set<Thread> retries = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile Duration enqueueTimeout;
+    private volatile boolean syncSpool = true;
+    private volatile int maxRetries = 3;
+    private volatile Duration retryDelay = Duration.ofMinutes(1);
+    private volatile boolean running = true;
+
+    /**
+     * Constructor de una cola solo en memoria.
+     *
+     * @param sender instancia de SendMail para el envío
+     * @param capacity número máximo de mensajes pendientes
+     * @param workerCount número de envíos simultáneos
+     */
+    public MailQueue(SendMail sender, int capacity, int workerCount) {
+        this.sender = sender;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.spoolDir = null;
+        startWorkers(workerCount);
+    }
+
+    /**
+     * Constructor de una cola con spool en disco.
+     * Los mensajes pendientes de una ejecución anterior se vuelven a encolar en segundo plano; el spool se lee
+     * antes de volver, de modo que los mensajes encolados después no se recuperan dos veces.
+     *
+     * @param sender instancia de SendMail para el envío
+     * @param capacity número máximo de mensajes pendientes en memoria
+     * @param workerCount número de envíos simultáneos
+     * @param spoolDir directorio del spool
+     * @throws IOException si no se puede crear el directorio del spool
+     */
+    public MailQueue(SendMail sender, int capacity, int workerCount, Path spoolDir) throws IOException {
+        this.sender = sender;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.spoolDir = spoolDir;
+        Files.createDirectories(spoolDir.resolve(FAILED_DIR));
+        List<Path> pending = listSpool();
+        startWorkers(workerCount);
+        Thread.ofVirtual().name("mail-spool-recovery").start(() -> recoverSpool(pending));
+    }
+
+    /**
+     * Establece el tiempo máximo de espera cuando la cola está llena.
+     *
+     * @param enqueueTimeout tiempo máximo de espera (null para esperar indefinidamente, cero para rechazar inmediatamente)
+     */
+    public void setEnqueueTimeout(Duration enqueueTimeout) {
+        this.enqueueTimeout = enqueueTimeout;
+    }
+
+    /**
+     * Indica si cada mensaje del spool se fuerza a disco antes de encolarse (por defecto true).
+     *
+     * @param syncSpool true para forzar la escritura a disco
+     */
+    public void setSyncSpool(boolean syncSpool) {
+        this.syncSpool = syncSpool;
+    }
+
+    // Número máximo de reintentos por mensaje ante fallos temporales
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = Math.max(0, maxRetries);
+    }
+
+    // Espera antes del primer reintento; se duplica en cada reintento posterior
+    public void setRetryDelay(Duration retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Encola un mensaje para su envío asíncrono.
+     *
+     * @param message mensaje a enviar
+     * @return future que se completa cuando el mensaje se ha enviado a todos los destinatarios, o con error si
+     *         falla, se rechaza o algún destinatario se rechaza de forma definitiva
+     */
+    public CompletableFuture<Void> submit(MimeMessage message) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new RejectedExecutionException("La cola de correo está cerrada."));
+            return future;
+        }
+
+        Path spoolFile = null;
+        try {
+            if (spoolDir != null) {
+                spoolFile = spool(message);
+            }
+            if (!enqueue(new QueuedMail(message, spoolFile, future))) {
+                discardSpool(spoolFile);
+                future.completeExceptionally(new RejectedExecutionException("La cola de correo está llena."));
+            }
+        } catch (IOException | MessagingException e) {
+            discardSpool(spoolFile);
+            future.completeExceptionally(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            discardSpool(spoolFile);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Construye y encola un correo simple en texto plano.
+     *
+     * @param to dirección de correo del destinatario
+     * @param subject asunto del correo
+     * @param body cuerpo del correo en texto plano
+     * @return future que se completa cuando el mensaje se ha enviado
+     */
+    public CompletableFuture<Void> sendEmailAsync(String to, String subject, String body) {
+        try {
+            return submit(sender.buildMessage(to, null, null, subject, body, null, false));
+        } catch (MessagingException | IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Construye y encola un correo con todas las opciones.
+     *
+     * @param to dirección(es) de correo de los destinatarios
+     * @param cc dirección(es) para copia (puede ser null)
+     * @param bcc dirección(es) para copia oculta (puede ser null)
+     * @param subject asunto del correo
+     * @param body cuerpo del correo
+     * @param attachments lista de rutas de archivos adjuntos (puede ser null)
+     * @param isHtml true si el cuerpo es HTML
+     * @return future que se completa cuando el mensaje se ha enviado
+     */
+    public CompletableFuture<Void> sendEmailAsync(String to, String cc, String bcc, String subject, String body,
+                                                  List<Path> attachments, boolean isHtml) {
+        try {
+            return submit(sender.buildMessage(to, cc, bcc, subject, body, attachments, isHtml));
+        } catch (MessagingException | IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Número de mensajes pendientes en memoria
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    // Espacio libre en la cola
+    public int getRemainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    /**
+     * Deja de aceptar mensajes y espera a que se envíen los pendientes.
+     * Los mensajes que no se envíen a tiempo permanecen en el spool, si está configurado.
+     *
+     * @param timeout tiempo máximo de espera
+     * @throws InterruptedException si el hilo se interrumpe mientras espera
+     */
+    public void shutdown(Duration timeout) throws InterruptedException {
+        running = false;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (Thread worker : workers) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                worker.join(Duration.ofNanos(remaining));
+            }
+            worker.interrupt();
+        }
+        for (Thread retry : retries) {
+            retry.interrupt();
+        }
+        // Los pendientes no enviados siguen en el spool para la próxima ejecución
+        QueuedMail pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new RejectedExecutionException("La cola de correo se ha cerrado."));
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            shutdown(Duration.ofSeconds(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean enqueue(QueuedMail mail) throws InterruptedException {
+        Duration timeout = enqueueTimeout;
+        if (timeout == null) {
+            queue.put(mail);
+            return true;
+        }
+        return queue.offer(mail, timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void startWorkers(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("El número de hilos debe ser al menos 1: " + workerCount);
+        }
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofVirtual().name("mail-queue-" + i).start(this::work));
+        }
+    }
+
+    // Bucle de envío de cada hilo
+    private void work() {
+        while (running || !queue.isEmpty()) {
+            QueuedMail mail;
+            try {
+                mail = queue.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (mail == null) {
+                continue;
+            }
+            deliver(mail);
+        }
+    }
+
+    // Enviar un mensaje y decidir qué hacer si falla
+    private void deliver(QueuedMail mail) {
+        mail.attempts++;
+        try {
+            if (mail.recipients == null) {
+                mail.recipients = SmtpConnectionPool.prepare(mail.message);
+            }
+            sender.send(mail.message, mail.recipients);
+            discardSpool(mail.spoolFile);
+            mail.delivered.addAll(List.of(mail.recipients));
+            if (mail.rejected.isEmpty()) {
+                mail.future.complete(null);
+            } else {
+                mail.future.completeExceptionally(partialFailure(mail));
+            }
+        } catch (MessagingException e) {
+            Address[] retry = new Address[0];
+            if (mail.recipients != null) {
+                retry = SmtpConnectionPool.retryableRecipients(e, mail.recipients);
+                mail.rejected.addAll(List.of(SmtpConnectionPool.rejectedRecipients(e, mail.recipients)));
+                if (e instanceof SendFailedException failed && failed.getValidSentAddresses() != null) {
+                    mail.delivered.addAll(List.of(failed.getValidSentAddresses()));
+                }
+            }
+            if (retry.length == 0) {
+                // Rechazo definitivo: no tiene sentido volver a intentarlo
+                moveToFailed(mail.spoolFile);
+                mail.future.completeExceptionally(e);
+                return;
+            }
+            if (retry.length < mail.recipients.length) {
+                // Solo los pendientes: los ya aceptados o rechazados no deben recibirlo de nuevo al recuperar el spool
+                mail.recipients = retry;
+                saveRecipients(mail);
+            }
+            if (mail.attempts <= maxRetries && running) {
+                scheduleRetry(mail, e);
+            } else {
+                // Fallo temporal sin más reintentos: sigue en el spool para la próxima ejecución
+                mail.future.completeExceptionally(e);
+            }
+        } catch (RuntimeException e) {
+            mail.future.completeExceptionally(e);
+        }
+    }
+
+    // Error con los destinatarios rechazados de forma definitiva de un mensaje entregado al resto
+    private static SendFailedException partialFailure(QueuedMail mail) {
+        Address[] rejected = mail.rejected.toArray(new Address[0]);
+        return new SendFailedException("Destinatarios rechazados de forma definitiva: " + InternetAddress.toString(rejected),
+                null, mail.delivered.toArray(new Address[0]), null, rejected);
+    }
+
+    // Guardar junto al mensaje del spool los destinatarios pendientes
+    private void saveRecipients(QueuedMail mail) {
+        if (mail.spoolFile == null) {
+            return;
+        }
+        Path target = recipientsFile(mail.spoolFile);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        List<String> lines = new ArrayList<>();
+        for (Address address : mail.recipients) {
+            lines.add(address.toString());
+        }
+        try {
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Sin el archivo la recuperación enviaría a todos los destinatarios: se descarta el temporal
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Ignorar errores al borrar el temporal
+            }
+        }
+    }
+
+    // Destinatarios pendientes guardados junto al mensaje (null si se envía a todos los de las cabeceras)
+    private static Address[] loadRecipients(Path spoolFile) throws IOException, MessagingException {
+        Path file = recipientsFile(spoolFile);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        List<Address> recipients = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                recipients.add(new InternetAddress(line));
+            }
+        }
+        return recipients.toArray(new Address[0]);
+    }
+
+    private static Path recipientsFile(Path spoolFile) {
+        String name = spoolFile.getFileName().toString();
+        return spoolFile.resolveSibling(name.substring(0, name.length() - SPOOL_EXTENSION.length()) + RECIPIENTS_EXTENSION);
+    }
+
+    // Volver a encolar el mensaje tras la espera del reintento
+    private void scheduleRetry(QueuedMail mail, MessagingException error) {
+        long delay = retryDelay.toMillis() << Math.min(mail.attempts - 1, 16);
+        Thread retry = Thread.ofVirtual().name("mail-queue-retry").unstarted(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(delay);
+                if (running) {
+                    queue.put(mail);
+                    return;
+                }
+            } catch (InterruptedException e) {
+                // La cola se está cerrando
+            } finally {
+                retries.remove(Thread.currentThread());
+            }
+            mail.future.completeExceptionally(error);
+        });
+        retries.add(retry);
+        retry.start();
+    }
+
+    // Guardar el mensaje en el spool; se escribe en un temporal y se renombra para no recuperar archivos a medias
+    private Path spool(MimeMessage message) throws IOException, MessagingException {
+        message.saveChanges();
+        String name = System.currentTimeMillis() + "-" + sequence.incrementAndGet() + "-" + ProcessHandle.current().pid();
+        Path temp = spoolDir.resolve(name + ".tmp");
+        Path target = spoolDir.resolve(name + SPOOL_EXTENSION);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            message.writeTo(out);
+            out.flush();
+            if (syncSpool) {
+                channel.force(true);
+            }
+        } catch (IOException | MessagingException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    // Mensajes que quedaron en el spool de una ejecución anterior, en orden de llegada
+    private List<Path> listSpool() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(spoolDir, "*" + SPOOL_EXTENSION)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    // Volver a encolar los mensajes que quedaron en el spool
+    private void recoverSpool(List<Path> files) {
+        for (Path file : files) {
+            if (!running) {
+                return;
+            }
+            try (InputStream in = Files.newInputStream(file)) {
+                MimeMessage message = new MimeMessage(sender.getSession(), in);
+                QueuedMail mail = new QueuedMail(message, file, new CompletableFuture<>());
+                mail.recipients = loadRecipients(file);
+                queue.put(mail);
+            } catch (IOException | MessagingException e) {
+                moveToFailed(file);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void discardSpool(Path spoolFile) {
+        if (spoolFile != null) {
+            try {
+                // Primero el mensaje: un .rcpt sin mensaje no se recupera
+                Files.deleteIfExists(spoolFile);
+                Files.deleteIfExists(recipientsFile(spoolFile));
+            } catch (IOException e) {
+                // Se volverá a intentar enviar en la próxima recuperación
+            }
+        }
+    }
+
+    private void moveToFailed(Path spoolFile) {
+        if (spoolFile != null) {
+            try {
+                Files.move(spoolFile, spoolDir.resolve(FAILED_DIR).resolve(spoolFile.getFileName()),
+                        StandardCopyOption.REPLACE_EXISTING);
+                Path recipients = recipientsFile(spoolFile);
+                if (Files.exists(recipients)) {
+                    Files.move(recipients, spoolDir.resolve(FAILED_DIR).resolve(recipients.getFileName()),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                // Se mantiene en el spool
+            }
+        }
+    }
+
+    // Mensaje pendiente de envío
+    private static final class QueuedMail {
+        private final MimeMessage message;
+        private final Path spoolFile;
+        private final CompletableFuture<Void> future;
+        private final Set<Address> delivered = new LinkedHashSet<>();
+        private final Set<Address> rejected = new LinkedHashSet<>();
+        private Address[] recipients;
+        private int attempts = 0;
+
+        private QueuedMail(MimeMessage message, Path spoolFile, CompletableFuture<Void> future) {
+            this.message = message;
+            this.spoolFile = spoolFile;
+            this.future = future;
+        }
+    }
+}
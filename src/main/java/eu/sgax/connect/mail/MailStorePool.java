@@ -0,0 +1,456 @@
+package eu.sgax.connect.mail;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.sgax.connect.metrics.MetricsRegistry;
+
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Store;
+
+/**
+ * Pool de conexiones IMAP y POP3 compartido entre instancias de {@link ReadMail}.
+ * Mantiene conexiones {@link Store} ya autenticadas por servidor y usuario, y las presta junto con la carpeta
+ * abierta, evitando la conexión TCP, TLS y el LOGIN de cada consulta.
+ *
+ * <p>Cada cuenta tiene un número máximo de conexiones simultáneas. Las conexiones que llevan un tiempo sin usarse
+ * se validan con NOOP antes de prestarlas y se sustituyen por una nueva si el servidor las ha cerrado; un hilo en
+ * segundo plano cierra las que superan el tiempo de inactividad. En IMAP la carpeta se conserva abierta entre
+ * préstamos; en POP3 se reabre en cada préstamo para ver los mensajes nuevos. Es seguro entre hilos: cada préstamo
+ * usa su conexión en exclusiva.</p>
+ *
+ * <p>Cada conexión guarda un resumen de la contraseña con la que se autenticó y solo se presta a instancias de
+ * ReadMail con la misma contraseña; con otra se abre una conexión nueva, que el servidor debe aceptar. Cuando una
+ * contraseña nueva se acepta, las conexiones libres abiertas con la anterior se cierran.</p>
+ *
+ * <p>Ejemplo:</p>
+ * <pre>
+ * MailStorePool pool = new MailStorePool(4, Duration.ofMinutes(5));
+ * ReadMail readMail = new ReadMail(host, usuario, clave);
+ * readMail.setStorePool(pool);
+ * readMail.connect();      // toma una conexión del pool
+ * ...
+ * readMail.disconnect();   // la devuelve al pool sin cerrarla
+ * </pre>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class MailStorePool implements AutoCloseable {
+
+    // Tiempo de inactividad a partir del cual se valida la conexión con NOOP antes de prestarla
+    private static final long VALIDATE_AFTER_MILLIS = 2000;
+    // Valor de la etiqueta host en las métricas: el pool agrupa conexiones a varios servidores
+    private static final String ALL_HOSTS = "all";
+
+    private final int maxPerAccount;
+    private final long idleTimeoutMillis;
+    private final Map<String, AccountPool> accounts = new ConcurrentHashMap<>();
+    private final byte[] salt = new byte[16];
+    private volatile ScheduledExecutorService evictor;
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong leases = new AtomicLong();
+    private volatile long maxWaitMillis = -1;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor para MailStorePool.
+     *
+     * @param maxPerAccount número máximo de conexiones simultáneas por servidor y usuario
+     * @param idleTimeout tiempo de inactividad tras el que se cierra una conexión libre
+     */
+    public MailStorePool(int maxPerAccount, Duration idleTimeout) {
+        if (maxPerAccount < 1) {
+            throw new IllegalArgumentException("El número de conexiones debe ser al menos 1: " + maxPerAccount);
+        }
+        this.maxPerAccount = maxPerAccount;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        new SecureRandom().nextBytes(salt);
+    }
+
+    // Tiempo máximo de espera por una conexión libre (por defecto sin límite)
+    public MailStorePool setMaxWait(Duration maxWait) {
+        this.maxWaitMillis = maxWait == null ? -1 : maxWait.toMillis();
+        return this;
+    }
+
+    /**
+     * Toma una conexión de la cuenta de la instancia de ReadMail con la carpeta indicada abierta en solo lectura.
+     * Bloquea si la cuenta ya tiene todas sus conexiones en uso. Solo se reutilizan conexiones abiertas con la
+     * misma contraseña; si no hay ninguna se abre una nueva con las credenciales de la instancia.
+     *
+     * @param account instancia de ReadMail con la configuración del servidor
+     * @param folderName nombre completo de la carpeta
+     * @return préstamo que debe cerrarse para devolver la conexión
+     * @throws MessagingException si no se puede conectar, abrir la carpeta o se agota la espera
+     */
+    public Lease acquire(ReadMail account, String folderName) throws MessagingException {
+        if (closed) {
+            throw new MessagingException("El pool de conexiones de correo está cerrado.");
+        }
+        if (evictor == null && idleTimeoutMillis > 0) {
+            startEvictor();
+        }
+        AccountPool pool = accounts.computeIfAbsent(account.getPoolKey(), key -> new AccountPool());
+        byte[] credentials = account.credentialDigest(salt);
+        pool.acquirePermit();
+
+        PooledStore pooled;
+        try {
+            while ((pooled = pool.pollIdle(credentials)) != null) {
+                if (isValid(pooled)) {
+                    break;
+                }
+                // Conexión caducada o cerrada por el servidor: se sustituye por una nueva
+                discard(pooled);
+            }
+            if (pooled == null) {
+                pooled = new PooledStore(account.openStore(), account.getProtocol(), credentials);
+                open.incrementAndGet();
+                connectionsCreated.incrementAndGet();
+                // El servidor ha aceptado estas credenciales: las conexiones con otra contraseña dejan de prestarse
+                pool.updateCredentials(credentials);
+            }
+        } catch (MessagingException | RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+
+        Lease lease = new Lease(pool, pooled);
+        try {
+            lease.openFolder(folderName);
+        } catch (MessagingException | RuntimeException e) {
+            lease.invalidate();
+            lease.close();
+            throw e;
+        }
+        leases.incrementAndGet();
+        return lease;
+    }
+
+    // Número de conexiones abiertas (en uso o libres)
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    // Número de conexiones libres
+    public int getIdleConnections() {
+        int total = 0;
+        for (AccountPool pool : accounts.values()) {
+            total += pool.idle.size();
+        }
+        return total;
+    }
+
+    // Número de conexiones en uso
+    public int getActiveConnections() {
+        int total = 0;
+        for (AccountPool pool : accounts.values()) {
+            total += maxPerAccount - pool.permits.availablePermits();
+        }
+        return total;
+    }
+
+    // Número máximo de conexiones por cuenta
+    public int getMaxPerAccount() {
+        return maxPerAccount;
+    }
+
+    // Total de conexiones establecidas desde la creación del pool
+    public long getConnectionsCreated() {
+        return connectionsCreated.get();
+    }
+
+    // Total de préstamos concedidos; la diferencia con las conexiones creadas son los reutilizados
+    public long getLeases() {
+        return leases.get();
+    }
+
+    /**
+     * Publica el estado del pool como indicadores: conexiones abiertas, libres y en uso,
+     * conexiones creadas y préstamos concedidos, de los que se obtiene la tasa de reutilización.
+     * Las etiquetas son las mismas que las del pool SMTP de {@link SendMail#setMetrics(MetricsRegistry)};
+     * como el pool puede servir a varios servidores, la etiqueta {@code host} vale {@code all}.
+     *
+     * @param registry registro de métricas
+     * @param name nombre del pool en la etiqueta {@code pool}
+     */
+    public void registerMetrics(MetricsRegistry registry, String name) {
+        registry.gauge("connect.pool.connections", this::getOpenConnections, "pool", name, "host", ALL_HOSTS, "state", "open");
+        registry.gauge("connect.pool.connections", this::getIdleConnections, "pool", name, "host", ALL_HOSTS, "state", "idle");
+        registry.gauge("connect.pool.connections", this::getActiveConnections, "pool", name, "host", ALL_HOSTS, "state", "active");
+        registry.gauge("connect.pool.created", this::getConnectionsCreated, "pool", name, "host", ALL_HOSTS);
+        registry.gauge("connect.pool.leases", this::getLeases, "pool", name, "host", ALL_HOSTS);
+    }
+
+    /**
+     * Cierra las conexiones libres que superan el tiempo de inactividad.
+     * Se ejecuta periódicamente en segundo plano; puede llamarse también directamente.
+     */
+    public void evictIdle() {
+        for (AccountPool pool : accounts.values()) {
+            // Quitar solo las caducadas, sin sacar las demás de la cola mientras otros hilos la usan
+            for (PooledStore pooled : pool.idle) {
+                if (pooled.isExpired() && pool.idle.removeFirstOccurrence(pooled)) {
+                    discard(pooled);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones libres y detiene el cierre periódico de las inactivas.
+     * Las conexiones en uso se cierran al devolverse.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (evictor != null) {
+                evictor.shutdownNow();
+            }
+        }
+        for (AccountPool pool : accounts.values()) {
+            PooledStore pooled;
+            while ((pooled = pool.idle.poll()) != null) {
+                discard(pooled);
+            }
+        }
+    }
+
+    // Iniciar el cierre periódico de las conexiones inactivas con el primer préstamo
+    private synchronized void startEvictor() {
+        if (evictor != null || closed) {
+            return;
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mail-store-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        executor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        evictor = executor;
+    }
+
+    // Comprobar que una conexión libre sigue siendo utilizable
+    private boolean isValid(PooledStore pooled) {
+        if (pooled.isExpired()) {
+            return false;
+        }
+        if (pooled.idleMillis() <= VALIDATE_AFTER_MILLIS) {
+            return true;
+        }
+        try {
+            // isConnected() envía NOOP y detecta conexiones cerradas por el servidor
+            if (!pooled.store.isConnected()) {
+                return false;
+            }
+            if (pooled.folder != null && pooled.folder.isOpen()) {
+                // En una carpeta IMAP abierta, getMessageCount() envía NOOP por su propia conexión
+                pooled.folder.getMessageCount();
+            }
+            return pooled.folder == null || pooled.folder.isOpen();
+        } catch (MessagingException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    // Devolver una conexión a su cuenta o cerrarla
+    private void release(AccountPool pool, PooledStore pooled, boolean reusable) {
+        try {
+            pooled.lastUsed = System.currentTimeMillis();
+            if (reusable && !closed && !"imap".equals(pooled.protocol)) {
+                // En POP3 la carpeta refleja el buzón al abrirla; se reabre en el siguiente préstamo
+                reusable = closeFolder(pooled);
+            }
+            if (!reusable || closed || !pool.isCurrent(pooled.credentials)) {
+                discard(pooled);
+            } else {
+                // La conexión más reciente se reutiliza primero; las antiguas caducan al final de la cola
+                pool.idle.offerFirst(pooled);
+            }
+        } finally {
+            pool.permits.release();
+        }
+    }
+
+    private static boolean closeFolder(PooledStore pooled) {
+        if (pooled.folder == null) {
+            return true;
+        }
+        try {
+            if (pooled.folder.isOpen()) {
+                pooled.folder.close(false);
+            }
+            pooled.folder = null;
+            return true;
+        } catch (MessagingException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledStore pooled) {
+        open.decrementAndGet();
+        closeFolder(pooled);
+        try {
+            pooled.store.close();
+        } catch (MessagingException e) {
+            // Ignorar errores al cerrar conexiones descartadas
+        }
+    }
+
+    // Conexiones libres y límite de una cuenta
+    private class AccountPool {
+        private final BlockingDeque<PooledStore> idle = new LinkedBlockingDeque<>();
+        private final Semaphore permits = new Semaphore(maxPerAccount, true);
+        // Resumen de las últimas credenciales aceptadas por el servidor
+        private volatile byte[] credentials;
+
+        // Tomar la conexión libre más reciente abierta con las mismas credenciales
+        private PooledStore pollIdle(byte[] credentials) {
+            for (PooledStore pooled : idle) {
+                if (MessageDigest.isEqual(pooled.credentials, credentials) && idle.removeFirstOccurrence(pooled)) {
+                    return pooled;
+                }
+            }
+            return null;
+        }
+
+        // Registrar credenciales aceptadas y cerrar las conexiones libres abiertas con otras
+        private void updateCredentials(byte[] accepted) {
+            byte[] current = credentials;
+            credentials = accepted;
+            if (current == null || MessageDigest.isEqual(current, accepted)) {
+                return;
+            }
+            for (PooledStore pooled : idle) {
+                if (!MessageDigest.isEqual(pooled.credentials, accepted) && idle.removeFirstOccurrence(pooled)) {
+                    discard(pooled);
+                }
+            }
+        }
+
+        private boolean isCurrent(byte[] digest) {
+            byte[] current = credentials;
+            return current == null || MessageDigest.isEqual(current, digest);
+        }
+
+        private void acquirePermit() throws MessagingException {
+            try {
+                long wait = maxWaitMillis;
+                if (wait < 0) {
+                    permits.acquire();
+                } else if (!permits.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+                    throw new MessagingException("Tiempo de espera agotado esperando una conexión de correo libre.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MessagingException("Interrumpido esperando una conexión de correo.", e);
+            }
+        }
+    }
+
+    // Conexión del pool con su carpeta abierta y su estado de uso
+    private class PooledStore {
+        private final Store store;
+        private final String protocol;
+        private final byte[] credentials;
+        private Folder folder;
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledStore(Store store, String protocol, byte[] credentials) {
+            this.store = store;
+            this.protocol = protocol;
+            this.credentials = credentials;
+        }
+
+        private long idleMillis() {
+            return System.currentTimeMillis() - lastUsed;
+        }
+
+        private boolean isExpired() {
+            return idleTimeoutMillis > 0 && idleMillis() > idleTimeoutMillis;
+        }
+    }
+
+    /**
+     * Préstamo de una conexión del pool.
+     * Solo debe usarse desde un hilo a la vez y cerrarse al terminar para devolver la conexión.
+     */
+    public class Lease implements AutoCloseable {
+        private final AccountPool pool;
+        private final PooledStore pooled;
+        private boolean reusable = true;
+        private boolean released = false;
+
+        private Lease(AccountPool pool, PooledStore pooled) {
+            this.pool = pool;
+            this.pooled = pooled;
+        }
+
+        // Conexión prestada
+        public Store getStore() {
+            return pooled.store;
+        }
+
+        // Carpeta abierta
+        public Folder getFolder() {
+            return pooled.folder;
+        }
+
+        /**
+         * Abre otra carpeta en solo lectura, cerrando la anterior si es distinta.
+         *
+         * @param folderName nombre completo de la carpeta
+         * @return carpeta abierta
+         * @throws MessagingException si no se puede abrir la carpeta
+         */
+        public Folder openFolder(String folderName) throws MessagingException {
+            Folder current = pooled.folder;
+            if (current != null && current.isOpen() && current.getFullName().equals(folderName)) {
+                return current;
+            }
+            if (!closeFolder(pooled)) {
+                throw new MessagingException("No se pudo cerrar la carpeta " + current.getFullName());
+            }
+            Folder folder = pooled.store.getFolder(folderName);
+            folder.open(Folder.READ_ONLY);
+            pooled.folder = folder;
+            return folder;
+        }
+
+        /**
+         * Marca la conexión como no reutilizable; se cerrará al devolverla.
+         * Debe llamarse si una operación ha fallado por un error de conexión.
+         */
+        public void invalidate() {
+            reusable = false;
+        }
+
+        /**
+         * Devuelve la conexión al pool.
+         */
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                boolean folderOk = pooled.folder == null || pooled.folder.isOpen();
+                release(pool, pooled, reusable && folderOk);
+            }
+        }
+    }
+}
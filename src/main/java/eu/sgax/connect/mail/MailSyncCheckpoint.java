@@ -0,0 +1,118 @@
+package eu.sgax.connect.mail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Punto de control persistente de la sincronización incremental de carpetas IMAP.
+ * Guarda por carpeta el UIDVALIDITY, el último UID procesado y el mayor MODSEQ visto,
+ * para que cada sondeo solo pida los mensajes nuevos o modificados desde el anterior.
+ *
+ * <p>El archivo es un fichero de propiedades que se reescribe de forma atómica en {@link #save()}.
+ * Conviene guardar el punto de control después de procesar los mensajes de cada sincronización,
+ * de modo que un fallo intermedio provoque que se vuelvan a entregar en lugar de perderse.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class MailSyncCheckpoint {
+
+    private static final String UID_VALIDITY = ".uidvalidity";
+    private static final String LAST_UID = ".lastuid";
+    private static final String MODSEQ = ".modseq";
+
+    private final Path file;
+    private final Properties properties = new Properties();
+
+    private MailSyncCheckpoint(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Carga el punto de control desde un archivo. Si el archivo no existe, empieza vacío.
+     *
+     * @param file archivo del punto de control
+     * @return punto de control cargado
+     * @throws IOException si ocurre un error al leer el archivo
+     */
+    public static MailSyncCheckpoint load(Path file) throws IOException {
+        MailSyncCheckpoint checkpoint = new MailSyncCheckpoint(file);
+        try (InputStream in = Files.newInputStream(file)) {
+            checkpoint.properties.load(in);
+        } catch (NoSuchFileException e) {
+            // Primera sincronización
+        }
+        return checkpoint;
+    }
+
+    // Crear un punto de control solo en memoria
+    public static MailSyncCheckpoint inMemory() {
+        return new MailSyncCheckpoint(null);
+    }
+
+    /**
+     * Guarda el punto de control escribiendo un temporal y renombrándolo.
+     *
+     * @throws IOException si ocurre un error al escribir el archivo
+     */
+    public synchronized void save() throws IOException {
+        if (file == null) {
+            return;
+        }
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, "Sincronizacion incremental de correo");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // UIDVALIDITY guardado de la carpeta (-1 si no hay)
+    public synchronized long getUidValidity(String folder) {
+        return get(folder + UID_VALIDITY);
+    }
+
+    // Último UID procesado de la carpeta (0 si no hay)
+    public synchronized long getLastUid(String folder) {
+        return Math.max(0, get(folder + LAST_UID));
+    }
+
+    // Mayor MODSEQ visto en la carpeta (0 si no hay)
+    public synchronized long getHighestModSeq(String folder) {
+        return Math.max(0, get(folder + MODSEQ));
+    }
+
+    // Olvidar el estado de una carpeta para forzar una sincronización completa
+    public synchronized void reset(String folder) {
+        properties.remove(folder + UID_VALIDITY);
+        properties.remove(folder + LAST_UID);
+        properties.remove(folder + MODSEQ);
+    }
+
+    // Actualizar el estado de una carpeta
+    synchronized void update(String folder, long uidValidity, long lastUid, long highestModSeq) {
+        properties.setProperty(folder + UID_VALIDITY, Long.toString(uidValidity));
+        properties.setProperty(folder + LAST_UID, Long.toString(lastUid));
+        properties.setProperty(folder + MODSEQ, Long.toString(highestModSeq));
+    }
+
+    private long get(String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,555 @@
+package eu.sgax.connect.mail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jakarta.activation.DataHandler;
+import jakarta.activation.FileDataSource;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+import jakarta.mail.util.ByteArrayDataSource;
+
+/**
+ * Plantilla de correo precompilada para envíos masivos.
+ * El asunto y el cuerpo se analizan una sola vez y se dividen en fragmentos literales y variables con la forma
+ * {@code ${nombre}}. Los fragmentos literales del cuerpo se codifican en quoted-printable al compilar la plantilla
+ * y las cabeceras fijas se formatean también entonces; al renderizar solo se codifican los valores de cada
+ * destinatario y se encadenan con los fragmentos ya codificados.
+ *
+ * <p>Los adjuntos e imágenes en línea se toman de la caché de adjuntos codificados del remitente
+ * ({@link SendMail#setAttachmentCache(EncodedAttachmentCache)}), que los codifica una sola vez y los guarda en disco.
+ * Sin caché se leen del archivo y se codifican en cada envío, como en {@link SendMail}; en ningún caso se mantienen
+ * en memoria.</p>
+ *
+ * <p>En cuerpos HTML los valores se escapan por defecto. Las plantillas son inmutables y pueden usarse desde varios hilos.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class MailTemplate {
+
+    private static final String HTML_TYPE = "text/html; charset=utf-8";
+    private static final String TEXT_TYPE = "text/plain; charset=utf-8";
+
+    private final SendMail sender;
+    private final String fromHeader;
+    private final String ccHeader;
+    private final String bccHeader;
+    private final Segment[] subject;
+    private final Segment[] body;
+    private final int bodyEncodedBytes;
+    private final boolean isHtml;
+    private final boolean escapeHtml;
+    private final List<StaticPart> inlineParts;
+    private final List<StaticPart> attachmentParts;
+    private final Set<String> variables;
+
+    private MailTemplate(Builder builder) throws MessagingException, IOException {
+        this.sender = builder.sender;
+        this.fromHeader = new InternetAddress(builder.sender.getUsername()).toString();
+        this.ccHeader = formatAddresses(builder.cc);
+        this.bccHeader = formatAddresses(builder.bcc);
+        this.isHtml = builder.isHtml;
+        this.escapeHtml = builder.escapeHtml;
+
+        Set<String> names = new LinkedHashSet<>();
+        this.subject = parse(builder.subject == null ? "(Sin asunto)" : builder.subject, names);
+        this.body = parse(builder.body == null ? "" : builder.body, names);
+        this.variables = Set.copyOf(names);
+        int encodedBytes = 0;
+        for (Segment segment : body) {
+            if (segment.encoded != null) {
+                encodedBytes += segment.encoded.length;
+            }
+        }
+        this.bodyEncodedBytes = encodedBytes;
+
+        // Con caché, los adjuntos se codifican ya al compilar la plantilla
+        EncodedAttachmentCache cache = sender.getAttachmentCache();
+        List<StaticPart> inline = new ArrayList<>();
+        for (Map.Entry<String, Path> image : builder.inlineImages) {
+            if (cache != null) {
+                cache.createPart(image.getValue());
+            }
+            inline.add(new StaticPart(image.getValue(), Part.INLINE, image.getKey()));
+        }
+        this.inlineParts = List.copyOf(inline);
+
+        List<StaticPart> attached = new ArrayList<>();
+        for (Path attachment : builder.attachments) {
+            if (Files.exists(attachment)) {
+                if (cache != null) {
+                    cache.createPart(attachment);
+                }
+                attached.add(new StaticPart(attachment, Part.ATTACHMENT, null));
+            }
+        }
+        this.attachmentParts = List.copyOf(attached);
+    }
+
+    /**
+     * Crea un builder de plantillas para un remitente.
+     *
+     * @param sender instancia de SendMail que enviará los mensajes
+     * @return builder de la plantilla
+     */
+    public static Builder builder(SendMail sender) {
+        return new Builder(sender);
+    }
+
+    /**
+     * Genera el mensaje de un destinatario.
+     *
+     * @param to dirección(es) de correo de los destinatarios
+     * @param values valores de las variables de la plantilla
+     * @return mensaje listo para enviar
+     * @throws MessagingException si falta el valor de alguna variable o las direcciones no son válidas
+     */
+    public MimeMessage render(String to, Map<String, ?> values) throws MessagingException {
+        byte[] content = renderBody(values);
+        PreencodedMimeMessage message = new PreencodedMimeMessage(sender.getSession());
+        message.setHeader("From", fromHeader);
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(to));
+        if (ccHeader != null) {
+            message.setHeader("Cc", ccHeader);
+        }
+        if (bccHeader != null) {
+            message.setHeader("Bcc", bccHeader);
+        }
+        message.setSubject(renderSubject(values), "UTF-8");
+        message.setSentDate(new Date());
+
+        if (inlineParts.isEmpty() && attachmentParts.isEmpty()) {
+            setBody(message, content);
+            message.encodedBody = content;
+            return message;
+        }
+
+        MimeBodyPart bodyPart = new PreencodedMimeBodyPart("quoted-printable");
+        setBody(bodyPart, content);
+        EncodedAttachmentCache cache = sender.getAttachmentCache();
+
+        MimeBodyPart mainPart = bodyPart;
+        if (!inlineParts.isEmpty()) {
+            MimeMultipart related = new MimeMultipart("related");
+            related.addBodyPart(bodyPart);
+            for (StaticPart inline : inlineParts) {
+                related.addBodyPart(inline.createPart(cache));
+            }
+            if (attachmentParts.isEmpty()) {
+                message.setContent(related);
+                return message;
+            }
+            mainPart = new MimeBodyPart();
+            mainPart.setContent(related);
+        }
+
+        MimeMultipart mixed = new MimeMultipart();
+        mixed.addBodyPart(mainPart);
+        for (StaticPart attachment : attachmentParts) {
+            mixed.addBodyPart(attachment.createPart(cache));
+        }
+        message.setContent(mixed);
+        return message;
+    }
+
+    /**
+     * Genera y envía el mensaje de un destinatario.
+     *
+     * @param to dirección(es) de correo de los destinatarios
+     * @param values valores de las variables de la plantilla
+     * @throws MessagingException si ocurre un error al generar o enviar el mensaje
+     */
+    public void send(String to, Map<String, ?> values) throws MessagingException {
+        sender.send(render(to, values));
+    }
+
+    // Nombres de las variables usadas en el asunto y el cuerpo
+    public Set<String> getVariables() {
+        return variables;
+    }
+
+    // Cuerpo en quoted-printable: los fragmentos literales ya codificados se copian y solo se codifican los valores
+    private byte[] renderBody(Map<String, ?> values) throws MessagingException {
+        QuotedPrintableWriter out = new QuotedPrintableWriter(bodyEncodedBytes + 256);
+        for (Segment segment : body) {
+            if (segment.encoded != null) {
+                out.writeEncoded(segment);
+            } else {
+                String value = valueOf(segment.variable, values);
+                out.encode((isHtml && escapeHtml ? escapeHtml(value) : value).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private String renderSubject(Map<String, ?> values) throws MessagingException {
+        if (subject.length == 1 && subject[0].text != null) {
+            return subject[0].text;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Segment segment : subject) {
+            sb.append(segment.text != null ? segment.text : valueOf(segment.variable, values));
+        }
+        return sb.toString();
+    }
+
+    // El contenido ya está codificado; fijar la codificación evita analizarlo al preparar el mensaje
+    private void setBody(Part part, byte[] content) throws MessagingException {
+        part.setDataHandler(new DataHandler(new ByteArrayDataSource(content, isHtml ? HTML_TYPE : TEXT_TYPE)));
+        part.setHeader("Content-Transfer-Encoding", "quoted-printable");
+    }
+
+    private static String valueOf(String name, Map<String, ?> values) throws MessagingException {
+        Object value = values == null ? null : values.get(name);
+        if (value == null) {
+            throw new MessagingException("Falta el valor de la variable de plantilla: " + name);
+        }
+        return value.toString();
+    }
+
+    // Dividir el texto en fragmentos literales y variables ${nombre}
+    private static Segment[] parse(String text, Set<String> names) {
+        List<Segment> segments = new ArrayList<>();
+        int pos = 0;
+        while (pos < text.length()) {
+            int start = text.indexOf("${", pos);
+            int end = start < 0 ? -1 : text.indexOf('}', start + 2);
+            if (start < 0 || end < 0) {
+                segments.add(Segment.literal(text.substring(pos)));
+                break;
+            }
+            if (start > pos) {
+                segments.add(Segment.literal(text.substring(pos, start)));
+            }
+            String name = text.substring(start + 2, end).trim();
+            names.add(name);
+            segments.add(Segment.variable(name));
+            pos = end + 1;
+        }
+        if (segments.isEmpty()) {
+            segments.add(Segment.literal(""));
+        }
+        return segments.toArray(new Segment[0]);
+    }
+
+    private static String formatAddresses(String addresses) throws MessagingException {
+        if (addresses == null || addresses.isEmpty()) {
+            return null;
+        }
+        return InternetAddress.toString(InternetAddress.parse(addresses));
+    }
+
+    private static String escapeHtml(String value) {
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement;
+            switch (c) {
+                case '<': replacement = "&lt;"; break;
+                case '>': replacement = "&gt;"; break;
+                case '&': replacement = "&amp;"; break;
+                case '"': replacement = "&quot;"; break;
+                case '\'': replacement = "&#39;"; break;
+                default: replacement = null;
+            }
+            if (replacement != null && sb == null) {
+                sb = new StringBuilder(value.length() + 16);
+                sb.append(value, 0, i);
+            }
+            if (sb != null) {
+                if (replacement != null) {
+                    sb.append(replacement);
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb == null ? value : sb.toString();
+    }
+
+    // Fragmento de la plantilla: texto literal, ya codificado en quoted-printable, o variable
+    private static final class Segment {
+        private final String text;
+        private final byte[] encoded;
+        // Caracteres de la primera línea codificada y de la última, para encadenar el fragmento con lo anterior
+        private final int firstLineLength;
+        private final int lastLineLength;
+        private final boolean multiline;
+        private final String variable;
+
+        private Segment(String text, String variable) {
+            this.text = text;
+            this.variable = variable;
+            if (text == null) {
+                this.encoded = null;
+                this.firstLineLength = 0;
+                this.lastLineLength = 0;
+                this.multiline = false;
+                return;
+            }
+            QuotedPrintableWriter writer = new QuotedPrintableWriter(text.length() + 16);
+            writer.encode(text.getBytes(StandardCharsets.UTF_8));
+            this.encoded = writer.toByteArray();
+            int firstBreak = indexOf(encoded, (byte) '\r', 0);
+            this.multiline = firstBreak >= 0;
+            if (multiline) {
+                // En un salto suave la línea termina en '=', que no cuenta como contenido
+                boolean soft = firstBreak > 0 && encoded[firstBreak - 1] == '=';
+                this.firstLineLength = soft ? firstBreak - 1 : firstBreak;
+                this.lastLineLength = writer.column;
+            } else {
+                this.firstLineLength = encoded.length;
+                this.lastLineLength = encoded.length;
+            }
+        }
+
+        private static Segment literal(String text) {
+            return new Segment(text, null);
+        }
+
+        private static Segment variable(String name) {
+            return new Segment(null, name);
+        }
+    }
+
+    private static int indexOf(byte[] data, byte value, int from) {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Codificador quoted-printable que recuerda la columna para insertar saltos suaves al encadenar fragmentos
+    private static final class QuotedPrintableWriter {
+        private static final int MAX_LINE = 75;
+        private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+        private final ByteArrayOutputStream out;
+        private int column = 0;
+
+        private QuotedPrintableWriter(int capacity) {
+            this.out = new ByteArrayOutputStream(capacity);
+        }
+
+        // Codificar bytes UTF-8; los saltos de línea pasan a CRLF y los blancos finales se codifican
+        private void encode(byte[] data) {
+            for (int i = 0; i < data.length; i++) {
+                int b = data[i] & 0xff;
+                if (b == '\n' || (b == '\r' && i + 1 < data.length && data[i + 1] == '\n')) {
+                    if (b == '\r') {
+                        i++;
+                    }
+                    out.write('\r');
+                    out.write('\n');
+                    column = 0;
+                    continue;
+                }
+                // Un blanco al final del fragmento puede acabar al final de una línea: se codifica siempre
+                boolean lineEnd = i + 1 == data.length || data[i + 1] == '\n' || data[i + 1] == '\r';
+                if ((b >= 33 && b <= 126 && b != '=') || ((b == ' ' || b == '\t') && !lineEnd)) {
+                    reserve(1);
+                    out.write(b);
+                } else {
+                    reserve(3);
+                    out.write('=');
+                    out.write(HEX[b >> 4]);
+                    out.write(HEX[b & 0x0f]);
+                }
+            }
+        }
+
+        // Copiar un fragmento ya codificado, con un salto suave antes si su primera línea no cabe
+        private void writeEncoded(Segment segment) {
+            if (column + segment.firstLineLength > MAX_LINE) {
+                softBreak();
+            }
+            out.writeBytes(segment.encoded);
+            column = segment.multiline ? segment.lastLineLength : column + segment.firstLineLength;
+        }
+
+        private void reserve(int length) {
+            if (column + length > MAX_LINE) {
+                softBreak();
+            }
+            column += length;
+        }
+
+        private void softBreak() {
+            out.write('=');
+            out.write('\r');
+            out.write('\n');
+            column = 0;
+        }
+
+        private byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    // Mensaje cuyo cuerpo ya está codificado; se escribe tal cual en lugar de volver a codificarlo
+    private static final class PreencodedMimeMessage extends MimeMessage {
+        private static final byte[] CRLF = {'\r', '\n'};
+        private byte[] encodedBody;
+
+        private PreencodedMimeMessage(Session session) {
+            super(session);
+        }
+
+        @Override
+        public void writeTo(OutputStream os, String[] ignoreList) throws IOException, MessagingException {
+            if (encodedBody == null) {
+                super.writeTo(os, ignoreList);
+                return;
+            }
+            if (!saved) {
+                saveChanges();
+            }
+            Enumeration<String> lines = getNonMatchingHeaderLines(ignoreList);
+            while (lines.hasMoreElements()) {
+                os.write(lines.nextElement().getBytes(StandardCharsets.UTF_8));
+                os.write(CRLF);
+            }
+            os.write(CRLF);
+            os.write(encodedBody);
+            os.flush();
+        }
+    }
+
+    // Adjunto o imagen en línea; la parte se crea en cada mensaje desde la caché o desde el archivo
+    private static final class StaticPart {
+        private final Path file;
+        private final String disposition;
+        private final String contentId;
+
+        private StaticPart(Path file, String disposition, String contentId) {
+            this.file = file;
+            this.disposition = disposition;
+            this.contentId = contentId;
+        }
+
+        private MimeBodyPart createPart(EncodedAttachmentCache cache) throws MessagingException {
+            MimeBodyPart part;
+            if (cache != null) {
+                try {
+                    part = cache.createPart(file);
+                } catch (IOException e) {
+                    throw new MessagingException("Error al codificar el adjunto de la plantilla: " + file, e);
+                }
+                if (part == null) {
+                    throw new MessagingException("El adjunto de la plantilla ya no existe: " + file);
+                }
+            } else {
+                part = new MimeBodyPart();
+                part.setDataHandler(new DataHandler(new FileDataSource(file.toFile())));
+                part.setFileName(file.getFileName().toString());
+                // Fijar la codificación evita leer el archivo completo para elegirla al preparar el mensaje
+                part.setHeader("Content-Transfer-Encoding", "base64");
+            }
+            part.setDisposition(disposition);
+            if (contentId != null) {
+                part.setContentID("<" + contentId + ">");
+            }
+            return part;
+        }
+    }
+
+    /**
+     * Builder de plantillas de correo.
+     */
+    public static class Builder {
+        private final SendMail sender;
+        private String cc;
+        private String bcc;
+        private String subject;
+        private String body;
+        private boolean isHtml = false;
+        private boolean escapeHtml = true;
+        private final List<Path> attachments = new ArrayList<>();
+        private final List<Map.Entry<String, Path>> inlineImages = new ArrayList<>();
+
+        private Builder(SendMail sender) {
+            this.sender = sender;
+        }
+
+        public Builder cc(String cc) {
+            this.cc = cc;
+            return this;
+        }
+
+        public Builder bcc(String bcc) {
+            this.bcc = bcc;
+            return this;
+        }
+
+        public Builder subject(String subject) {
+            this.subject = subject;
+            return this;
+        }
+
+        public Builder body(String body) {
+            this.body = body;
+            this.isHtml = false;
+            return this;
+        }
+
+        public Builder htmlBody(String htmlBody) {
+            this.body = htmlBody;
+            this.isHtml = true;
+            return this;
+        }
+
+        // Indica si los valores se escapan en cuerpos HTML (por defecto true)
+        public Builder escapeHtml(boolean escapeHtml) {
+            this.escapeHtml = escapeHtml;
+            return this;
+        }
+
+        public Builder attach(Path attachment) {
+            this.attachments.add(attachment);
+            return this;
+        }
+
+        public Builder attachAll(List<Path> attachments) {
+            this.attachments.addAll(attachments);
+            return this;
+        }
+
+        // Añadir una imagen en línea referenciada desde el HTML como cid:contentId
+        public Builder inlineImage(String contentId, Path image) {
+            this.inlineImages.add(Map.entry(contentId, image));
+            return this;
+        }
+
+        /**
+         * Compila la plantilla.
+         *
+         * @return plantilla lista para renderizar
+         * @throws MessagingException si alguna dirección no es válida
+         * @throws IOException si ocurre un error al leer los adjuntos o las imágenes
+         */
+        public MailTemplate build() throws MessagingException, IOException {
+            return new MailTemplate(this);
+        }
+    }
+}
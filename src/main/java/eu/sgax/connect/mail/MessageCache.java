@@ -0,0 +1,516 @@
+package eu.sgax.connect.mail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Caché local persistente de mensajes de correo.
+ * Guarda sobre, flags, cuerpos y datos de los adjuntos de los mensajes identificados por carpeta, UIDVALIDITY y UID,
+ * de modo que las lecturas repetidas se sirven desde disco y del servidor solo se piden los flags.
+ *
+ * <p>Los registros se añaden al final de archivos de segmento y nunca se modifican; un borrado se anota con
+ * un registro de tumba. El índice en memoria se reconstruye al abrir la caché leyendo los segmentos, y cada
+ * registro lleva un CRC para descartar escrituras incompletas. Cuando el tamaño de los mensajes vivos supera
+ * el máximo se descartan los menos usados, y el segmento más antiguo se compacta copiando sus registros vivos
+ * al segmento activo cuando el espacio ocupado dobla al útil.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class MessageCache implements AutoCloseable {
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_TOMBSTONE = 2;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long segmentSize;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final LinkedHashMap<Key, Location> index = new LinkedHashMap<>(1024, 0.75f, true);
+    private Segment active;
+    private long liveBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private boolean closed = false;
+
+    private MessageCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentSize = Math.min(64L * 1024 * 1024, Math.max(64L * 1024, maxBytes / 8));
+    }
+
+    /**
+     * Abre o crea una caché en un directorio, reconstruyendo el índice a partir de los segmentos existentes.
+     *
+     * @param directory directorio de la caché
+     * @param maxBytes tamaño máximo de los mensajes guardados en bytes
+     * @return caché abierta
+     * @throws IOException si ocurre un error al leer los segmentos
+     */
+    public static MessageCache open(Path directory, long maxBytes) throws IOException {
+        Files.createDirectories(directory);
+        MessageCache cache = new MessageCache(directory, maxBytes);
+        cache.recover();
+        return cache;
+    }
+
+    // Número de mensajes en caché
+    public synchronized int size() {
+        return index.size();
+    }
+
+    // Tamaño de los mensajes vivos en bytes
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    // Tamaño total de los segmentos en disco en bytes
+    public synchronized long getDiskBytes() {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.size;
+        }
+        return total;
+    }
+
+    // Lecturas servidas desde la caché
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    // Lecturas no encontradas en la caché
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Cierra los archivos de la caché. Los datos ya escritos se conservan para la próxima apertura.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Segment segment : segments.values()) {
+            segment.closeQuietly();
+        }
+    }
+
+    // Obtener un mensaje de la caché (null si no está)
+    synchronized CachedMessage get(String folder, long uidValidity, long uid) throws IOException {
+        ensureOpen();
+        Location location = index.get(new Key(folder, uidValidity, uid));
+        if (location == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return read(location);
+    }
+
+    // Guardar un mensaje, sustituyendo la versión anterior si existe
+    synchronized void put(String folder, long uidValidity, long uid, CachedMessage message) throws IOException {
+        ensureOpen();
+        Key key = new Key(folder, uidValidity, uid);
+        append(key, RECORD_PUT, encode(message));
+        evict();
+    }
+
+    // Actualizar el flag de leído de un mensaje en caché
+    synchronized void updateRead(String folder, long uidValidity, long uid, boolean isRead) throws IOException {
+        ensureOpen();
+        Key key = new Key(folder, uidValidity, uid);
+        Location location = index.get(key);
+        if (location == null) {
+            return;
+        }
+        CachedMessage message = read(location);
+        if (message.isRead != isRead) {
+            message.isRead = isRead;
+            append(key, RECORD_PUT, encode(message));
+        }
+    }
+
+    // Eliminar un mensaje de la caché
+    synchronized void remove(String folder, long uidValidity, long uid) throws IOException {
+        ensureOpen();
+        Key key = new Key(folder, uidValidity, uid);
+        if (index.containsKey(key)) {
+            append(key, RECORD_TOMBSTONE, new byte[0]);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("La caché de mensajes está cerrada.");
+        }
+    }
+
+    // Añadir un registro al segmento activo y actualizar el índice
+    private void append(Key key, byte type, byte[] payload) throws IOException {
+        byte[] record = encodeRecord(key, type, payload);
+        if (active == null || active.size + record.length > segmentSize && active.size > 0) {
+            active = createSegment(active == null ? 1 : active.id + 1);
+        }
+        long offset = active.size;
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            active.channel.write(buffer, offset + buffer.position());
+        }
+        active.size += record.length;
+
+        Location previous = index.remove(key);
+        if (previous != null) {
+            previous.segment.liveBytes -= previous.length;
+            liveBytes -= previous.length;
+        }
+        if (type == RECORD_PUT) {
+            Location location = new Location(active, offset, record.length);
+            index.put(key, location);
+            active.liveBytes += record.length;
+            liveBytes += record.length;
+        }
+    }
+
+    // Descartar los mensajes menos usados y compactar el segmento más antiguo si sobra espacio
+    private void evict() throws IOException {
+        Iterator<Map.Entry<Key, Location>> it = index.entrySet().iterator();
+        List<Key> evicted = new ArrayList<>();
+        long target = liveBytes;
+        while (target > maxBytes && it.hasNext()) {
+            Map.Entry<Key, Location> eldest = it.next();
+            target -= eldest.getValue().length;
+            evicted.add(eldest.getKey());
+        }
+        for (Key key : evicted) {
+            append(key, RECORD_TOMBSTONE, new byte[0]);
+        }
+
+        // Solo se compacta el segmento más antiguo, así sus tumbas no pueden ocultar registros anteriores
+        while (segments.size() > 1 && getDiskBytes() > Math.max(2 * liveBytes, segmentSize)) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active) {
+                break;
+            }
+            compact(oldest);
+        }
+    }
+
+    // Copiar los registros vivos del segmento al activo y borrarlo
+    private void compact(Segment segment) throws IOException {
+        List<Map.Entry<Key, Location>> live = new ArrayList<>();
+        for (Map.Entry<Key, Location> entry : index.entrySet()) {
+            if (entry.getValue().segment == segment) {
+                live.add(entry);
+            }
+        }
+        for (Map.Entry<Key, Location> entry : live) {
+            byte[] payload = readPayload(entry.getValue());
+            append(entry.getKey(), RECORD_PUT, payload);
+        }
+        segments.remove(segment.id);
+        segment.closeQuietly();
+        Files.deleteIfExists(segment.path);
+    }
+
+    // Reconstruir el índice leyendo todos los segmentos en orden
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            try {
+                long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(id, openSegment(id, file));
+            } catch (NumberFormatException e) {
+                // Ignorar archivos ajenos a la caché
+            }
+        }
+        for (Segment segment : segments.values()) {
+            scan(segment);
+            active = segment;
+        }
+    }
+
+    private void scan(Segment segment) throws IOException {
+        long fileSize = segment.channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(4);
+        while (offset + 4 <= fileSize) {
+            header.clear();
+            readFully(segment.channel, header, offset);
+            int length = header.getInt(0);
+            if (length < 5 || offset + 4 + length > fileSize) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(segment.channel, body, offset + 4);
+            byte[] bytes = body.array();
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, length - 4);
+            if ((int) crc.getValue() != ByteBuffer.wrap(bytes, length - 4, 4).getInt()) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length - 4));
+            byte type = in.readByte();
+            Key key = new Key(in.readUTF(), in.readLong(), in.readLong());
+            int recordLength = 4 + length;
+            segment.size = offset + recordLength;
+
+            Location previous = index.remove(key);
+            if (previous != null) {
+                previous.segment.liveBytes -= previous.length;
+                liveBytes -= previous.length;
+            }
+            if (type == RECORD_PUT) {
+                index.put(key, new Location(segment, offset, recordLength));
+                segment.liveBytes += recordLength;
+                liveBytes += recordLength;
+            }
+            offset += recordLength;
+        }
+        // Descartar un registro incompleto al final del segmento
+        if (segment.size < fileSize) {
+            segment.channel.truncate(segment.size);
+        }
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        Path path = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        Segment segment = openSegment(id, path);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static Segment openSegment(long id, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(id, path, channel);
+    }
+
+    private CachedMessage read(Location location) throws IOException {
+        return decode(readPayload(location));
+    }
+
+    // Leer el contenido de un registro, sin cabecera, clave ni CRC
+    private static byte[] readPayload(Location location) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(location.length);
+        readFully(location.segment.channel, buffer, location.offset);
+        byte[] bytes = buffer.array();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 4, location.length - 8));
+        in.readByte();
+        in.readUTF();
+        in.readLong();
+        in.readLong();
+        return in.readAllBytes();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Registro de caché truncado.");
+            }
+        }
+    }
+
+    // Registro: longitud, tipo, clave, contenido y CRC32
+    private static byte[] encodeRecord(Key key, byte type, byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeByte(type);
+        out.writeUTF(key.folder);
+        out.writeLong(key.uidValidity);
+        out.writeLong(key.uid);
+        out.write(payload);
+        out.writeInt(0);
+        byte[] record = bytes.toByteArray();
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putInt(0, record.length - 4);
+        CRC32 crc = new CRC32();
+        crc.update(record, 4, record.length - 8);
+        buffer.putInt(record.length - 4, (int) crc.getValue());
+        return record;
+    }
+
+    private static byte[] encode(CachedMessage message) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeString(out, message.from);
+            writeString(out, message.subject);
+            writeString(out, message.contentType);
+            out.writeLong(message.sentDate == null ? Long.MIN_VALUE : message.sentDate.getTime());
+            out.writeLong(message.receivedDate == null ? Long.MIN_VALUE : message.receivedDate.getTime());
+            out.writeInt(message.size);
+            out.writeBoolean(message.isRead);
+            out.writeBoolean(message.hasBodies);
+            writeString(out, message.textBody);
+            writeString(out, message.htmlBody);
+            if (message.attachments == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(message.attachments.size());
+                for (ReadMail.AttachmentInfo attachment : message.attachments) {
+                    writeString(out, attachment.fileName);
+                    writeString(out, attachment.contentType);
+                    out.writeInt(attachment.size);
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static CachedMessage decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        CachedMessage message = new CachedMessage();
+        message.from = readString(in);
+        message.subject = readString(in);
+        message.contentType = readString(in);
+        long sent = in.readLong();
+        long received = in.readLong();
+        message.sentDate = sent == Long.MIN_VALUE ? null : new Date(sent);
+        message.receivedDate = received == Long.MIN_VALUE ? null : new Date(received);
+        message.size = in.readInt();
+        message.isRead = in.readBoolean();
+        message.hasBodies = in.readBoolean();
+        message.textBody = readString(in);
+        message.htmlBody = readString(in);
+        // Los registros anteriores no guardan los adjuntos
+        int attachments = in.available() > 0 ? in.readInt() : -1;
+        if (attachments >= 0) {
+            message.attachments = new ArrayList<>(attachments);
+            for (int i = 0; i < attachments; i++) {
+                ReadMail.AttachmentInfo attachment = new ReadMail.AttachmentInfo();
+                attachment.fileName = readString(in);
+                attachment.contentType = readString(in);
+                attachment.size = in.readInt();
+                message.attachments.add(attachment);
+            }
+        }
+        return message;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    // Mensaje guardado en la caché
+    static final class CachedMessage {
+        String from;
+        String subject;
+        String contentType;
+        Date sentDate;
+        Date receivedDate;
+        int size;
+        boolean isRead;
+        boolean hasBodies;
+        String textBody;
+        String htmlBody;
+        // Nombre, tipo y tamaño de los adjuntos (null si no se llegó a leer la estructura)
+        List<ReadMail.AttachmentInfo> attachments;
+    }
+
+    // Identificador de un mensaje: carpeta, UIDVALIDITY y UID
+    private static final class Key {
+        private final String folder;
+        private final long uidValidity;
+        private final long uid;
+
+        private Key(String folder, long uidValidity, long uid) {
+            this.folder = folder;
+            this.uidValidity = uidValidity;
+            this.uid = uid;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return uidValidity == other.uidValidity && uid == other.uid && folder.equals(other.folder);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(folder, uidValidity, uid);
+        }
+    }
+
+    // Posición de un registro en un segmento
+    private static final class Location {
+        private final Segment segment;
+        private final long offset;
+        private final int length;
+
+        private Location(Segment segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    // Archivo de segmento abierto
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private long size = 0;
+        private long liveBytes = 0;
+
+        private Segment(long id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        private void closeQuietly() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Ignorar errores al cerrar
+            }
+        }
+    }
+}
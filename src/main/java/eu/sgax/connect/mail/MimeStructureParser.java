@@ -0,0 +1,490 @@
+package eu.sgax.connect.mail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.internet.ContentDisposition;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.InternetHeaders;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.ParseException;
+
+/**
+ * Analizador de la estructura MIME de un mensaje sobre sus bytes originales.
+ * Recorre las cabeceras y los delimitadores de las partes una sola vez y registra para cada parte su tipo,
+ * juego de caracteres, codificación, disposición, nombre de archivo y la posición de su contenido, sin copiar
+ * ni decodificar los cuerpos. El contenido de una parte solo se decodifica al pedirlo.
+ *
+ * <p>Frente a {@code Part.getContent()}, no crea objetos {@code Multipart} ni pasa por los manejadores de
+ * Jakarta Activation, y de las cabeceras solo interpreta Content-Type, Content-Transfer-Encoding
+ * y Content-Disposition.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public final class MimeStructureParser {
+
+    private static final byte[] CONTENT_TYPE = "content-type".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT_TRANSFER_ENCODING = "content-transfer-encoding".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT_DISPOSITION = "content-disposition".getBytes(StandardCharsets.US_ASCII);
+
+    // Profundidad máxima de anidamiento de multipartes
+    private static final int MAX_DEPTH = 32;
+
+    private MimeStructureParser() {
+    }
+
+    /**
+     * Analiza un mensaje completo (cabeceras y cuerpo).
+     * El array no se copia: debe mantenerse sin cambios mientras se usen las partes.
+     *
+     * @param message bytes originales del mensaje
+     * @return parte raíz del mensaje
+     */
+    public static MimePart parse(byte[] message) {
+        return parse(message, 0, message.length);
+    }
+
+    /**
+     * Analiza un mensaje contenido en un rango de un array.
+     *
+     * @param data array con el mensaje
+     * @param offset posición del comienzo del mensaje
+     * @param length longitud del mensaje
+     * @return parte raíz del mensaje
+     */
+    public static MimePart parse(byte[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("Rango fuera del array: " + offset + "+" + length);
+        }
+        return parsePart(data, offset, offset + length, "text/plain", 0);
+    }
+
+    // Analizar las cabeceras de una parte y, si es multiparte, sus hijas
+    private static MimePart parsePart(byte[] data, int start, int end, String defaultType, int depth) {
+        MimePart part = new MimePart(data);
+        int pos = start;
+        while (pos < end) {
+            int lineEnd = lineEnd(data, pos, end);
+            if (lineEnd == pos) {
+                // Línea vacía: fin de las cabeceras
+                pos = skipNewline(data, pos, end);
+                break;
+            }
+            // Incluir las líneas de continuación de la cabecera
+            int headerEnd = lineEnd;
+            int next = skipNewline(data, lineEnd, end);
+            while (next < end && (data[next] == ' ' || data[next] == '\t')) {
+                headerEnd = lineEnd(data, next, end);
+                next = skipNewline(data, headerEnd, end);
+            }
+            readHeader(part, data, pos, headerEnd);
+            pos = next;
+        }
+        part.bodyStart = Math.min(pos, end);
+        part.bodyEnd = end;
+
+        ContentType type = null;
+        if (part.contentTypeHeader != null) {
+            try {
+                type = new ContentType(part.contentTypeHeader);
+            } catch (ParseException e) {
+                // Tipo no válido: se trata como texto plano
+            }
+        }
+        if (type == null) {
+            part.contentType = defaultType;
+        } else {
+            part.contentType = type.getBaseType().toLowerCase(Locale.ROOT);
+            part.charset = type.getParameter("charset");
+            part.name = type.getParameter("name");
+        }
+
+        if (part.contentType.startsWith("multipart/") && type != null && depth < MAX_DEPTH) {
+            String boundary = type.getParameter("boundary");
+            if (boundary != null) {
+                String childType = part.contentType.equals("multipart/digest") ? "message/rfc822" : "text/plain";
+                parseMultipart(part, boundary.getBytes(StandardCharsets.ISO_8859_1), childType, depth);
+            }
+        }
+        return part;
+    }
+
+    // Localizar las partes entre los delimitadores "--boundary"
+    private static void parseMultipart(MimePart parent, byte[] boundary, String childType, int depth) {
+        byte[] data = parent.data;
+        int end = parent.bodyEnd;
+        List<MimePart> children = new ArrayList<>();
+        int partStart = -1;
+        int pos = parent.bodyStart;
+        while (pos < end) {
+            int lineEnd = lineEnd(data, pos, end);
+            if (isDelimiter(data, pos, lineEnd, boundary)) {
+                if (partStart >= 0) {
+                    // El salto de línea anterior al delimitador pertenece al delimitador
+                    children.add(parsePart(data, partStart, contentEnd(data, partStart, pos), childType, depth + 1));
+                }
+                int after = pos + 2 + boundary.length;
+                if (after + 2 <= lineEnd && data[after] == '-' && data[after + 1] == '-') {
+                    // Delimitador de cierre
+                    partStart = -1;
+                    break;
+                }
+                partStart = skipNewline(data, lineEnd, end);
+            }
+            pos = skipNewline(data, lineEnd, end);
+        }
+        if (partStart >= 0 && partStart < end) {
+            // Multiparte sin delimitador de cierre: la última parte llega hasta el final
+            children.add(parsePart(data, partStart, end, childType, depth + 1));
+        }
+        parent.children = children;
+    }
+
+    private static boolean isDelimiter(byte[] data, int pos, int lineEnd, byte[] boundary) {
+        if (lineEnd - pos < boundary.length + 2 || data[pos] != '-' || data[pos + 1] != '-') {
+            return false;
+        }
+        for (int i = 0; i < boundary.length; i++) {
+            if (data[pos + 2 + i] != boundary[i]) {
+                return false;
+            }
+        }
+        // Tras el delimitador solo pueden venir "--" y espacios
+        for (int i = pos + 2 + boundary.length; i < lineEnd; i++) {
+            byte b = data[i];
+            if (b != '-' && b != ' ' && b != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Final del contenido de una parte: antes del salto de línea que precede al delimitador
+    private static int contentEnd(byte[] data, int start, int delimiter) {
+        int end = delimiter;
+        if (end > start && data[end - 1] == '\n') {
+            end--;
+            if (end > start && data[end - 1] == '\r') {
+                end--;
+            }
+        }
+        return end;
+    }
+
+    // Guardar las cabeceras que interesan, comparando el nombre sin crear cadenas
+    private static void readHeader(MimePart part, byte[] data, int start, int end) {
+        int colon = -1;
+        for (int i = start; i < end; i++) {
+            if (data[i] == ':') {
+                colon = i;
+                break;
+            }
+        }
+        if (colon < 0) {
+            return;
+        }
+        if (nameEquals(data, start, colon, CONTENT_TYPE)) {
+            part.contentTypeHeader = headerValue(data, colon + 1, end);
+        } else if (nameEquals(data, start, colon, CONTENT_TRANSFER_ENCODING)) {
+            part.transferEncoding = headerValue(data, colon + 1, end).trim().toLowerCase(Locale.ROOT);
+        } else if (nameEquals(data, start, colon, CONTENT_DISPOSITION)) {
+            part.dispositionHeader = headerValue(data, colon + 1, end);
+        }
+    }
+
+    private static boolean nameEquals(byte[] data, int start, int end, byte[] lowerName) {
+        while (end > start && (data[end - 1] == ' ' || data[end - 1] == '\t')) {
+            end--;
+        }
+        if (end - start != lowerName.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerName.length; i++) {
+            byte b = data[start + i];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lowerName[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Valor de la cabecera con las líneas de continuación unidas
+    private static String headerValue(byte[] data, int start, int end) {
+        StringBuilder value = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            byte b = data[i];
+            if (b != '\r' && b != '\n') {
+                value.append((char) (b & 0xff));
+            }
+        }
+        return value.toString().trim();
+    }
+
+    // Posición del salto de línea (CRLF o LF) que termina la línea
+    private static int lineEnd(byte[] data, int pos, int end) {
+        for (int i = pos; i < end; i++) {
+            if (data[i] == '\n') {
+                return i > pos && data[i - 1] == '\r' ? i - 1 : i;
+            }
+        }
+        return end;
+    }
+
+    private static int skipNewline(byte[] data, int pos, int end) {
+        if (pos < end && data[pos] == '\r') {
+            pos++;
+        }
+        if (pos < end && data[pos] == '\n') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Parte MIME localizada en los bytes del mensaje.
+     */
+    public static final class MimePart {
+        private final byte[] data;
+        private String contentTypeHeader;
+        private String dispositionHeader;
+        private String contentType;
+        private String charset;
+        private String name;
+        private String transferEncoding;
+        private int bodyStart;
+        private int bodyEnd;
+        private List<MimePart> children = Collections.emptyList();
+
+        private MimePart(byte[] data) {
+            this.data = data;
+        }
+
+        // Tipo de contenido sin parámetros, en minúsculas (por ejemplo "text/plain")
+        public String getContentType() {
+            return contentType;
+        }
+
+        // Cabecera Content-Type completa (null si no existe)
+        public String getContentTypeHeader() {
+            return contentTypeHeader;
+        }
+
+        // Juego de caracteres declarado (null si no existe)
+        public String getCharset() {
+            return charset;
+        }
+
+        // Codificación de transferencia en minúsculas (null equivale a 7bit)
+        public String getTransferEncoding() {
+            return transferEncoding;
+        }
+
+        // Verificar si la parte es del tipo indicado ("text/*" admite cualquier subtipo)
+        public boolean isMimeType(String mimeType) {
+            String type = mimeType.toLowerCase(Locale.ROOT);
+            if (type.endsWith("/*")) {
+                return contentType.startsWith(type.substring(0, type.length() - 1));
+            }
+            return contentType.equals(type);
+        }
+
+        // Verificar si la parte es multiparte
+        public boolean isMultipart() {
+            return contentType.startsWith("multipart/");
+        }
+
+        // Partes hijas de una multiparte (lista vacía en las demás)
+        public List<MimePart> getChildren() {
+            return children;
+        }
+
+        /**
+         * Obtiene la disposición de la parte.
+         *
+         * @return {@link Part#ATTACHMENT}, {@link Part#INLINE} o null si no se indica
+         */
+        public String getDisposition() {
+            if (dispositionHeader == null) {
+                return null;
+            }
+            try {
+                return new ContentDisposition(dispositionHeader).getDisposition();
+            } catch (ParseException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Obtiene el nombre de archivo de la parte, de Content-Disposition o del parámetro name de Content-Type.
+         *
+         * @return nombre de archivo decodificado o null si no tiene
+         */
+        public String getFileName() {
+            String fileName = null;
+            if (dispositionHeader != null) {
+                try {
+                    fileName = new ContentDisposition(dispositionHeader).getParameter("filename");
+                } catch (ParseException e) {
+                    // Disposición no válida: probar con Content-Type
+                }
+            }
+            if (fileName == null) {
+                fileName = name;
+            }
+            if (fileName != null) {
+                try {
+                    fileName = MimeUtility.decodeText(fileName);
+                } catch (UnsupportedEncodingException e) {
+                    // Conservar el nombre sin decodificar
+                }
+            }
+            return fileName;
+        }
+
+        // Posición del contenido codificado en el array del mensaje
+        public int getBodyOffset() {
+            return bodyStart;
+        }
+
+        // Longitud del contenido codificado en bytes
+        public int getBodyLength() {
+            return bodyEnd - bodyStart;
+        }
+
+        /**
+         * Obtiene el contenido decodificado según Content-Transfer-Encoding, leído directamente del array.
+         *
+         * @return stream con el contenido decodificado
+         * @throws MessagingException si la codificación no es válida
+         */
+        public InputStream getInputStream() throws MessagingException {
+            InputStream raw = new ByteArrayInputStream(data, bodyStart, bodyEnd - bodyStart);
+            if (transferEncoding == null || transferEncoding.equals("7bit") || transferEncoding.equals("8bit")
+                    || transferEncoding.equals("binary")) {
+                return raw;
+            }
+            return MimeUtility.decode(raw, transferEncoding);
+        }
+
+        /**
+         * Decodifica el contenido de la parte como texto con su juego de caracteres (UTF-8 si no se indica).
+         *
+         * @return texto de la parte
+         * @throws MessagingException si la codificación no es válida
+         * @throws IOException si ocurre un error al decodificar
+         */
+        public String getText() throws MessagingException, IOException {
+            Charset cs = StandardCharsets.UTF_8;
+            if (charset != null) {
+                try {
+                    cs = Charset.forName(MimeUtility.javaCharset(charset));
+                } catch (IllegalArgumentException e) {
+                    // Juego de caracteres desconocido: usar UTF-8
+                }
+            }
+            int length = bodyEnd - bodyStart;
+            if (transferEncoding == null || transferEncoding.equals("7bit") || transferEncoding.equals("8bit")
+                    || transferEncoding.equals("binary")) {
+                return new String(data, bodyStart, length, cs);
+            }
+            // Las codificaciones habituales se decodifican directamente sobre el array, sin streams intermedios
+            if (transferEncoding.equals("quoted-printable")) {
+                byte[] decoded = new byte[length];
+                int size = decodeQuotedPrintable(data, bodyStart, bodyEnd, decoded);
+                return new String(decoded, 0, size, cs);
+            }
+            if (transferEncoding.equals("base64")) {
+                try {
+                    ByteBuffer decoded = Base64.getMimeDecoder().decode(ByteBuffer.wrap(data, bodyStart, length));
+                    return cs.decode(decoded).toString();
+                } catch (IllegalArgumentException e) {
+                    throw new MessagingException("Contenido base64 no válido", e);
+                }
+            }
+            try (InputStream in = getInputStream()) {
+                return new String(in.readAllBytes(), cs);
+            }
+        }
+
+        // Decodificar quoted-printable; devuelve el número de bytes escritos
+        private static int decodeQuotedPrintable(byte[] data, int start, int end, byte[] out) {
+            int size = 0;
+            int i = start;
+            while (i < end) {
+                byte b = data[i];
+                if (b != '=') {
+                    out[size++] = b;
+                    i++;
+                    continue;
+                }
+                if (i + 1 < end && (data[i + 1] == '\r' || data[i + 1] == '\n')) {
+                    // Salto de línea suave
+                    i = skipNewline(data, i + 1, end);
+                    continue;
+                }
+                int high = i + 2 < end ? Character.digit(data[i + 1], 16) : -1;
+                int low = high >= 0 ? Character.digit(data[i + 2], 16) : -1;
+                if (low >= 0) {
+                    out[size++] = (byte) (high << 4 | low);
+                    i += 3;
+                } else {
+                    // Secuencia no válida: se conserva tal cual
+                    out[size++] = b;
+                    i++;
+                }
+            }
+            return size;
+        }
+
+        /**
+         * Crea una parte de Jakarta Mail con las cabeceras de contenido y una copia del contenido codificado,
+         * para usarla con las APIs que esperan un {@link MimeBodyPart}.
+         *
+         * @return parte equivalente
+         * @throws MessagingException si no se puede crear la parte
+         */
+        public MimeBodyPart toBodyPart() throws MessagingException {
+            InternetHeaders headers = new InternetHeaders();
+            if (contentTypeHeader != null) {
+                headers.addHeader("Content-Type", contentTypeHeader);
+            }
+            if (transferEncoding != null) {
+                headers.addHeader("Content-Transfer-Encoding", transferEncoding);
+            }
+            if (dispositionHeader != null) {
+                headers.addHeader("Content-Disposition", dispositionHeader);
+            }
+            byte[] content = new byte[bodyEnd - bodyStart];
+            System.arraycopy(data, bodyStart, content, 0, content.length);
+            return new MimeBodyPart(headers, content);
+        }
+
+        @Override
+        public String toString() {
+            return "MimePart{" +
+                    "contentType='" + contentType + '\'' +
+                    ", charset='" + charset + '\'' +
+                    ", transferEncoding='" + transferEncoding + '\'' +
+                    ", length=" + getBodyLength() +
+                    ", children=" + children.size() +
+                    '}';
+        }
+    }
+}
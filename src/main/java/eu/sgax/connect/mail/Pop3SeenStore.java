@@ -0,0 +1,255 @@
+package eu.sgax.connect.mail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * Registro persistente de los mensajes POP3 ya recuperados, identificados por su UIDL.
+ * POP3 no guarda flags en el servidor, así que este registro permite que cada sondeo descargue solo los mensajes
+ * nuevos.
+ *
+ * <p>Cada UIDL se guarda como una huella de 64 bits en un conjunto de direccionamiento abierto sobre un
+ * {@code long[]}, sin crear objetos por mensaje, y en un archivo al que solo se añaden huellas de 8 bytes.
+ * Con 64 bits la probabilidad de que dos UIDL distintos coincidan es despreciable incluso con millones de
+ * mensajes. Al sondear, las huellas de mensajes que ya no están en el servidor se eliminan reescribiendo el
+ * archivo, de modo que su tamaño sigue al del buzón.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class Pop3SeenStore implements AutoCloseable {
+
+    // Valor reservado para las posiciones vacías del conjunto
+    private static final long EMPTY = 0L;
+
+    private final Path file;
+    private FileChannel channel;
+    private long[] table = new long[1024];
+    private int size = 0;
+
+    private Pop3SeenStore(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Abre el registro desde un archivo. Si el archivo no existe, empieza vacío.
+     *
+     * @param file archivo del registro
+     * @return registro abierto
+     * @throws IOException si ocurre un error al leer el archivo
+     */
+    public static Pop3SeenStore open(Path file) throws IOException {
+        Pop3SeenStore store = new Pop3SeenStore(file);
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        store.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        store.load();
+        return store;
+    }
+
+    // Crear un registro solo en memoria
+    public static Pop3SeenStore inMemory() {
+        return new Pop3SeenStore(null);
+    }
+
+    // Número de mensajes registrados
+    public synchronized int size() {
+        return size;
+    }
+
+    // Verificar si el mensaje con el UIDL indicado ya se recuperó
+    public synchronized boolean contains(String uidl) {
+        return contains(fingerprint(uidl));
+    }
+
+    /**
+     * Registra mensajes como recuperados y los añade al archivo.
+     *
+     * @param uidls UIDL de los mensajes
+     * @throws IOException si ocurre un error al escribir el archivo
+     */
+    public synchronized void markSeen(Collection<String> uidls) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(uidls.size() * 8);
+        for (String uidl : uidls) {
+            long fingerprint = fingerprint(uidl);
+            if (add(fingerprint)) {
+                buffer.putLong(fingerprint);
+            }
+        }
+        buffer.flip();
+        if (channel != null && buffer.hasRemaining()) {
+            long position = channel.size();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Conserva solo los mensajes que siguen en el servidor y reescribe el archivo si se ha eliminado alguno.
+     *
+     * @param uidls UIDL de todos los mensajes presentes en el servidor
+     * @throws IOException si ocurre un error al reescribir el archivo
+     */
+    public synchronized void retainOnly(Collection<String> uidls) throws IOException {
+        long[] retained = new long[tableSizeFor(uidls.size())];
+        int retainedSize = 0;
+        for (String uidl : uidls) {
+            long fingerprint = fingerprint(uidl);
+            if (contains(fingerprint) && insert(retained, fingerprint)) {
+                retainedSize++;
+            }
+        }
+        if (retainedSize == size) {
+            return;
+        }
+        table = retained;
+        size = retainedSize;
+        rewrite();
+    }
+
+    /**
+     * Cierra el archivo del registro.
+     *
+     * @throws IOException si ocurre un error al cerrar
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    // Leer las huellas del archivo, descartando un registro incompleto al final
+    private void load() throws IOException {
+        long length = channel.size();
+        long complete = length - length % 8;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long position = 0;
+        while (position < complete) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), complete - position));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            while (buffer.remaining() >= 8) {
+                add(buffer.getLong());
+            }
+            position += buffer.limit();
+        }
+        if (complete < length) {
+            channel.truncate(complete);
+        }
+    }
+
+    // Escribir las huellas vigentes en un temporal y sustituir el archivo
+    private void rewrite() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            for (long fingerprint : table) {
+                if (fingerprint == EMPTY) {
+                    continue;
+                }
+                if (!buffer.hasRemaining()) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                buffer.putLong(fingerprint);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+        }
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private boolean contains(long fingerprint) {
+        int mask = table.length - 1;
+        int index = (int) fingerprint & mask;
+        while (table[index] != EMPTY) {
+            if (table[index] == fingerprint) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    private boolean add(long fingerprint) {
+        if ((size + 1) * 2 > table.length) {
+            long[] grown = new long[table.length * 2];
+            for (long existing : table) {
+                if (existing != EMPTY) {
+                    insert(grown, existing);
+                }
+            }
+            table = grown;
+        }
+        if (insert(table, fingerprint)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    // Insertar con sondeo lineal; devuelve false si ya estaba
+    private static boolean insert(long[] target, long fingerprint) {
+        int mask = target.length - 1;
+        int index = (int) fingerprint & mask;
+        while (target[index] != EMPTY) {
+            if (target[index] == fingerprint) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        target[index] = fingerprint;
+        return true;
+    }
+
+    // Tamaño de tabla (potencia de 2) con ocupación máxima del 50 %
+    private static int tableSizeFor(int entries) {
+        int capacity = 1024;
+        while (capacity < entries * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Huella de 64 bits del UIDL: FNV-1a con mezcla final para repartir los bits bajos
+    static long fingerprint(String uidl) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < uidl.length(); i++) {
+            hash ^= uidl.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1L : hash;
+    }
+}
@@ -1,16 +1,36 @@
 package eu.sgax.connect.mail;
 
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
+import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.imap.IMAPStore;
+import com.sun.mail.imap.MessageVanishedEvent;
+import com.sun.mail.imap.ResyncData;
+import com.sun.mail.pop3.POP3Folder;
+
+import jakarta.mail.Address;
 import jakarta.mail.BodyPart;
+import jakarta.mail.FetchProfile;
 import jakarta.mail.Flags;
 import jakarta.mail.Folder;
 import jakarta.mail.Message;
@@ -19,8 +39,15 @@ import jakarta.mail.Multipart;
 import jakarta.mail.Part;
 import jakarta.mail.Session;
 import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.event.MailEvent;
+import jakarta.mail.event.MessageChangedEvent;
+import jakarta.mail.internet.ContentType;
 import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.ParseException;
 import jakarta.mail.search.FlagTerm;
+import jakarta.mail.search.SearchTerm;
 
 /**
  * Clase para leer correos electrónicos desde servidores IMAP o POP3.
@@ -31,6 +58,9 @@ import jakarta.mail.search.FlagTerm;
  */
 public class ReadMail {
 
+    // Mensajes por cada FETCH en las descargas por lotes
+    private static final int FETCH_BATCH_SIZE = 1000;
+
     private final String host;
     private final int port;
     private final String username;
@@ -39,6 +69,14 @@ public class ReadMail {
     private final String protocol; // "imap" o "pop3"
     private Store store;
     private Folder inbox;
+    private boolean lazyContent = false;
+    private boolean streamingParser = false;
+    private int fetchSize = 0;
+    private int downloadBufferSize = 256 * 1024;
+    private MessageCache messageCache;
+    private Pop3SeenStore seenStore;
+    private MailStorePool storePool;
+    private MailStorePool.Lease lease;
 
     /**
      * Constructor con configuración completa.
@@ -114,6 +152,23 @@ public class ReadMail {
      * @throws MessagingException si ocurre un error de conexión
      */
     public void connect() throws MessagingException {
+        if (storePool != null) {
+            // Tomar una conexión ya autenticada del pool con INBOX abierta
+            lease = storePool.acquire(this, "INBOX");
+            store = lease.getStore();
+            inbox = lease.getFolder();
+            return;
+        }
+
+        store = openStore();
+        
+        // Abrir carpeta INBOX en modo solo lectura (no borra mensajes)
+        inbox = store.getFolder("INBOX");
+        inbox.open(Folder.READ_ONLY);
+    }
+
+    // Abrir una conexión nueva e independiente con la misma configuración
+    Store openStore() throws MessagingException {
         Properties props = new Properties();
         
         String protocolPrefix = "mail." + protocol;
@@ -128,14 +183,48 @@ public class ReadMail {
         props.put(protocolPrefix + ".host", host);
         props.put(protocolPrefix + ".port", String.valueOf(port));
         props.put(protocolPrefix + ".auth", "true");
+        if (fetchSize > 0) {
+            props.put(protocolPrefix + ".fetchsize", String.valueOf(fetchSize));
+        }
 
         Session session = Session.getInstance(props);
-        store = session.getStore(protocol);
-        store.connect(host, username, password);
-        
-        // Abrir carpeta INBOX en modo solo lectura (no borra mensajes)
-        inbox = store.getFolder("INBOX");
-        inbox.open(Folder.READ_ONLY);
+        Store newStore = session.getStore(protocol);
+        newStore.connect(host, username, password);
+        return newStore;
+    }
+
+    // Protocolo configurado ("imap" o "pop3")
+    String getProtocol() {
+        return protocol;
+    }
+
+    // Clave de la cuenta en el pool de conexiones: protocolo, usuario, servidor y puerto
+    String getPoolKey() {
+        return protocol + "://" + username + "@" + host + ":" + port + (useSSL ? "/ssl" : "");
+    }
+
+    // Resumen de usuario y contraseña con la sal del pool, para no prestar conexiones abiertas con otra contraseña
+    byte[] credentialDigest(byte[] salt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            digest.update(String.valueOf(username).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return digest.digest(String.valueOf(password).getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Establece un pool de conexiones compartido.
+     * Con pool, {@link #connect()} toma una conexión ya autenticada en lugar de abrir una nueva
+     * y {@link #disconnect()} la devuelve sin cerrarla. Debe configurarse antes de conectar.
+     * 
+     * @param storePool pool de conexiones (null para conectar directamente)
+     */
+    public void setStorePool(MailStorePool storePool) {
+        this.storePool = storePool;
     }
 
     /**
@@ -144,6 +233,14 @@ public class ReadMail {
      * @throws MessagingException si ocurre un error al desconectar
      */
     public void disconnect() throws MessagingException {
+        if (lease != null) {
+            // Devolver la conexión al pool; si la carpeta se ha cerrado se descarta
+            lease.close();
+            lease = null;
+            inbox = null;
+            store = null;
+            return;
+        }
         if (inbox != null && inbox.isOpen()) {
             inbox.close(false);
         }
@@ -152,6 +249,84 @@ public class ReadMail {
         }
     }
 
+    /**
+     * Activa la carga diferida del contenido de los mensajes.
+     * Con la carga diferida, {@link #getMessages()} y similares solo leen las cabeceras; el cuerpo y la lista de adjuntos
+     * se descargan al llamar a {@link EmailMessage#getTextBody()}, {@link EmailMessage#getHtmlBody()},
+     * {@link EmailMessage#getAttachments()} o {@link EmailMessage#getPreview(int)}, y solo la parte pedida.
+     * La carpeta debe seguir abierta al acceder al contenido.
+     * 
+     * @param lazyContent true para descargar el contenido bajo demanda
+     */
+    public void setLazyContent(boolean lazyContent) {
+        this.lazyContent = lazyContent;
+    }
+
+    /**
+     * Activa el análisis MIME sobre los bytes originales del mensaje.
+     * Sin carga diferida, cada mensaje se descarga entero en una sola petición y su estructura se analiza con
+     * {@link MimeStructureParser}, que localiza cuerpos y adjuntos sin crear objetos {@code Multipart} ni
+     * decodificar los adjuntos, que se decodifican solo al descargarlos. No tiene efecto con la carga diferida,
+     * que ya usa la estructura del servidor.
+     * 
+     * @param streamingParser true para usar el analizador sobre los bytes originales
+     */
+    public void setStreamingParser(boolean streamingParser) {
+        this.streamingParser = streamingParser;
+    }
+
+    /**
+     * Establece el tamaño de bloque de las descargas parciales IMAP (por defecto 16 KB).
+     * Para adjuntos grandes conviene un bloque mayor (por ejemplo 1 MB), que reduce el número de peticiones.
+     * Debe configurarse antes de conectar.
+     * 
+     * @param fetchSize tamaño de bloque en bytes
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Establece el tamaño del buffer de escritura al descargar adjuntos (por defecto 256 KB).
+     * 
+     * @param downloadBufferSize tamaño del buffer en bytes
+     */
+    public void setDownloadBufferSize(int downloadBufferSize) {
+        this.downloadBufferSize = downloadBufferSize;
+    }
+
+    // Tamaño del buffer de escritura de adjuntos
+    int getDownloadBufferSize() {
+        return downloadBufferSize;
+    }
+
+    /**
+     * Establece una caché local de mensajes (solo IMAP).
+     * Con caché, {@link #getMessages()} y {@link #getUnreadMessages()} piden al servidor solo los UID y flags
+     * de los mensajes; el sobre y los cuerpos de los ya vistos se leen de la caché, y el resto se descarga y
+     * se guarda para las siguientes lecturas. Los adjuntos se siguen leyendo del servidor bajo demanda.
+     * 
+     * @param messageCache caché de mensajes (null para desactivarla)
+     */
+    public void setMessageCache(MessageCache messageCache) {
+        this.messageCache = messageCache;
+    }
+
+    // Obtener la caché de mensajes
+    public MessageCache getMessageCache() {
+        return messageCache;
+    }
+
+    /**
+     * Establece el registro de mensajes POP3 ya recuperados, usado por {@link #getNewMessages()}
+     * y {@link #getNewMessageSummaries()}. Conviene un registro por cuenta.
+     * 
+     * @param seenStore registro de mensajes vistos (null para desactivarlo)
+     */
+    public void setSeenStore(Pop3SeenStore seenStore) {
+        this.seenStore = seenStore;
+    }
+
     // Verificar si está conectado
     public boolean isConnected() {
         return store != null && store.isConnected() && inbox != null && inbox.isOpen();
@@ -169,17 +344,354 @@ public class ReadMail {
         }
 
         Message[] messages = inbox.getMessages();
-        List<EmailMessage> emailList = new ArrayList<>();
-
         int start = maxMessages > 0 ? Math.max(0, messages.length - maxMessages) : 0;
-        
-        for (int i = start; i < messages.length; i++) {
-            emailList.add(parseMessage(messages[i]));
+        return parseMessages(Arrays.copyOfRange(messages, start, messages.length));
+    }
+
+    /**
+     * Obtiene un resumen de todos los mensajes de la carpeta sin descargar los cuerpos.
+     * 
+     * @return lista de resúmenes en orden de llegada
+     * @throws MessagingException si ocurre un error al leer la carpeta
+     */
+    public List<MessageSummary> getMessageSummaries() throws MessagingException {
+        return getMessageSummaries(-1);
+    }
+
+    /**
+     * Obtiene un resumen de los últimos N mensajes sin descargar los cuerpos.
+     * 
+     * @param maxMessages número máximo de mensajes (-1 para todos)
+     * @return lista de resúmenes en orden de llegada
+     * @throws MessagingException si ocurre un error al leer la carpeta
+     */
+    public List<MessageSummary> getMessageSummaries(int maxMessages) throws MessagingException {
+        int count = getMessageCount();
+        if (count == 0) {
+            return new ArrayList<>();
+        }
+        int start = maxMessages > 0 ? Math.max(1, count - maxMessages + 1) : 1;
+        return getMessageSummaries(start, count);
+    }
+
+    /**
+     * Obtiene un resumen de un rango de mensajes por número de secuencia sin descargar los cuerpos.
+     * Las cabeceras, flags, tipo de contenido y tamaño se piden en un único FETCH por lote,
+     * en lugar de varias peticiones por mensaje.
+     * 
+     * @param start número del primer mensaje (desde 1)
+     * @param end número del último mensaje (incluido)
+     * @return lista de resúmenes en orden de llegada
+     * @throws MessagingException si ocurre un error al leer la carpeta
+     */
+    public List<MessageSummary> getMessageSummaries(int start, int end) throws MessagingException {
+        if (!isConnected()) {
+            throw new MessagingException("No conectado al servidor IMAP.");
         }
+        return summarize(inbox.getMessages(start, end));
+    }
+
+    /**
+     * Obtiene un resumen de los mensajes no leídos sin descargar los cuerpos.
+     * 
+     * @return lista de resúmenes en orden de llegada
+     * @throws MessagingException si ocurre un error al leer la carpeta
+     */
+    public List<MessageSummary> getUnreadMessageSummaries() throws MessagingException {
+        if (!isConnected()) {
+            throw new MessagingException("No conectado al servidor IMAP.");
+        }
+        return summarize(inbox.search(new FlagTerm(new Flags(Flags.Flag.SEEN), false)));
+    }
 
+    /**
+     * Obtiene los mensajes POP3 que no se han recuperado en sondeos anteriores y los registra como vistos.
+     * Solo se piden al servidor la lista de UIDL (un comando) y después los mensajes nuevos.
+     * En POP3 el buzón se lee al conectar, así que cada sondeo debe hacerse con una conexión nueva.
+     * 
+     * @return mensajes nuevos en orden de llegada
+     * @throws MessagingException si no hay registro configurado o la carpeta no es POP3
+     * @throws IOException si ocurre un error al leer los mensajes o al escribir el registro
+     */
+    public List<EmailMessage> getNewMessages() throws MessagingException, IOException {
+        List<String> uidls = new ArrayList<>();
+        Message[] messages = findUnseen(uidls);
+        List<EmailMessage> emailList = parseMessages(messages);
+        seenStore.markSeen(uidls);
         return emailList;
     }
 
+    /**
+     * Obtiene el resumen de los mensajes POP3 no recuperados en sondeos anteriores, sin registrarlos como vistos.
+     * Las cabeceras se piden con TOP, sin descargar los cuerpos. Los mensajes siguen apareciendo en
+     * {@link #getNewMessages()} hasta que se recuperan o se registran con {@link #markSeen(List)}.
+     * 
+     * @return resúmenes de los mensajes nuevos en orden de llegada, con su UIDL
+     * @throws MessagingException si no hay registro configurado o la carpeta no es POP3
+     * @throws IOException si ocurre un error al actualizar el registro
+     */
+    public List<MessageSummary> getNewMessageSummaries() throws MessagingException, IOException {
+        List<String> uidls = new ArrayList<>();
+        Message[] messages = findUnseen(uidls);
+        Map<Integer, String> uidlByNumber = new HashMap<>();
+        for (int i = 0; i < messages.length; i++) {
+            uidlByNumber.put(messages[i].getMessageNumber(), uidls.get(i));
+        }
+        List<MessageSummary> summaries = summarize(messages);
+        for (MessageSummary summary : summaries) {
+            summary.uidl = uidlByNumber.get(summary.messageNumber);
+        }
+        return summaries;
+    }
+
+    /**
+     * Registra como vistos mensajes POP3 obtenidos con {@link #getNewMessageSummaries()},
+     * para que los sondeos siguientes no los devuelvan.
+     * 
+     * @param summaries resúmenes de los mensajes ya procesados
+     * @throws MessagingException si no hay registro configurado
+     * @throws IOException si ocurre un error al escribir el registro
+     */
+    public void markSeen(List<MessageSummary> summaries) throws MessagingException, IOException {
+        if (seenStore == null) {
+            throw new MessagingException("No se ha configurado el registro de mensajes vistos.");
+        }
+        List<String> uidls = new ArrayList<>(summaries.size());
+        for (MessageSummary summary : summaries) {
+            if (summary.uidl != null) {
+                uidls.add(summary.uidl);
+            }
+        }
+        seenStore.markSeen(uidls);
+    }
+
+    // Localizar los mensajes cuyo UIDL no está en el registro y olvidar los que ya no están en el servidor
+    private Message[] findUnseen(List<String> unseenUidls) throws MessagingException, IOException {
+        if (!isConnected()) {
+            throw new MessagingException("No conectado al servidor POP3.");
+        }
+        if (seenStore == null) {
+            throw new MessagingException("No se ha configurado el registro de mensajes vistos.");
+        }
+        if (!(inbox instanceof POP3Folder)) {
+            throw new MessagingException("El registro de mensajes vistos solo está disponible con POP3.");
+        }
+        POP3Folder folder = (POP3Folder) inbox;
+
+        // Un único comando UIDL para todos los mensajes
+        Message[] messages = folder.getMessages();
+        FetchProfile profile = new FetchProfile();
+        profile.add(UIDFolder.FetchProfileItem.UID);
+        folder.fetch(messages, profile);
+
+        List<String> allUidls = new ArrayList<>(messages.length);
+        List<Message> unseen = new ArrayList<>();
+        for (Message message : messages) {
+            String uidl = folder.getUID(message);
+            if (uidl == null) {
+                continue;
+            }
+            allUidls.add(uidl);
+            if (!seenStore.contains(uidl)) {
+                unseen.add(message);
+                unseenUidls.add(uidl);
+            }
+        }
+        seenStore.retainOnly(allUidls);
+        return unseen.toArray(new Message[0]);
+    }
+
+    /**
+     * Busca mensajes en el servidor y devuelve sus resúmenes.
+     * La búsqueda se ejecuta en el servidor (IMAP SEARCH) y los metadatos de los resultados
+     * se piden después en un FETCH por lote.
+     * 
+     * @param query consulta de búsqueda
+     * @return resúmenes de los mensajes encontrados, en orden de llegada
+     * @throws MessagingException si ocurre un error en la búsqueda
+     */
+    public List<MessageSummary> search(MailQuery query) throws MessagingException {
+        return summarize(find(query));
+    }
+
+    /**
+     * Busca mensajes en el servidor y devuelve solo sus UIDs, sin pedir cabeceras.
+     * 
+     * @param query consulta de búsqueda
+     * @return UIDs de los mensajes encontrados, en orden de llegada
+     * @throws MessagingException si ocurre un error o la carpeta no admite UIDs
+     */
+    public long[] searchUids(MailQuery query) throws MessagingException {
+        Message[] messages = find(query);
+        if (!(inbox instanceof UIDFolder)) {
+            throw new MessagingException("La carpeta no admite UIDs: " + inbox.getFullName());
+        }
+        UIDFolder uidFolder = (UIDFolder) inbox;
+        FetchProfile profile = new FetchProfile();
+        profile.add(UIDFolder.FetchProfileItem.UID);
+        inbox.fetch(messages, profile);
+        long[] uids = new long[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            uids[i] = uidFolder.getUID(messages[i]);
+        }
+        return uids;
+    }
+
+    // Ejecutar la búsqueda en la carpeta abierta
+    private Message[] find(MailQuery query) throws MessagingException {
+        if (!isConnected()) {
+            throw new MessagingException("No conectado al servidor IMAP.");
+        }
+        SearchTerm term = query.toSearchTerm();
+        return term == null ? inbox.getMessages() : inbox.search(term);
+    }
+
+    /**
+     * Sincroniza de forma incremental la carpeta abierta usando UIDs.
+     * Solo se piden los mensajes con UID mayor que el último procesado. Si el servidor admite CONDSTORE,
+     * también se devuelven los mensajes ya conocidos cuyos flags han cambiado, y con QRESYNC los UIDs de los
+     * mensajes borrados. Si el UIDVALIDITY de la carpeta ha cambiado, los UIDs anteriores dejan de ser válidos
+     * y se devuelven todos los mensajes con {@link SyncResult#isReset()} a true.
+     *
+     * <p>El punto de control se actualiza en memoria; debe guardarse con {@link MailSyncCheckpoint#save()}
+     * tras procesar el resultado.</p>
+     * 
+     * @param checkpoint punto de control de la sincronización
+     * @return mensajes nuevos, modificados y borrados desde la sincronización anterior
+     * @throws MessagingException si ocurre un error o el protocolo no es IMAP
+     */
+    public SyncResult sync(MailSyncCheckpoint checkpoint) throws MessagingException {
+        if (!isConnected()) {
+            throw new MessagingException("No conectado al servidor IMAP.");
+        }
+        if (!(inbox instanceof IMAPFolder)) {
+            throw new MessagingException("La sincronización incremental requiere IMAP.");
+        }
+        IMAPFolder folder = (IMAPFolder) inbox;
+        IMAPStore imapStore = (IMAPStore) store;
+        String name = folder.getFullName();
+
+        long savedValidity = checkpoint.getUidValidity(name);
+        long lastUid = checkpoint.getLastUid(name);
+        long modSeq = checkpoint.getHighestModSeq(name);
+        boolean qresync = imapStore.hasCapability("QRESYNC");
+        boolean condstore = qresync || imapStore.hasCapability("CONDSTORE");
+
+        SyncResult result = new SyncResult();
+        List<Message> changed = new ArrayList<>();
+
+        // Volver a abrir la carpeta con CONDSTORE/QRESYNC para recibir MODSEQ, cambios y borrados
+        if (condstore) {
+            folder.close(false);
+            ResyncData resync = qresync && savedValidity > 0 && modSeq > 0
+                    ? new ResyncData(savedValidity, modSeq) : ResyncData.CONDSTORE;
+            List<MailEvent> events = folder.open(Folder.READ_ONLY, resync);
+            if (events != null && folder.getUIDValidity() == savedValidity) {
+                for (MailEvent event : events) {
+                    if (event instanceof MessageVanishedEvent) {
+                        for (long uid : ((MessageVanishedEvent) event).getUIDs()) {
+                            result.vanishedUids.add(uid);
+                        }
+                    } else if (event instanceof MessageChangedEvent) {
+                        changed.add(((MessageChangedEvent) event).getMessage());
+                    }
+                }
+            }
+        }
+
+        if (!condstore) {
+            // Con la carpeta abierta envía NOOP (si ha pasado más de un segundo) para que el servidor notifique los mensajes llegados
+            folder.getMessageCount();
+        }
+
+        long uidValidity = folder.getUIDValidity();
+        if (uidValidity != savedValidity) {
+            result.reset = savedValidity > 0;
+            lastUid = 0;
+            modSeq = 0;
+            changed.clear();
+            result.vanishedUids.clear();
+        }
+
+        // Mensajes nuevos: el rango n:* siempre incluye el último mensaje, por lo que se filtra por UID
+        List<Message> added = new ArrayList<>();
+        for (Message message : folder.getMessagesByUID(lastUid + 1, UIDFolder.LASTUID)) {
+            if (message != null && folder.getUID(message) > lastUid) {
+                added.add(message);
+            }
+        }
+
+        // Mensajes ya conocidos con cambios; con QRESYNC llegan como eventos al abrir la carpeta
+        if (condstore && !qresync && modSeq > 0 && lastUid > 0) {
+            for (Message message : folder.getMessagesByUIDChangedSince(1, lastUid, modSeq)) {
+                changed.add(message);
+            }
+        }
+
+        result.newMessages = summarize(added.toArray(new Message[0]));
+        result.changedMessages = summarize(changed.toArray(new Message[0]));
+
+        long newLastUid = lastUid;
+        for (MessageSummary summary : result.newMessages) {
+            newLastUid = Math.max(newLastUid, summary.uid);
+        }
+        long newModSeq = condstore ? folder.getHighestModSeq() : 0;
+        checkpoint.update(name, uidValidity, newLastUid, newModSeq);
+        return result;
+    }
+
+    // Resumir mensajes de la carpeta abierta
+    private List<MessageSummary> summarize(Message[] messages) throws MessagingException {
+        return summarize(inbox, messages);
+    }
+
+    // Resumir mensajes pidiendo sus metadatos por lotes
+    static List<MessageSummary> summarize(Folder folder, Message[] messages) throws MessagingException {
+        prefetch(folder, messages);
+        UIDFolder uidFolder = folder instanceof UIDFolder ? (UIDFolder) folder : null;
+        List<MessageSummary> summaries = new ArrayList<>(messages.length);
+        for (Message message : messages) {
+            if (message.isExpunged()) {
+                continue;
+            }
+            MessageSummary summary = new MessageSummary();
+            summary.messageNumber = message.getMessageNumber();
+            summary.uid = uidFolder != null ? uidFolder.getUID(message) : -1;
+            Address[] from = message.getFrom();
+            summary.from = from != null && from.length > 0 ? from[0].toString() : null;
+            summary.subject = message.getSubject();
+            summary.sentDate = message.getSentDate();
+            summary.receivedDate = message.getReceivedDate();
+            summary.size = message.getSize();
+            summary.contentType = message.getContentType();
+            summary.isRead = message.isSet(Flags.Flag.SEEN);
+            summary.hasAttachments = message.isMimeType("multipart/mixed");
+            summaries.add(summary);
+        }
+        return summaries;
+    }
+
+    // Pedir sobre, flags, estructura y tamaño de los mensajes en un FETCH por lote
+    private static void prefetch(Folder folder, Message[] messages) throws MessagingException {
+        FetchProfile profile = new FetchProfile();
+        profile.add(FetchProfile.Item.ENVELOPE);
+        profile.add(FetchProfile.Item.FLAGS);
+        profile.add(FetchProfile.Item.CONTENT_INFO);
+        profile.add(FetchProfile.Item.SIZE);
+        if (folder instanceof UIDFolder) {
+            profile.add(UIDFolder.FetchProfileItem.UID);
+        }
+        fetch(folder, messages, profile);
+    }
+
+    // Ejecutar un FETCH por cada lote de mensajes
+    private static void fetch(Folder folder, Message[] messages, FetchProfile profile) throws MessagingException {
+        for (int i = 0; i < messages.length; i += FETCH_BATCH_SIZE) {
+            int end = Math.min(messages.length, i + FETCH_BATCH_SIZE);
+            folder.fetch(i == 0 && end == messages.length ? messages : Arrays.copyOfRange(messages, i, end), profile);
+        }
+    }
+
     // Obtener solo mensajes no leídos
     public List<EmailMessage> getUnreadMessages() throws MessagingException, IOException {
         if (!isConnected()) {
@@ -189,40 +701,135 @@ public class ReadMail {
         Flags seen = new Flags(Flags.Flag.SEEN);
         FlagTerm unseenFlagTerm = new FlagTerm(seen, false);
         Message[] messages = inbox.search(unseenFlagTerm);
-        
+        return parseMessages(messages);
+    }
+
+    // Parsear una lista de mensajes, usando la caché si está configurada
+    private List<EmailMessage> parseMessages(Message[] messages) throws MessagingException, IOException {
+        if (messageCache != null && inbox instanceof UIDFolder) {
+            return parseCached(messages);
+        }
+
+        // Traer las cabeceras y flags de todo el rango antes de recorrerlo
+        prefetch(inbox, messages);
         List<EmailMessage> emailList = new ArrayList<>();
         for (Message message : messages) {
             emailList.add(parseMessage(message));
         }
-
         return emailList;
     }
 
+    // Servir desde la caché los mensajes ya vistos y descargar y guardar el resto
+    private List<EmailMessage> parseCached(Message[] messages) throws MessagingException, IOException {
+        UIDFolder uidFolder = (UIDFolder) inbox;
+        String folderName = inbox.getFullName();
+        long uidValidity = uidFolder.getUIDValidity();
+
+        // Del servidor solo se piden UID y flags de los mensajes
+        FetchProfile profile = new FetchProfile();
+        profile.add(FetchProfile.Item.FLAGS);
+        profile.add(UIDFolder.FetchProfileItem.UID);
+        fetch(inbox, messages, profile);
+
+        EmailMessage[] emails = new EmailMessage[messages.length];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < messages.length; i++) {
+            long uid = uidFolder.getUID(messages[i]);
+            MessageCache.CachedMessage cached = messageCache.get(folderName, uidValidity, uid);
+            if (cached == null || !cached.hasBodies && !lazyContent) {
+                missing.add(i);
+                continue;
+            }
+            boolean isRead = messages[i].isSet(Flags.Flag.SEEN);
+            if (cached.isRead != isRead) {
+                messageCache.updateRead(folderName, uidValidity, uid, isRead);
+            }
+            emails[i] = fromCache(messages[i], cached, isRead);
+        }
+
+        Message[] toFetch = new Message[missing.size()];
+        for (int i = 0; i < toFetch.length; i++) {
+            toFetch[i] = messages[missing.get(i)];
+        }
+        prefetch(inbox, toFetch);
+        for (int index : missing) {
+            Message message = messages[index];
+            EmailMessage email = parseMessage(message);
+            MessageCache.CachedMessage cached = new MessageCache.CachedMessage();
+            cached.from = email.from;
+            cached.subject = email.subject;
+            cached.contentType = message.getContentType();
+            cached.sentDate = email.sentDate;
+            cached.receivedDate = email.receivedDate;
+            cached.size = message.getSize();
+            cached.isRead = email.isRead;
+            cached.hasBodies = email.bodiesLoaded;
+            cached.textBody = email.textBody;
+            cached.htmlBody = email.htmlBody;
+            if (email.structureLoaded) {
+                cached.attachments = email.attachments;
+            }
+            messageCache.put(folderName, uidValidity, uidFolder.getUID(message), cached);
+            emails[index] = email;
+        }
+        return new ArrayList<>(Arrays.asList(emails));
+    }
+
+    // Construir un EmailMessage a partir de la caché; el contenido de los adjuntos se lee del servidor al descargarlos
+    private static EmailMessage fromCache(Message message, MessageCache.CachedMessage cached, boolean isRead) {
+        EmailMessage email = new EmailMessage();
+        email.messageNumber = message.getMessageNumber();
+        email.from = cached.from;
+        email.subject = cached.subject;
+        email.sentDate = cached.sentDate;
+        email.receivedDate = cached.receivedDate;
+        email.isRead = isRead;
+        email.source = message;
+        if (cached.hasBodies) {
+            email.textBody = cached.textBody;
+            email.htmlBody = cached.htmlBody;
+            email.bodiesLoaded = true;
+        }
+        if (cached.attachments != null) {
+            for (AttachmentInfo attachment : cached.attachments) {
+                attachment.owner = email;
+            }
+            email.attachments = cached.attachments;
+            email.attachmentsCached = true;
+        }
+        return email;
+    }
+
     // Parsear mensaje a EmailMessage
     private EmailMessage parseMessage(Message message) throws MessagingException, IOException {
         EmailMessage email = new EmailMessage();
         email.messageNumber = message.getMessageNumber();
-        email.from = message.getFrom()[0].toString();
+        Address[] from = message.getFrom();
+        email.from = from != null && from.length > 0 ? from[0].toString() : null;
         email.subject = message.getSubject();
         email.sentDate = message.getSentDate();
         email.receivedDate = message.getReceivedDate();
         email.isRead = message.isSet(Flags.Flag.SEEN);
+        email.source = message;
         
-        // Parsear contenido y adjuntos
-        parseContent(message, email);
+        // Con carga diferida el contenido se descarga al acceder a él
+        if (!lazyContent && streamingParser) {
+            email.loadRaw();
+        } else if (!lazyContent) {
+            email.loadBodies();
+        }
         
         return email;
     }
 
-    // Parsear contenido del mensaje y adjuntos
-    private void parseContent(Part part, EmailMessage email) throws MessagingException, IOException {
-        String contentType = part.getContentType();
-        
-        if (part.isMimeType("text/plain") && email.textBody == null) {
-            email.textBody = part.getContent().toString();
-        } else if (part.isMimeType("text/html") && email.htmlBody == null) {
-            email.htmlBody = part.getContent().toString();
+    // Recorrer la estructura del mensaje localizando cuerpos y adjuntos, sin descargar su contenido
+    private static void parseContent(Part part, EmailMessage email) throws MessagingException, IOException {
+        if (part.isMimeType("text/plain") && email.textPart == null) {
+            email.textPart = part;
+        } else if (part.isMimeType("text/html") && email.htmlPart == null) {
+            email.htmlPart = part;
         } else if (part.isMimeType("multipart/*")) {
+            // En IMAP la estructura llega con BODYSTRUCTURE; cada parte se descarga por separado al leerla
             Multipart multipart = (Multipart) part.getContent();
             for (int i = 0; i < multipart.getCount(); i++) {
                 BodyPart bodyPart = multipart.getBodyPart(i);
@@ -245,9 +852,44 @@ public class ReadMail {
         }
     }
 
+    // Recorrer la estructura analizada sobre los bytes originales, con el mismo criterio que parseContent
+    private static void parseRawContent(MimeStructureParser.MimePart part, EmailMessage email)
+            throws MessagingException, IOException {
+        if (part.isMimeType("text/plain") && email.textBody == null) {
+            email.textBody = part.getText();
+        } else if (part.isMimeType("text/html") && email.htmlBody == null) {
+            email.htmlBody = part.getText();
+        } else if (part.isMultipart()) {
+            for (MimeStructureParser.MimePart child : part.getChildren()) {
+                String disposition = child.getDisposition();
+                if (disposition != null && (disposition.equalsIgnoreCase(Part.ATTACHMENT) ||
+                                           disposition.equalsIgnoreCase(Part.INLINE))) {
+                    // Es un adjunto: su contenido se decodifica al descargarlo
+                    AttachmentInfo attachment = new AttachmentInfo();
+                    attachment.fileName = child.getFileName();
+                    attachment.contentType = child.getContentTypeHeader() != null
+                            ? child.getContentTypeHeader() : child.getContentType();
+                    attachment.size = child.getBodyLength();
+                    attachment.rawPart = child;
+                    email.attachments.add(attachment);
+                } else {
+                    parseRawContent(child, email);
+                }
+            }
+        }
+    }
+
+    // Localizar los adjuntos de un mensaje sin descargar su contenido
+    static List<AttachmentInfo> findAttachments(Message message) throws MessagingException, IOException {
+        EmailMessage email = new EmailMessage();
+        parseContent(message, email);
+        return email.attachments;
+    }
+
     // Descargar adjunto a un archivo
     public void downloadAttachment(AttachmentInfo attachment, Path destinationPath) throws IOException, MessagingException {
-        if (attachment.bodyPart == null) {
+        attachment.resolve();
+        if (attachment.bodyPart == null && attachment.rawPart == null) {
             throw new IOException("Adjunto no válido o no disponible");
         }
 
@@ -256,29 +898,85 @@ public class ReadMail {
             Files.createDirectories(destinationPath.getParent());
         }
 
-        try (InputStream inputStream = attachment.bodyPart.getInputStream();
-             FileOutputStream outputStream = new FileOutputStream(destinationPath.toFile())) {
-            
-            byte[] buffer = new byte[4096];
+        try (InputStream inputStream = attachment.openStream()) {
+            copyToFile(inputStream, destinationPath, downloadBufferSize);
+        }
+    }
+
+    // Copiar un stream a un archivo con un FileChannel y un buffer grande
+    static long copyToFile(InputStream input, Path destination, int bufferSize) throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+        long total = 0;
+        try (FileChannel channel = FileChannel.open(destination, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
             int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
+            while ((bytesRead = input.readNBytes(buffer, 0, bufferSize)) > 0) {
+                wrapped.clear().limit(bytesRead);
+                while (wrapped.hasRemaining()) {
+                    channel.write(wrapped);
+                }
+                total += bytesRead;
             }
         }
+        return total;
     }
 
-    // Descargar todos los adjuntos de un mensaje
+    // Descargar todos los adjuntos de un mensaje; los nombres se limpian para no salir del directorio
     public void downloadAllAttachments(EmailMessage email, Path destinationDir) throws IOException, MessagingException {
         Files.createDirectories(destinationDir);
         
-        for (AttachmentInfo attachment : email.attachments) {
-            Path filePath = destinationDir.resolve(attachment.fileName);
+        int index = 0;
+        Set<String> used = new HashSet<>();
+        for (AttachmentInfo attachment : email.getAttachments()) {
+            Path filePath = AttachmentDownloader.resolveInside(destinationDir, attachment.fileName, index++, used);
             downloadAttachment(attachment, filePath);
         }
     }
 
+    /**
+     * Guarda los adjuntos de un mensaje en un almacén direccionado por contenido.
+     * El hash se calcula mientras se descarga cada adjunto; los contenidos ya guardados no ocupan más espacio.
+     * 
+     * @param email mensaje con los adjuntos
+     * @param store almacén de adjuntos
+     * @return adjuntos guardados, en el orden del mensaje
+     * @throws IOException si ocurre un error al guardar
+     * @throws MessagingException si ocurre un error al leer los adjuntos
+     */
+    public List<AttachmentStore.StoredAttachment> storeAttachments(EmailMessage email, AttachmentStore store)
+            throws IOException, MessagingException {
+        List<AttachmentStore.StoredAttachment> stored = new ArrayList<>();
+        for (AttachmentInfo attachment : email.getAttachments()) {
+            attachment.resolve();
+            if (attachment.bodyPart == null && attachment.rawPart == null) {
+                throw new IOException("Adjunto no válido o no disponible");
+            }
+            try (InputStream inputStream = attachment.openStream()) {
+                stored.add(store.put(attachment.fileName, attachment.contentType, inputStream));
+            }
+        }
+        return stored;
+    }
+
+    // Descargar todos los adjuntos de un mensaje a través del almacén, enlazándolos en el directorio
+    public void downloadAllAttachments(EmailMessage email, Path destinationDir, AttachmentStore store)
+            throws IOException, MessagingException {
+        Files.createDirectories(destinationDir);
+        int index = 0;
+        Set<String> used = new HashSet<>();
+        for (AttachmentStore.StoredAttachment attachment : storeAttachments(email, store)) {
+            Path target = AttachmentDownloader.resolveInside(destinationDir, attachment.getFileName(), index++, used);
+            store.link(attachment, target);
+        }
+    }
+
     // Cambiar a otra carpeta
     public void openFolder(String folderName) throws MessagingException {
+        if (lease != null) {
+            inbox = lease.openFolder(folderName);
+            return;
+        }
         if (inbox != null && inbox.isOpen()) {
             inbox.close(false);
         }
@@ -327,6 +1025,137 @@ public class ReadMail {
         public String htmlBody;
         public boolean isRead;
         public List<AttachmentInfo> attachments = new ArrayList<>();
+        private Message source;
+        private Part textPart;
+        private Part htmlPart;
+        private boolean structureLoaded = false;
+        private boolean bodiesLoaded = false;
+        private boolean attachmentsCached = false;
+
+        // Obtener el cuerpo en texto plano, descargándolo si es necesario
+        public String getTextBody() throws MessagingException, IOException {
+            if (bodiesLoaded) {
+                return textBody;
+            }
+            loadStructure();
+            if (textBody == null && textPart != null) {
+                textBody = textPart.getContent().toString();
+            }
+            return textBody;
+        }
+
+        // Obtener el cuerpo HTML, descargándolo si es necesario
+        public String getHtmlBody() throws MessagingException, IOException {
+            if (bodiesLoaded) {
+                return htmlBody;
+            }
+            loadStructure();
+            if (htmlBody == null && htmlPart != null) {
+                htmlBody = htmlPart.getContent().toString();
+            }
+            return htmlBody;
+        }
+
+        /**
+         * Obtiene los adjuntos; solo se lee la estructura del mensaje, no su contenido.
+         * En los mensajes servidos desde la {@link MessageCache} el nombre, el tipo y el tamaño vienen de la caché
+         * y la parte de cada adjunto se localiza en el servidor al descargarlo.
+         * 
+         * @return adjuntos del mensaje
+         * @throws MessagingException si ocurre un error al leer la estructura
+         * @throws IOException si ocurre un error de I/O
+         */
+        public List<AttachmentInfo> getAttachments() throws MessagingException, IOException {
+            if (!attachmentsCached) {
+                loadStructure();
+            }
+            return attachments;
+        }
+
+        /**
+         * Obtiene el comienzo del cuerpo sin descargarlo entero.
+         * Usa el cuerpo en texto plano o, si no existe, el HTML sin etiquetas. En IMAP solo se piden
+         * al servidor los primeros bloques de la parte.
+         * 
+         * @param maxBytes número máximo de bytes del cuerpo a leer
+         * @return texto de vista previa (cadena vacía si no hay cuerpo)
+         * @throws MessagingException si ocurre un error al leer el mensaje
+         * @throws IOException si ocurre un error de I/O
+         */
+        public String getPreview(int maxBytes) throws MessagingException, IOException {
+            if (!bodiesLoaded) {
+                loadStructure();
+            }
+            String body = textBody != null ? textBody : htmlBody;
+            boolean html = textBody == null && textPart == null;
+            Part part = textPart != null ? textPart : htmlPart;
+            if (body == null) {
+                if (part == null) {
+                    return "";
+                }
+                byte[] head;
+                try (InputStream in = part.getInputStream()) {
+                    head = in.readNBytes(maxBytes);
+                }
+                body = new String(head, charsetOf(part));
+            } else if (body.length() > maxBytes) {
+                body = body.substring(0, maxBytes);
+            }
+            return html ? body.replaceAll("<[^>]*>?", " ").replaceAll("\\s+", " ").trim() : body;
+        }
+
+        // Localizar las partes de texto y los adjuntos
+        private void loadStructure() throws MessagingException, IOException {
+            if (!structureLoaded && source != null) {
+                if (attachmentsCached) {
+                    // Enlazar los adjuntos de la caché con sus partes, en el mismo orden
+                    List<AttachmentInfo> cached = attachments;
+                    attachments = new ArrayList<>();
+                    parseContent(source, this);
+                    if (cached.size() == attachments.size()) {
+                        for (int i = 0; i < cached.size(); i++) {
+                            cached.get(i).bodyPart = attachments.get(i).bodyPart;
+                        }
+                        attachments = cached;
+                    }
+                } else {
+                    parseContent(source, this);
+                }
+                structureLoaded = true;
+            }
+        }
+
+        // Descargar el mensaje entero y analizar su estructura sobre los bytes originales
+        private void loadRaw() throws MessagingException, IOException {
+            if (!bodiesLoaded && source != null) {
+                RawMessageBuffer raw = new RawMessageBuffer(Math.max(source.getSize(), 0) + 1024);
+                source.writeTo(raw);
+                parseRawContent(raw.parse(), this);
+                structureLoaded = true;
+                bodiesLoaded = true;
+            }
+        }
+
+        // Descargar los cuerpos de texto y HTML
+        private void loadBodies() throws MessagingException, IOException {
+            if (!bodiesLoaded) {
+                getTextBody();
+                getHtmlBody();
+                bodiesLoaded = true;
+            }
+        }
+
+        private static Charset charsetOf(Part part) throws MessagingException {
+            try {
+                String charset = new ContentType(part.getContentType()).getParameter("charset");
+                if (charset != null) {
+                    return Charset.forName(MimeUtility.javaCharset(charset));
+                }
+            } catch (ParseException | IllegalArgumentException e) {
+                // Tipo de contenido o juego de caracteres no válido: usar el predeterminado
+            }
+            return StandardCharsets.UTF_8;
+        }
 
         @Override
         public String toString() {
@@ -341,12 +1170,99 @@ public class ReadMail {
         }
     }
 
+    // Resumen ligero de un mensaje, sin cuerpo ni adjuntos
+    public static class MessageSummary {
+        public int messageNumber;
+        public long uid = -1;
+        // UIDL del mensaje POP3 (solo en getNewMessageSummaries)
+        public String uidl;
+        public String from;
+        public String subject;
+        public Date sentDate;
+        public Date receivedDate;
+        public int size;
+        public String contentType;
+        public boolean isRead;
+        public boolean hasAttachments;
+
+        @Override
+        public String toString() {
+            return "MessageSummary{" +
+                    "messageNumber=" + messageNumber +
+                    ", uid=" + uid +
+                    ", from='" + from + '\'' +
+                    ", subject='" + subject + '\'' +
+                    ", sentDate=" + sentDate +
+                    ", size=" + size +
+                    ", isRead=" + isRead +
+                    '}';
+        }
+    }
+
+    // Resultado de una sincronización incremental
+    public static class SyncResult {
+        private List<MessageSummary> newMessages = new ArrayList<>();
+        private List<MessageSummary> changedMessages = new ArrayList<>();
+        private final List<Long> vanishedUids = new ArrayList<>();
+        private boolean reset = false;
+
+        // Mensajes llegados desde la sincronización anterior
+        public List<MessageSummary> getNewMessages() {
+            return newMessages;
+        }
+
+        // Mensajes ya conocidos cuyos flags han cambiado (requiere CONDSTORE)
+        public List<MessageSummary> getChangedMessages() {
+            return changedMessages;
+        }
+
+        // UIDs de los mensajes borrados (requiere QRESYNC)
+        public List<Long> getVanishedUids() {
+            return vanishedUids;
+        }
+
+        // true si el UIDVALIDITY cambió y se ha vuelto a sincronizar la carpeta completa
+        public boolean isReset() {
+            return reset;
+        }
+
+        @Override
+        public String toString() {
+            return "SyncResult{" +
+                    "newMessages=" + newMessages.size() +
+                    ", changedMessages=" + changedMessages.size() +
+                    ", vanishedUids=" + vanishedUids.size() +
+                    ", reset=" + reset +
+                    '}';
+        }
+    }
+
     // Clase para información de adjuntos
     public static class AttachmentInfo {
         public String fileName;
         public String contentType;
         public int size;
         private MimeBodyPart bodyPart;
+        private MimeStructureParser.MimePart rawPart;
+        private EmailMessage owner;
+
+        // Parte MIME del adjunto
+        MimeBodyPart getBodyPart() {
+            return bodyPart;
+        }
+
+        // Contenido decodificado, del mensaje ya descargado si se analizó con MimeStructureParser
+        InputStream openStream() throws MessagingException, IOException {
+            resolve();
+            return rawPart != null ? rawPart.getInputStream() : bodyPart.getInputStream();
+        }
+
+        // Localizar la parte en el servidor si el adjunto se leyó de la caché
+        private void resolve() throws MessagingException, IOException {
+            if (bodyPart == null && rawPart == null && owner != null) {
+                owner.loadStructure();
+            }
+        }
 
         @Override
         public String toString() {
@@ -357,4 +1273,17 @@ public class ReadMail {
                     '}';
         }
     }
+
+    // Buffer del mensaje descargado que se analiza sin copiar: las partes apuntan a su array interno
+    private static class RawMessageBuffer extends ByteArrayOutputStream {
+
+        private RawMessageBuffer(int size) {
+            super(size);
+        }
+
+        // El buffer no debe volver a escribirse mientras se usen las partes
+        private MimeStructureParser.MimePart parse() {
+            return MimeStructureParser.parse(buf, 0, count);
+        }
+    }
 }
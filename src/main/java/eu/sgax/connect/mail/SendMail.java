@@ -3,14 +3,22 @@ package eu.sgax.connect.mail;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
 
+import eu.sgax.connect.metrics.MetricsRegistry;
+import eu.sgax.connect.metrics.TransferMetrics;
+import eu.sgax.connect.tracing.TransferPhase;
+import eu.sgax.connect.tracing.TransferSpan;
+import eu.sgax.connect.tracing.TransferTracer;
+
 import jakarta.activation.DataHandler;
 import jakarta.activation.DataSource;
 import jakarta.activation.FileDataSource;
+import jakarta.mail.Address;
 import jakarta.mail.Authenticator;
 import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
@@ -31,7 +39,7 @@ import jakarta.mail.internet.MimeMultipart;
  * @author SGAX
  * @version 1.0
  */
-public class SendMail {
+public class SendMail implements AutoCloseable {
 
     private final String smtpHost;
     private final int smtpPort;
@@ -40,6 +48,10 @@ public class SendMail {
     private final boolean useSSL;
     private final boolean useTLS;
     private Session session;
+    private volatile SmtpConnectionPool connectionPool;
+    private volatile EncodedAttachmentCache attachmentCache;
+    private volatile TransferMetrics sendMetrics = TransferMetrics.NOOP;
+    private volatile TransferTracer tracer = TransferTracer.NOOP;
 
     /**
      * Constructor con configuración completa.
@@ -167,8 +179,28 @@ public class SendMail {
     // Método principal para enviar correo con todas las opciones
     public void sendEmail(String to, String cc, String bcc, String subject, String body, List<Path> attachments, boolean isHtml) 
             throws MessagingException, IOException {
+        send(buildMessage(to, cc, bcc, subject, body, attachments, isHtml));
+    }
+
+    /**
+     * Construye un mensaje con todas las opciones sin enviarlo.
+     * Útil para enviar después con {@link #send(Message)} o en lote.
+     * 
+     * @param to dirección(es) de correo de los destinatarios
+     * @param cc dirección(es) para copia (puede ser null)
+     * @param bcc dirección(es) para copia oculta (puede ser null)
+     * @param subject asunto del correo
+     * @param body cuerpo del correo
+     * @param attachments lista de rutas de archivos adjuntos (puede ser null)
+     * @param isHtml true si el cuerpo es HTML
+     * @return mensaje listo para enviar
+     * @throws MessagingException si ocurre un error al construir el mensaje
+     * @throws IOException si ocurre un error de I/O
+     */
+    public MimeMessage buildMessage(String to, String cc, String bcc, String subject, String body, List<Path> attachments, boolean isHtml) 
+            throws MessagingException, IOException {
         
-        Message message = new MimeMessage(session);
+        MimeMessage message = new MimeMessage(session);
         
         // Remitente
         message.setFrom(new InternetAddress(username));
@@ -214,12 +246,20 @@ public class SendMail {
             multipart.addBodyPart(textPart);
             
             // Adjuntar archivos
+            EncodedAttachmentCache cache = attachmentCache;
             for (Path attachment : attachments) {
-                if (Files.exists(attachment)) {
+                if (cache != null) {
+                    MimeBodyPart cachedPart = cache.createPart(attachment);
+                    if (cachedPart != null) {
+                        multipart.addBodyPart(cachedPart);
+                    }
+                } else if (Files.exists(attachment)) {
                     MimeBodyPart attachmentPart = new MimeBodyPart();
                     DataSource source = new FileDataSource(attachment.toFile());
                     attachmentPart.setDataHandler(new DataHandler(source));
                     attachmentPart.setFileName(attachment.getFileName().toString());
+                    // Fijar la codificación evita leer el archivo completo para elegirla al preparar el mensaje
+                    attachmentPart.setHeader("Content-Transfer-Encoding", "base64");
                     multipart.addBodyPart(attachmentPart);
                 }
             }
@@ -227,8 +267,150 @@ public class SendMail {
             message.setContent(multipart);
         }
         
-        // Enviar
-        Transport.send(message);
+        return message;
+    }
+
+    /**
+     * Envía un mensaje ya construido.
+     * Si la reutilización de conexiones está activa, usa una conexión SMTP del pool;
+     * en caso contrario abre y cierra una conexión para este mensaje.
+     * 
+     * @param message mensaje a enviar
+     * @throws MessagingException si ocurre un error al enviar
+     */
+    public void send(Message message) throws MessagingException {
+        send(message, null);
+    }
+
+    // Enviar un mensaje solo a los destinatarios indicados del sobre SMTP (null para todos los del mensaje)
+    void send(Message message, Address[] recipients) throws MessagingException {
+        TransferMetrics metrics = sendMetrics;
+        TransferSpan span = tracer.startSpan("smtp.send", "smtp");
+        span.setAttribute("server.address", smtpHost);
+        long start = System.nanoTime();
+        try {
+            SmtpConnectionPool pool = connectionPool;
+            if (pool != null) {
+                pool.send(message, recipients != null ? recipients : SmtpConnectionPool.prepare(message));
+            } else if (recipients != null) {
+                Transport.send(message, recipients);
+            } else {
+                Transport.send(message);
+            }
+            metrics.success(start, -1);
+            span.event(TransferPhase.COMPLETE);
+        } catch (MessagingException | RuntimeException e) {
+            metrics.failure();
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Activa las métricas de los envíos y del pool de conexiones de esta instancia.
+     * Los envíos se registran con {@code connector=smtp} y {@code operation=send}; el pool publica las
+     * conexiones abiertas, libres y en uso, las creadas y los mensajes enviados ({@code connect.pool.messages}),
+     * de los que se obtiene la tasa de reutilización. Las etiquetas {@code pool}, {@code host} y {@code state}
+     * coinciden con las de {@link MailStorePool#registerMetrics(MetricsRegistry, String)}. Los indicadores leen
+     * el pool vigente, aunque se cambie después.
+     * 
+     * @param registry registro de métricas (null para desactivarlas)
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        MetricsRegistry target = registry != null ? registry : MetricsRegistry.NOOP;
+        this.sendMetrics = new TransferMetrics(target, "smtp", "send");
+        target.gauge("connect.pool.connections", () -> {
+            SmtpConnectionPool pool = connectionPool;
+            return pool == null ? 0 : pool.getOpenConnections();
+        }, "pool", "smtp", "host", smtpHost, "state", "open");
+        target.gauge("connect.pool.connections", () -> {
+            SmtpConnectionPool pool = connectionPool;
+            return pool == null ? 0 : pool.getIdleConnections();
+        }, "pool", "smtp", "host", smtpHost, "state", "idle");
+        target.gauge("connect.pool.connections", () -> {
+            SmtpConnectionPool pool = connectionPool;
+            return pool == null ? 0 : pool.getActiveConnections();
+        }, "pool", "smtp", "host", smtpHost, "state", "active");
+        target.gauge("connect.pool.created", () -> {
+            SmtpConnectionPool pool = connectionPool;
+            return pool == null ? 0 : pool.getConnectionsCreated();
+        }, "pool", "smtp", "host", smtpHost);
+        target.gauge("connect.pool.messages", () -> {
+            SmtpConnectionPool pool = connectionPool;
+            return pool == null ? 0 : pool.getMessagesSent();
+        }, "pool", "smtp", "host", smtpHost);
+    }
+
+    /**
+     * Activa las trazas de los envíos de esta instancia. Javamail no expone las fases de la conexión SMTP,
+     * por lo que cada envío se traza como una sola operación terminada en {@code complete}.
+     *
+     * @param tracer trazador (null para desactivarlas)
+     */
+    public void setTracer(TransferTracer tracer) {
+        this.tracer = tracer != null ? tracer : TransferTracer.NOOP;
+    }
+
+    /**
+     * Activa la reutilización de conexiones SMTP entre envíos.
+     * Las conexiones se mantienen abiertas y autenticadas, y se renuevan tras un número de mensajes,
+     * tras un tiempo de inactividad o cuando fallan.
+     * 
+     * @param maxConnections número máximo de conexiones simultáneas
+     * @param maxMessagesPerConnection mensajes tras los que se renueva la conexión (0 sin límite)
+     * @param idleTimeout tiempo de inactividad tras el que se cierra una conexión
+     */
+    public synchronized void enableConnectionReuse(int maxConnections, int maxMessagesPerConnection, Duration idleTimeout) {
+        SmtpConnectionPool previous = connectionPool;
+        connectionPool = createConnectionPool(maxConnections, maxMessagesPerConnection, idleTimeout);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    // Crear un pool de conexiones independiente con la configuración de este servidor
+    SmtpConnectionPool createConnectionPool(int maxConnections, int maxMessagesPerConnection, Duration idleTimeout) {
+        return new SmtpConnectionPool(session, smtpHost, smtpPort, username, password,
+                maxConnections, maxMessagesPerConnection, idleTimeout);
+    }
+
+    // Activar la reutilización con una conexión, renovada cada 100 mensajes o tras 60 segundos de inactividad
+    public void enableConnectionReuse() {
+        enableConnectionReuse(1, 100, Duration.ofSeconds(60));
+    }
+
+    /**
+     * Establece una caché de adjuntos codificados.
+     * Con la caché, cada archivo adjunto se codifica en Base64 una sola vez y se reutiliza en todos los mensajes
+     * que lo incluyen. La caché no se cierra al cerrar este SendMail.
+     * 
+     * @param attachmentCache caché de adjuntos (null para codificar cada adjunto al enviar)
+     */
+    public void setAttachmentCache(EncodedAttachmentCache attachmentCache) {
+        this.attachmentCache = attachmentCache;
+    }
+
+    // Obtener la caché de adjuntos codificados (null si no está configurada)
+    public EncodedAttachmentCache getAttachmentCache() {
+        return attachmentCache;
+    }
+
+    // Obtener el pool de conexiones (null si la reutilización no está activa)
+    public SmtpConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Cierra las conexiones SMTP abiertas por la reutilización de conexiones.
+     */
+    @Override
+    public synchronized void close() {
+        if (connectionPool != null) {
+            connectionPool.close();
+            connectionPool = null;
+        }
     }
 
     // Enviar correo con múltiples destinatarios
@@ -293,6 +475,28 @@ public class SendMail {
             return this;
         }
 
+        /**
+         * Compila los datos del builder (salvo el destinatario) como plantilla reutilizable.
+         * El asunto y el cuerpo pueden contener variables ${nombre} que se sustituyen en cada envío.
+         * 
+         * @return plantilla precompilada
+         * @throws MessagingException si alguna dirección no es válida
+         * @throws IOException si ocurre un error al leer los adjuntos
+         */
+        public MailTemplate toTemplate() throws MessagingException, IOException {
+            MailTemplate.Builder builder = MailTemplate.builder(sender)
+                    .cc(cc)
+                    .bcc(bcc)
+                    .subject(subject)
+                    .attachAll(attachments);
+            if (isHtml) {
+                builder.htmlBody(body);
+            } else {
+                builder.body(body);
+            }
+            return builder.build();
+        }
+
         public void send() throws MessagingException, IOException {
             if (to == null || to.isEmpty()) {
                 throw new MessagingException("El destinatario (to) es obligatorio");
@@ -312,8 +516,18 @@ public class SendMail {
         return new EmailBuilder(this);
     }
 
+    // Crear un builder de plantillas precompiladas para envíos masivos
+    public MailTemplate.Builder newTemplate() {
+        return MailTemplate.builder(this);
+    }
+
     // Obtener la sesión de correo
     public Session getSession() {
         return session;
     }
+
+    // Dirección del remitente
+    String getUsername() {
+        return username;
+    }
 }
@@ -0,0 +1,340 @@
+package eu.sgax.connect.mail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+
+/**
+ * Pool de conexiones SMTP reutilizables.
+ * Mantiene abiertas una o varias conexiones {@link Transport} ya autenticadas y las reutiliza entre envíos,
+ * evitando la conexión TCP, STARTTLS y AUTH de cada mensaje.
+ *
+ * <p>Cada conexión se renueva tras enviar un número máximo de mensajes o tras un tiempo de inactividad,
+ * y se descarta si falla. Las conexiones que llevan un tiempo sin usarse se validan con NOOP antes de reutilizarlas.
+ * Es seguro entre hilos: cada envío usa una conexión en exclusiva.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class SmtpConnectionPool implements AutoCloseable {
+
+    // Tiempo de inactividad a partir del cual se valida la conexión con NOOP antes de usarla
+    private static final long VALIDATE_AFTER_MILLIS = 2000;
+
+    private final Session session;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final int maxConnections;
+    private final int maxMessagesPerConnection;
+    private final long idleTimeoutMillis;
+    private final BlockingQueue<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor para SmtpConnectionPool.
+     *
+     * @param session sesión de correo configurada para SMTP
+     * @param host dirección del servidor SMTP
+     * @param port puerto del servidor SMTP
+     * @param username nombre de usuario para autenticación
+     * @param password contraseña para autenticación
+     * @param maxConnections número máximo de conexiones simultáneas
+     * @param maxMessagesPerConnection mensajes enviados tras los que se renueva la conexión (0 sin límite)
+     * @param idleTimeout tiempo de inactividad tras el que se cierra la conexión
+     */
+    SmtpConnectionPool(Session session, String host, int port, String username, String password,
+                       int maxConnections, int maxMessagesPerConnection, Duration idleTimeout) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("El número de conexiones debe ser al menos 1: " + maxConnections);
+        }
+        this.session = session;
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.maxConnections = maxConnections;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    /**
+     * Envía un mensaje usando una conexión del pool.
+     * Bloquea si todas las conexiones están en uso.
+     *
+     * @param message mensaje a enviar
+     * @throws MessagingException si ocurre un error al enviar
+     */
+    public void send(Message message) throws MessagingException {
+        send(message, prepare(message));
+    }
+
+    /**
+     * Envía un mensaje ya preparado a un conjunto concreto de destinatarios del sobre SMTP.
+     * Permite reintentar un envío solo para los destinatarios que fallaron.
+     * El mensaje debe haberse preparado antes con {@code saveChanges()}.
+     *
+     * @param message mensaje a enviar
+     * @param recipients destinatarios del sobre SMTP
+     * @throws MessagingException si ocurre un error al enviar
+     */
+    public void send(Message message, Address[] recipients) throws MessagingException {
+        PooledTransport pooled = borrow();
+        boolean reusable = false;
+        try {
+            pooled.transport.sendMessage(message, recipients);
+            pooled.sent++;
+            messagesSent.incrementAndGet();
+            reusable = true;
+        } catch (SendFailedException e) {
+            // Destinatarios rechazados: la conexión sigue siendo válida si el servidor no la ha cerrado
+            reusable = pooled.transport.isConnected();
+            throw e;
+        } finally {
+            release(pooled, reusable);
+        }
+    }
+
+    // Número de conexiones abiertas (en uso o libres)
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    // Número de conexiones libres
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    // Número de conexiones en uso
+    public int getActiveConnections() {
+        return maxConnections - permits.availablePermits();
+    }
+
+    // Número máximo de conexiones
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    // Total de conexiones establecidas desde la creación del pool
+    public long getConnectionsCreated() {
+        return connectionsCreated.get();
+    }
+
+    // Total de mensajes enviados por el pool
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    /**
+     * Cierra las conexiones libres que superan el tiempo de inactividad.
+     */
+    public void evictIdle() {
+        int count = idle.size();
+        for (int i = 0; i < count; i++) {
+            PooledTransport pooled = idle.poll();
+            if (pooled == null) {
+                break;
+            }
+            if (pooled.isExpired()) {
+                discard(pooled);
+            } else {
+                idle.offer(pooled);
+            }
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones libres. Las conexiones en uso se cierran al devolverse.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledTransport pooled;
+        while ((pooled = idle.poll()) != null) {
+            discard(pooled);
+        }
+    }
+
+    // Preparar el mensaje como hace Transport.send()
+    static Address[] prepare(Message message) throws MessagingException {
+        message.saveChanges();
+        Address[] recipients = message.getAllRecipients();
+        if (recipients == null || recipients.length == 0) {
+            throw new SendFailedException("El mensaje no tiene destinatarios");
+        }
+        return recipients;
+    }
+
+    // Destinatarios a reintentar tras un error; vacío si el error es definitivo
+    static Address[] retryableRecipients(MessagingException error, Address[] recipients) {
+        if (!(error instanceof SendFailedException failed)) {
+            // Error de conexión o de protocolo: el mensaje no se ha aceptado
+            return recipients;
+        }
+
+        if (failed instanceof SMTPSendFailedException smtp
+                && (smtp.getCommand() == null || !smtp.getCommand().startsWith("RCPT"))) {
+            int code = smtp.getReturnCode();
+            if (code >= 500) {
+                return new Address[0];
+            }
+            if (code >= 400) {
+                return unsent(failed, recipients);
+            }
+        }
+
+        // Errores por destinatario: se reintentan los válidos no enviados y los rechazados temporalmente
+        Set<Address> retry = new LinkedHashSet<>();
+        if (failed.getValidUnsentAddresses() != null) {
+            retry.addAll(List.of(failed.getValidUnsentAddresses()));
+        }
+        Exception next = failed.getNextException();
+        while (next instanceof MessagingException nested) {
+            if (nested instanceof SMTPAddressFailedException address && isTransient(address.getReturnCode())) {
+                retry.add(address.getAddress());
+            }
+            next = nested.getNextException();
+        }
+        return retry.toArray(new Address[0]);
+    }
+
+    // Destinatarios rechazados de forma definitiva tras un error; no se deben volver a intentar
+    static Address[] rejectedRecipients(MessagingException error, Address[] recipients) {
+        if (!(error instanceof SendFailedException failed)) {
+            return new Address[0];
+        }
+        Set<Address> rejected = new LinkedHashSet<>();
+        if (failed instanceof SMTPSendFailedException smtp
+                && (smtp.getCommand() == null || !smtp.getCommand().startsWith("RCPT"))) {
+            if (smtp.getReturnCode() >= 500) {
+                // Mensaje rechazado entero: ningún destinatario pendiente lo ha recibido
+                rejected.addAll(List.of(unsent(failed, recipients)));
+            }
+            return rejected.toArray(new Address[0]);
+        }
+        if (failed.getInvalidAddresses() != null) {
+            rejected.addAll(List.of(failed.getInvalidAddresses()));
+        }
+        rejected.removeAll(List.of(retryableRecipients(error, recipients)));
+        return rejected.toArray(new Address[0]);
+    }
+
+    private static Address[] unsent(SendFailedException failed, Address[] recipients) {
+        Address[] sent = failed.getValidSentAddresses();
+        if (sent == null || sent.length == 0) {
+            return recipients;
+        }
+        List<Address> unsent = new ArrayList<>(List.of(recipients));
+        unsent.removeAll(List.of(sent));
+        return unsent.toArray(new Address[0]);
+    }
+
+    private static boolean isTransient(int returnCode) {
+        return returnCode >= 400 && returnCode < 500;
+    }
+
+    // Obtener una conexión libre válida o abrir una nueva
+    private PooledTransport borrow() throws MessagingException {
+        if (closed) {
+            throw new MessagingException("El pool de conexiones SMTP está cerrado.");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrumpido esperando una conexión SMTP.", e);
+        }
+
+        try {
+            PooledTransport pooled;
+            while ((pooled = idle.poll()) != null) {
+                if (pooled.isExpired()) {
+                    discard(pooled);
+                } else if (pooled.idleMillis() > VALIDATE_AFTER_MILLIS && !pooled.transport.isConnected()) {
+                    // isConnected() envía NOOP y detecta conexiones cerradas por el servidor
+                    discard(pooled);
+                } else {
+                    return pooled;
+                }
+            }
+            return connect();
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Devolver una conexión al pool o cerrarla
+    private void release(PooledTransport pooled, boolean reusable) {
+        try {
+            pooled.lastUsed = System.currentTimeMillis();
+            boolean exhausted = maxMessagesPerConnection > 0 && pooled.sent >= maxMessagesPerConnection;
+            if (!reusable || exhausted || closed) {
+                discard(pooled);
+            } else {
+                idle.offer(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledTransport connect() throws MessagingException {
+        Transport transport = session.getTransport("smtp");
+        transport.connect(host, port, username, password);
+        open.incrementAndGet();
+        connectionsCreated.incrementAndGet();
+        return new PooledTransport(transport);
+    }
+
+    private void discard(PooledTransport pooled) {
+        open.decrementAndGet();
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            // Ignorar errores al cerrar conexiones descartadas
+        }
+    }
+
+    // Conexión del pool con su estado de uso
+    private class PooledTransport {
+        private final Transport transport;
+        private int sent = 0;
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        private long idleMillis() {
+            return System.currentTimeMillis() - lastUsed;
+        }
+
+        private boolean isExpired() {
+            return idleTimeoutMillis > 0 && idleMillis() > idleTimeoutMillis;
+        }
+    }
+}
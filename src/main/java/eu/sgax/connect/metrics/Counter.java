@@ -0,0 +1,24 @@
+package eu.sgax.connect.metrics;
+
+/**
+ * Contador monótono obtenido de un {@link MetricsRegistry}.
+ * Se resuelve una vez al configurar las métricas; incrementarlo no crea objetos.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface Counter {
+
+    /**
+     * Suma una cantidad al contador.
+     *
+     * @param amount cantidad a sumar
+     */
+    void increment(long amount);
+
+    // Sumar uno al contador
+    default void increment() {
+        increment(1);
+    }
+}
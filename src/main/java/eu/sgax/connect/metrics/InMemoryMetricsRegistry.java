@@ -0,0 +1,212 @@
+package eu.sgax.connect.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registro de métricas en memoria, sin dependencias externas.
+ * Los contadores usan {@link LongAdder} y los temporizadores un histograma logarítmico de tamaño fijo sobre un
+ * {@link AtomicLongArray}: 16 intervalos por cada potencia de 2, lo que da percentiles con un error relativo
+ * máximo del 6,25 % sin guardar cada muestra. Registrar una duración son unas pocas operaciones atómicas y no
+ * crea objetos, así que puede usarse en producción. Es seguro entre hilos.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, HistogramTimer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    @Override
+    public Counter counter(String name, String... tags) {
+        LongAdder adder = counters.computeIfAbsent(id(name, tags), key -> new LongAdder());
+        return adder::add;
+    }
+
+    @Override
+    public Timer timer(String name, String... tags) {
+        return timers.computeIfAbsent(id(name, tags), key -> new HistogramTimer());
+    }
+
+    @Override
+    public void gauge(String name, DoubleSupplier value, String... tags) {
+        gauges.put(id(name, tags), value);
+    }
+
+    // Valor de un contador (0 si no existe)
+    public long getCount(String name, String... tags) {
+        LongAdder adder = counters.get(id(name, tags));
+        return adder == null ? 0 : adder.sum();
+    }
+
+    // Estadísticas de un temporizador (null si no existe)
+    public TimerStats getTimer(String name, String... tags) {
+        HistogramTimer timer = timers.get(id(name, tags));
+        return timer == null ? null : timer.snapshot();
+    }
+
+    // Valor actual de un indicador (NaN si no existe)
+    public double getGauge(String name, String... tags) {
+        DoubleSupplier gauge = gauges.get(id(name, tags));
+        return gauge == null ? Double.NaN : gauge.getAsDouble();
+    }
+
+    // Identificadores de todas las métricas registradas, en orden alfabético
+    public List<String> getMeterIds() {
+        List<String> ids = new ArrayList<>(counters.keySet());
+        ids.addAll(timers.keySet());
+        ids.addAll(gauges.keySet());
+        Collections.sort(ids);
+        return ids;
+    }
+
+    // Identificador con el formato nombre{clave=valor,...}
+    static String id(String name, String... tags) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Las etiquetas deben indicarse en pares clave-valor: " + name);
+        }
+        if (tags.length == 0) {
+            return name;
+        }
+        StringBuilder id = new StringBuilder(name).append('{');
+        for (int i = 0; i < tags.length; i += 2) {
+            if (i > 0) {
+                id.append(',');
+            }
+            id.append(tags[i]).append('=').append(tags[i + 1]);
+        }
+        return id.append('}').toString();
+    }
+
+    // Temporizador con histograma logarítmico de intervalos fijos
+    private static final class HistogramTimer implements Timer {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        @Override
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            count.increment();
+            total.add(value);
+            buckets.incrementAndGet(bucket(value));
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                // Reintentar si otro hilo ha cambiado el máximo
+            }
+        }
+
+        TimerStats snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return new TimerStats(count.sum(), total.sum(), max.get(), counts);
+        }
+
+        // Los valores menores que 16 tienen intervalo propio; el resto, 16 intervalos por potencia de 2
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return ((exponent - SUB_BITS + 1) << SUB_BITS) + sub;
+        }
+
+        // Mayor valor que cae en el intervalo
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = (bucket >>> SUB_BITS) - 1;
+            long lower = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+            return lower + (1L << shift) - 1;
+        }
+    }
+
+    // Estadísticas de un temporizador en un instante
+    public static class TimerStats {
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] buckets;
+
+        private TimerStats(long count, long totalNanos, long maxNanos, long[] buckets) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+        }
+
+        // Número de duraciones registradas
+        public long getCount() {
+            return count;
+        }
+
+        // Suma de las duraciones en nanosegundos
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        // Duración máxima en nanosegundos
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        // Duración media en nanosegundos
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * Calcula un percentil a partir del histograma.
+         *
+         * @param quantile percentil entre 0 y 1 (por ejemplo 0.99)
+         * @return duración en nanosegundos, con un error relativo máximo del 6,25 %
+         */
+        public long percentile(double quantile) {
+            long seen = 0;
+            for (long bucketCount : buckets) {
+                seen += bucketCount;
+            }
+            if (seen == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * seen));
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                if (cumulative >= rank) {
+                    return Math.min(HistogramTimer.upperBound(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "TimerStats{" +
+                    "count=" + count +
+                    ", meanNanos=" + (long) getMeanNanos() +
+                    ", p50=" + percentile(0.5) +
+                    ", p99=" + percentile(0.99) +
+                    ", maxNanos=" + maxNanos +
+                    '}';
+        }
+    }
+}
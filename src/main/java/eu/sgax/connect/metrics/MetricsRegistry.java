@@ -0,0 +1,67 @@
+package eu.sgax.connect.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registro de métricas al que los conectores envían contadores, temporizadores e indicadores.
+ * Los instrumentos se piden una vez, al configurar las métricas de un conector, y se guardan; en cada
+ * transferencia solo se llama a {@link Counter#increment(long)} o {@link Timer#record(long)}, sin buscar
+ * por nombre ni crear objetos.
+ *
+ * <p>Las etiquetas se indican como pares clave-valor: {@code timer("connect.transfer.duration",
+ * "connector", "ftp", "operation", "upload")}. Hay tres implementaciones: {@link #NOOP}, que descarta todo y es
+ * la usada por defecto, {@link InMemoryMetricsRegistry} y {@link MicrometerMetricsRegistry}.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public interface MetricsRegistry {
+
+    // Registro que descarta todas las métricas
+    MetricsRegistry NOOP = new MetricsRegistry() {
+        private final Counter counter = amount -> { };
+        private final Timer timer = nanos -> { };
+
+        @Override
+        public Counter counter(String name, String... tags) {
+            return counter;
+        }
+
+        @Override
+        public Timer timer(String name, String... tags) {
+            return timer;
+        }
+
+        @Override
+        public void gauge(String name, DoubleSupplier value, String... tags) {
+        }
+    };
+
+    /**
+     * Obtiene o crea un contador.
+     *
+     * @param name nombre de la métrica
+     * @param tags etiquetas en pares clave-valor
+     * @return contador
+     */
+    Counter counter(String name, String... tags);
+
+    /**
+     * Obtiene o crea un temporizador.
+     *
+     * @param name nombre de la métrica
+     * @param tags etiquetas en pares clave-valor
+     * @return temporizador
+     */
+    Timer timer(String name, String... tags);
+
+    /**
+     * Registra un indicador cuyo valor se lee de la función cada vez que se consulta.
+     * Si ya existe uno con el mismo nombre y etiquetas, se sustituye.
+     *
+     * @param name nombre de la métrica
+     * @param value función que devuelve el valor actual
+     * @param tags etiquetas en pares clave-valor
+     */
+    void gauge(String name, DoubleSupplier value, String... tags);
+}
@@ -0,0 +1,86 @@
+package eu.sgax.connect.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * Adaptador que publica las métricas de los conectores en un {@link MeterRegistry} de Micrometer, y desde ahí
+ * en Prometheus, Datadog o cualquier otro sistema que admita Micrometer.
+ * Micrometer es una dependencia opcional: hay que añadir {@code micrometer-core} al proyecto para usar esta clase.
+ * Los temporizadores publican un histograma de percentiles para poder agregarlos entre instancias.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class MicrometerMetricsRegistry implements MetricsRegistry {
+
+    private final MeterRegistry registry;
+    private final Map<String, GaugeValue> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor para MicrometerMetricsRegistry.
+     *
+     * @param registry registro de Micrometer donde publicar las métricas
+     */
+    public MicrometerMetricsRegistry(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Counter counter(String name, String... tags) {
+        io.micrometer.core.instrument.Counter counter = io.micrometer.core.instrument.Counter.builder(name)
+                .tags(tags(name, tags))
+                .register(registry);
+        return counter::increment;
+    }
+
+    @Override
+    public Timer timer(String name, String... tags) {
+        io.micrometer.core.instrument.Timer timer = io.micrometer.core.instrument.Timer.builder(name)
+                .tags(tags(name, tags))
+                .publishPercentileHistogram()
+                .register(registry);
+        return nanos -> timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void gauge(String name, DoubleSupplier value, String... tags) {
+        // Micrometer conserva el primer indicador registrado; se sustituye solo la función que lee
+        gauges.computeIfAbsent(InMemoryMetricsRegistry.id(name, tags), id -> {
+            GaugeValue holder = new GaugeValue();
+            Gauge.builder(name, holder, GaugeValue::read)
+                    .tags(tags(name, tags))
+                    .strongReference(true)
+                    .register(registry);
+            return holder;
+        }).supplier = value;
+    }
+
+    // Registro de Micrometer subyacente
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    private static Tags tags(String name, String... tags) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Las etiquetas deben indicarse en pares clave-valor: " + name);
+        }
+        return Tags.of(tags);
+    }
+
+    // Función del indicador, sustituible tras registrarlo
+    private static final class GaugeValue {
+        private volatile DoubleSupplier supplier;
+
+        double read() {
+            DoubleSupplier current = supplier;
+            return current == null ? Double.NaN : current.getAsDouble();
+        }
+    }
+}
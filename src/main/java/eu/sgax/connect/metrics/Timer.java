@@ -0,0 +1,24 @@
+package eu.sgax.connect.metrics;
+
+/**
+ * Temporizador obtenido de un {@link MetricsRegistry} que acumula duraciones para calcular latencias y percentiles.
+ * Se resuelve una vez al configurar las métricas; registrar una duración no crea objetos.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface Timer {
+
+    /**
+     * Registra una duración.
+     *
+     * @param nanos duración en nanosegundos
+     */
+    void record(long nanos);
+
+    // Registrar el tiempo transcurrido desde un instante de System.nanoTime()
+    default void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,66 @@
+package eu.sgax.connect.metrics;
+
+/**
+ * Instrumentos de una operación de un conector, resueltos una vez en un {@link MetricsRegistry}.
+ * Cada transferencia registra su duración en {@code connect.transfer.duration}, sus bytes en
+ * {@code connect.transfer.bytes} o, si falla, un error en {@code connect.transfer.errors}, con las etiquetas
+ * {@code connector} (ftp, sftp, s3, smtp) y {@code operation} (upload, download, send).
+ *
+ * <pre>
+ * long start = System.nanoTime();
+ * try {
+ *     long bytes = transferir();
+ *     metrics.success(start, bytes);
+ * } catch (IOException e) {
+ *     metrics.failure();
+ *     throw e;
+ * }
+ * </pre>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public final class TransferMetrics {
+
+    public static final String DURATION = "connect.transfer.duration";
+    public static final String BYTES = "connect.transfer.bytes";
+    public static final String ERRORS = "connect.transfer.errors";
+
+    // Instrumentos que no registran nada, usados mientras no se configuran métricas
+    public static final TransferMetrics NOOP = new TransferMetrics(MetricsRegistry.NOOP, "none", "none");
+
+    private final Timer duration;
+    private final Counter bytes;
+    private final Counter errors;
+
+    /**
+     * Resuelve los instrumentos de una operación.
+     *
+     * @param registry registro de métricas
+     * @param connector nombre del conector (ftp, sftp, s3, smtp)
+     * @param operation nombre de la operación (upload, download, send)
+     */
+    public TransferMetrics(MetricsRegistry registry, String connector, String operation) {
+        this.duration = registry.timer(DURATION, "connector", connector, "operation", operation);
+        this.bytes = registry.counter(BYTES, "connector", connector, "operation", operation);
+        this.errors = registry.counter(ERRORS, "connector", connector, "operation", operation);
+    }
+
+    /**
+     * Registra una transferencia completada.
+     *
+     * @param startNanos instante de inicio obtenido con {@link System#nanoTime()}
+     * @param transferred bytes transferidos (negativo si no se conocen)
+     */
+    public void success(long startNanos, long transferred) {
+        duration.recordSince(startNanos);
+        if (transferred > 0) {
+            bytes.increment(transferred);
+        }
+    }
+
+    // Registrar una transferencia fallida (su duración no se mezcla con la de las completadas)
+    public void failure() {
+        errors.increment();
+    }
+}
@@ -2,6 +2,13 @@ package eu.sgax.connect.s3;
 
 import java.nio.file.Path;
 
+import eu.sgax.connect.metrics.MetricsRegistry;
+import eu.sgax.connect.metrics.TransferMetrics;
+import eu.sgax.connect.tracing.TransferPhase;
+import eu.sgax.connect.tracing.TransferSpan;
+import eu.sgax.connect.tracing.TransferTracer;
+
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
@@ -17,6 +24,8 @@ import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 public class S3Downloader {
 
     private final S3Client client;
+    private TransferMetrics metrics = TransferMetrics.NOOP;
+    private TransferTracer tracer = TransferTracer.NOOP;
 
     /**
      * Constructor para S3Downloader.
@@ -40,7 +49,50 @@ public class S3Downloader {
                 .bucket(bucket)
                 .key(key)
                 .build();
-        return client.getObject(request, ResponseTransformer.toFile(destination));
+        TransferSpan span = tracer.startSpan("s3.download", "s3");
+        ResponseTransformer<GetObjectResponse, GetObjectResponse> transformer = ResponseTransformer.toFile(destination);
+        if (span.isRecording()) {
+            span.setAttribute("aws.s3.bucket", bucket);
+            span.setAttribute("aws.s3.key", key);
+            // El transformador recibe la respuesta cuando llegan las cabeceras, antes de leer el cuerpo
+            ResponseTransformer<GetObjectResponse, GetObjectResponse> toFile = transformer;
+            transformer = (response, input) -> {
+                span.event(TransferPhase.FIRST_BYTE);
+                return toFile.transform(response, input);
+            };
+        }
+        long start = System.nanoTime();
+        try {
+            GetObjectResponse response = client.getObject(request, transformer);
+            long bytes = response.contentLength() != null ? response.contentLength() : -1;
+            metrics.success(start, bytes);
+            span.event(TransferPhase.COMPLETE, bytes);
+            return response;
+        } catch (SdkException e) {
+            metrics.failure();
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Activa las métricas de las descargas de esta instancia.
+     * 
+     * @param registry registro de métricas (null para desactivarlas)
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        this.metrics = new TransferMetrics(registry != null ? registry : MetricsRegistry.NOOP, "s3", "download");
+    }
+
+    /**
+     * Activa las trazas de las descargas de esta instancia.
+     * 
+     * @param tracer trazador (null para desactivarlas)
+     */
+    public void setTracer(TransferTracer tracer) {
+        this.tracer = tracer != null ? tracer : TransferTracer.NOOP;
     }
 
     /**
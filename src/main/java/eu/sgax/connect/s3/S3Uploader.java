@@ -1,13 +1,30 @@
 package eu.sgax.connect.s3;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
+import eu.sgax.connect.metrics.MetricsRegistry;
+import eu.sgax.connect.metrics.TransferMetrics;
+import eu.sgax.connect.tracing.TransferPhase;
+import eu.sgax.connect.tracing.TransferSpan;
+import eu.sgax.connect.tracing.TransferTracer;
+
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 
 /**
  * Clase para subir objetos a S3 y servicios compatibles.
@@ -18,7 +35,13 @@ import software.amazon.awssdk.services.s3.model.PutObjectResponse;
  */
 public class S3Uploader {
 
+    // Tamaño mínimo de parte admitido por S3 en cargas multiparte
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
     private final S3Client client;
+    private int partSize = 8 * 1024 * 1024;
+    private TransferMetrics metrics = TransferMetrics.NOOP;
+    private TransferTracer tracer = TransferTracer.NOOP;
 
     /**
      * Constructor para S3Uploader.
@@ -44,7 +67,148 @@ public class S3Uploader {
                 .bucket(bucket)
                 .key(key)
                 .build();
-        return client.putObject(request, RequestBody.fromFile(source));
+        TransferSpan span = startSpan("s3.upload", bucket, key);
+        long start = System.nanoTime();
+        try {
+            RequestBody body = RequestBody.fromFile(source);
+            PutObjectResponse response = client.putObject(request, body);
+            long bytes = body.optionalContentLength().orElse(-1L);
+            metrics.success(start, bytes);
+            span.event(TransferPhase.COMPLETE, bytes);
+            return response;
+        } catch (SdkException e) {
+            metrics.failure();
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Sube a S3 el contenido de un stream sin guardarlo antes en disco.
+     * Si el contenido cabe en una parte se sube con una sola petición; si no, se usa una carga multiparte
+     * leyendo el stream por partes, de modo que la memoria usada no depende del tamaño total.
+     * Si la carga falla se cancela para no dejar partes huérfanas en el bucket.
+     * 
+     * @param bucket nombre del bucket destino
+     * @param key clave del objeto a crear
+     * @param input stream con el contenido (no se cierra)
+     * @param contentType tipo de contenido del objeto (puede ser null)
+     * @return ETag del objeto creado
+     * @throws IOException si ocurre un error al leer el stream
+     */
+    public String uploadStream(String bucket, String key, InputStream input, String contentType) throws IOException {
+        ensurePrefixExists(bucket, key);
+        TransferSpan span = startSpan("s3.uploadStream", bucket, key);
+        long start = System.nanoTime();
+        try {
+            return uploadParts(bucket, key, input, contentType, start, span);
+        } catch (IOException | RuntimeException e) {
+            metrics.failure();
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Activa las métricas de las cargas de esta instancia.
+     * 
+     * @param registry registro de métricas (null para desactivarlas)
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        this.metrics = new TransferMetrics(registry != null ? registry : MetricsRegistry.NOOP, "s3", "upload");
+    }
+
+    /**
+     * Activa las trazas de las cargas de esta instancia.
+     * 
+     * @param tracer trazador (null para desactivarlas)
+     */
+    public void setTracer(TransferTracer tracer) {
+        this.tracer = tracer != null ? tracer : TransferTracer.NOOP;
+    }
+
+    // Abrir una traza con el bucket y la clave como atributos
+    private TransferSpan startSpan(String name, String bucket, String key) {
+        TransferSpan span = tracer.startSpan(name, "s3");
+        if (span.isRecording()) {
+            span.setAttribute("aws.s3.bucket", bucket);
+            span.setAttribute("aws.s3.key", key);
+        }
+        return span;
+    }
+
+    // Subir el stream en una petición o por partes, registrando la carga completada
+    private String uploadParts(String bucket, String key, InputStream input, String contentType, long start,
+                               TransferSpan span) throws IOException {
+        byte[] part = input.readNBytes(partSize);
+        if (part.length < partSize) {
+            PutObjectRequest request = PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .build();
+            String eTag = client.putObject(request, RequestBody.fromBytes(part)).eTag();
+            metrics.success(start, part.length);
+            span.event(TransferPhase.COMPLETE, part.length);
+            return eTag;
+        }
+
+        String uploadId = client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .build()).uploadId();
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            int partNumber = 1;
+            long uploaded = 0;
+            while (part.length > 0) {
+                UploadPartRequest request = UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .build();
+                String eTag = client.uploadPart(request, RequestBody.fromBytes(part)).eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+                uploaded += part.length;
+                partNumber++;
+                part = input.readNBytes(partSize);
+            }
+            String eTag = client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build()).eTag();
+            metrics.success(start, uploaded);
+            span.setAttribute("aws.s3.part_count", partNumber - 1);
+            span.event(TransferPhase.COMPLETE, uploaded);
+            return eTag;
+        } catch (IOException | RuntimeException e) {
+            client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+            throw e;
+        }
+    }
+
+    /**
+     * Establece el tamaño de parte de las cargas desde stream (por defecto 8 MB, mínimo 5 MB).
+     * 
+     * @param partSize tamaño de parte en bytes
+     */
+    public void setPartSize(int partSize) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("El tamaño de parte debe ser al menos 5 MB: " + partSize);
+        }
+        this.partSize = partSize;
     }
 
     /**
@@ -0,0 +1,546 @@
+package eu.sgax.connect.sftp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.jcraft.jsch.HostKey;
+import com.jcraft.jsch.HostKeyRepository;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.UserInfo;
+
+/**
+ * Índice en memoria de claves de host conocidas para verificar servidores SFTP.
+ * Lee el archivo known_hosts (formato OpenSSH, incluidas entradas con hash, patrones
+ * y marcas {@code @revoked}) una sola vez y resuelve cada host una única vez,
+ * guardando el resultado en caché, de forma que las conexiones no realizan E/S de archivos.
+ *
+ * <p>Las instancias son seguras entre hilos y pueden compartirse entre varias {@link SFTPConnect}
+ * mediante {@link #shared(Path)}. Además permite fijar (pinning) claves o huellas SHA-256 por host,
+ * que tienen prioridad sobre el archivo.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class KnownHostsIndex implements HostKeyRepository {
+
+    private static final Map<Path, KnownHostsIndex> SHARED = new ConcurrentHashMap<>();
+    private static final String HASH_MAGIC = "|1|";
+    private static final String MARKER_REVOKED = "@revoked";
+    private static final String MARKER_CERT_AUTHORITY = "@cert-authority";
+
+    private final Path file;
+    private volatile Snapshot snapshot;
+    private final List<Entry> added = new CopyOnWriteArrayList<>();
+    private final Map<String, List<Pin>> pins = new ConcurrentHashMap<>();
+    private final Map<String, List<Entry>> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * Crea un índice cargando un archivo known_hosts.
+     *
+     * @param file ruta del archivo known_hosts (si no existe, el índice queda vacío)
+     * @throws IOException si ocurre un error al leer el archivo
+     */
+    public KnownHostsIndex(Path file) throws IOException {
+        this.file = file;
+        this.snapshot = load(file);
+    }
+
+    /**
+     * Crea un índice vacío, útil cuando solo se usan claves fijadas.
+     */
+    public KnownHostsIndex() {
+        this.file = null;
+        this.snapshot = new Snapshot();
+    }
+
+    /**
+     * Obtiene el índice compartido para un archivo known_hosts, cargándolo la primera vez.
+     *
+     * @param file ruta del archivo known_hosts
+     * @return índice compartido para ese archivo
+     * @throws IOException si ocurre un error al leer el archivo
+     */
+    public static KnownHostsIndex shared(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        KnownHostsIndex index = SHARED.get(key);
+        if (index == null) {
+            KnownHostsIndex loaded = new KnownHostsIndex(key);
+            index = SHARED.putIfAbsent(key, loaded);
+            if (index == null) {
+                index = loaded;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Obtiene el índice compartido del archivo known_hosts del usuario (~/.ssh/known_hosts).
+     *
+     * @return índice compartido
+     * @throws IOException si ocurre un error al leer el archivo
+     */
+    public static KnownHostsIndex sharedDefault() throws IOException {
+        return shared(Path.of(System.getProperty("user.home"), ".ssh", "known_hosts"));
+    }
+
+    /**
+     * Vuelve a leer el archivo known_hosts. Las conexiones en curso siguen usando el índice anterior.
+     *
+     * @throws IOException si ocurre un error al leer el archivo
+     */
+    public void reload() throws IOException {
+        if (file != null) {
+            snapshot = load(file);
+            resolved.clear();
+        }
+    }
+
+    /**
+     * Fija una clave pública para un host. Si un host tiene claves fijadas, solo se aceptan esas claves.
+     *
+     * @param host nombre del host
+     * @param port puerto del servidor
+     * @param base64Key clave pública en Base64, tal como aparece en known_hosts
+     */
+    public void pinKey(String host, int port, String base64Key) {
+        byte[] key = Base64.getDecoder().decode(base64Key.trim());
+        pins.computeIfAbsent(hostKey(host, port), h -> new CopyOnWriteArrayList<>()).add(new Pin(key, null));
+    }
+
+    /**
+     * Fija la huella SHA-256 de la clave de un host, en el formato de OpenSSH ({@code SHA256:...}).
+     * Si un host tiene claves fijadas, solo se aceptan esas claves.
+     *
+     * @param host nombre del host
+     * @param port puerto del servidor
+     * @param fingerprint huella SHA-256 de la clave
+     */
+    public void pinFingerprint(String host, int port, String fingerprint) {
+        String value = fingerprint.trim();
+        if (value.regionMatches(true, 0, "SHA256:", 0, 7)) {
+            value = value.substring(7);
+        }
+        while (value.endsWith("=")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        pins.computeIfAbsent(hostKey(host, port), h -> new CopyOnWriteArrayList<>()).add(new Pin(null, value));
+    }
+
+    // Eliminar las claves fijadas de un host
+    public void unpin(String host, int port) {
+        pins.remove(hostKey(host, port));
+    }
+
+    /**
+     * Devuelve los tipos de clave conocidos para un host, en el orden del archivo.
+     * Se usa para negociar primero un algoritmo de clave de host que se pueda verificar.
+     *
+     * @param host nombre del host
+     * @param port puerto del servidor
+     * @return tipos de clave (ej: "ssh-ed25519", "ssh-rsa")
+     */
+    public Set<String> knownKeyTypes(String host, int port) {
+        Set<String> types = new LinkedHashSet<>();
+        String name = hostKey(host, port);
+        List<Pin> hostPins = pins.get(name);
+        if (hostPins != null) {
+            for (Pin pin : hostPins) {
+                if (pin.key != null) {
+                    types.add(keyType(pin.key));
+                }
+            }
+            return types;
+        }
+        for (Entry entry : resolve(name)) {
+            if (!entry.revoked) {
+                types.add(entry.type);
+            }
+        }
+        return types;
+    }
+
+    // Ordenar los algoritmos de clave de host poniendo primero los tipos conocidos para el host
+    String preferredHostKeyAlgorithms(String host, int port, String defaults) {
+        Set<String> known = knownKeyTypes(host, port);
+        if (known.isEmpty() || defaults == null) {
+            return defaults;
+        }
+        List<String> preferred = new ArrayList<>();
+        List<String> rest = new ArrayList<>();
+        for (String algorithm : defaults.split(",")) {
+            String type = algorithm.startsWith("rsa-sha2-") ? "ssh-rsa" : algorithm;
+            if (known.contains(type)) {
+                preferred.add(algorithm);
+            } else {
+                rest.add(algorithm);
+            }
+        }
+        preferred.addAll(rest);
+        return String.join(",", preferred);
+    }
+
+    // Número de entradas cargadas del archivo
+    public int size() {
+        return snapshot.count + added.size();
+    }
+
+    @Override
+    public int check(String host, byte[] key) {
+        if (host == null || key == null) {
+            return NOT_INCLUDED;
+        }
+        String name = host.toLowerCase(Locale.ROOT);
+        if (snapshot.revoked.contains(Base64.getEncoder().encodeToString(key))) {
+            return CHANGED;
+        }
+
+        List<Pin> hostPins = pins.get(name);
+        if (hostPins != null) {
+            String fingerprint = null;
+            for (Pin pin : hostPins) {
+                if (pin.key != null && Arrays.equals(pin.key, key)) {
+                    return OK;
+                }
+                if (pin.fingerprint != null) {
+                    if (fingerprint == null) {
+                        fingerprint = sha256Fingerprint(key);
+                    }
+                    if (pin.fingerprint.equals(fingerprint)) {
+                        return OK;
+                    }
+                }
+            }
+            return CHANGED;
+        }
+
+        String type = keyType(key);
+        boolean sameType = false;
+        for (Entry entry : resolve(name)) {
+            if (entry.revoked || !entry.type.equals(type)) {
+                continue;
+            }
+            if (Arrays.equals(entry.key, key)) {
+                return OK;
+            }
+            sameType = true;
+        }
+        return sameType ? CHANGED : NOT_INCLUDED;
+    }
+
+    @Override
+    public void add(HostKey hostkey, UserInfo ui) {
+        // Solo se añade en memoria; el archivo known_hosts no se modifica
+        byte[] key = Base64.getDecoder().decode(hostkey.getKey());
+        Entry entry = new Entry(null, hostkey.getHost(), keyType(key), key, hostkey.getComment());
+        entry.hosts = hostkey.getHost().toLowerCase(Locale.ROOT).split(",");
+        added.add(entry);
+        resolved.clear();
+    }
+
+    @Override
+    public void remove(String host, String type) {
+        remove(host, type, null);
+    }
+
+    @Override
+    public void remove(String host, String type, byte[] key) {
+        String name = host.toLowerCase(Locale.ROOT);
+        added.removeIf(entry -> entry.matches(name)
+                && (type == null || entry.type.equals(type))
+                && (key == null || Arrays.equals(entry.key, key)));
+        resolved.clear();
+    }
+
+    @Override
+    public String getKnownHostsRepositoryID() {
+        return file != null ? file.toString() : "KnownHostsIndex";
+    }
+
+    @Override
+    public HostKey[] getHostKey() {
+        List<HostKey> keys = new ArrayList<>();
+        for (Entry entry : snapshot.all) {
+            addHostKey(keys, entry);
+        }
+        for (Entry entry : added) {
+            addHostKey(keys, entry);
+        }
+        return keys.toArray(new HostKey[0]);
+    }
+
+    @Override
+    public HostKey[] getHostKey(String host, String type) {
+        if (host == null) {
+            return getHostKey();
+        }
+        List<HostKey> keys = new ArrayList<>();
+        for (Entry entry : resolve(host.toLowerCase(Locale.ROOT))) {
+            if (type == null || entry.type.equals(type)) {
+                addHostKey(keys, entry);
+            }
+        }
+        return keys.toArray(new HostKey[0]);
+    }
+
+    // Resolver las entradas de un host una única vez (entradas exactas, con hash y patrones)
+    private List<Entry> resolve(String name) {
+        return resolved.computeIfAbsent(name, h -> {
+            Snapshot current = snapshot;
+            List<Entry> matches = new ArrayList<>(current.exact.getOrDefault(h, List.of()));
+            for (Entry entry : current.hashed) {
+                if (entry.matchesHash(h)) {
+                    matches.add(entry);
+                }
+            }
+            for (Entry entry : current.patterns) {
+                if (entry.matchesPattern(h)) {
+                    matches.add(entry);
+                }
+            }
+            for (Entry entry : added) {
+                if (entry.matches(h)) {
+                    matches.add(entry);
+                }
+            }
+            return List.copyOf(matches);
+        });
+    }
+
+    private static void addHostKey(List<HostKey> keys, Entry entry) {
+        try {
+            keys.add(new HostKey(entry.marker != null ? entry.marker : "", entry.hostField,
+                    HostKey.GUESS, entry.key, entry.comment));
+        } catch (JSchException e) {
+            // Tipo de clave no soportado por JSch: se omite
+        }
+    }
+
+    // Cargar y indexar un archivo known_hosts
+    private static Snapshot load(Path file) throws IOException {
+        Snapshot snapshot = new Snapshot();
+        if (file == null || !Files.exists(file)) {
+            return snapshot;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry entry = parseLine(line);
+                if (entry == null) {
+                    continue;
+                }
+                snapshot.count++;
+                snapshot.all.add(entry);
+                if (entry.revoked) {
+                    snapshot.revoked.add(Base64.getEncoder().encodeToString(entry.key));
+                } else if (entry.salt != null) {
+                    snapshot.hashed.add(entry);
+                } else if (entry.pattern != null) {
+                    snapshot.patterns.add(entry);
+                } else {
+                    for (String host : entry.hosts) {
+                        snapshot.exact.computeIfAbsent(host, h -> new ArrayList<>(1)).add(entry);
+                    }
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    // Parsear una línea de known_hosts; devuelve null si la línea no es válida o no aplica
+    private static Entry parseLine(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        String[] fields = trimmed.split("\\s+", 5);
+        int i = 0;
+        String marker = null;
+        if (fields[0].startsWith("@")) {
+            marker = fields[0];
+            i = 1;
+        }
+        if (MARKER_CERT_AUTHORITY.equals(marker) || fields.length < i + 3) {
+            return null;
+        }
+        String hostField = fields[i];
+        byte[] key;
+        try {
+            key = Base64.getDecoder().decode(fields[i + 2]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        String comment = fields.length > i + 3 ? fields[i + 3] : null;
+        Entry entry = new Entry(marker, hostField, fields[i + 1], key, comment);
+
+        if (hostField.startsWith(HASH_MAGIC)) {
+            String[] parts = hostField.substring(HASH_MAGIC.length()).split("\\|");
+            if (parts.length != 2) {
+                return null;
+            }
+            try {
+                entry.salt = Base64.getDecoder().decode(parts[0]);
+                entry.hash = Base64.getDecoder().decode(parts[1]);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        } else {
+            entry.hosts = hostField.toLowerCase(Locale.ROOT).split(",");
+            for (String host : entry.hosts) {
+                if (host.startsWith("!") || host.indexOf('*') >= 0 || host.indexOf('?') >= 0) {
+                    entry.pattern = compilePatterns(entry.hosts);
+                    break;
+                }
+            }
+        }
+        return entry;
+    }
+
+    // Compilar la lista de patrones de host (con negaciones) de una entrada
+    private static HostPattern[] compilePatterns(String[] hosts) {
+        HostPattern[] patterns = new HostPattern[hosts.length];
+        for (int i = 0; i < hosts.length; i++) {
+            String host = hosts[i];
+            boolean negated = host.startsWith("!");
+            if (negated) {
+                host = host.substring(1);
+            }
+            StringBuilder regex = new StringBuilder();
+            for (char c : host.toCharArray()) {
+                if (c == '*') {
+                    regex.append(".*");
+                } else if (c == '?') {
+                    regex.append('.');
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            patterns[i] = new HostPattern(Pattern.compile(regex.toString()), negated);
+        }
+        return patterns;
+    }
+
+    // Nombre de host tal como lo usa JSch: "host" para el puerto 22 y "[host]:puerto" en otro caso
+    private static String hostKey(String host, int port) {
+        String name = host.toLowerCase(Locale.ROOT);
+        return port == 22 ? name : "[" + name + "]:" + port;
+    }
+
+    // Leer el tipo de clave del formato binario SSH (longitud + nombre)
+    private static String keyType(byte[] key) {
+        if (key.length < 4) {
+            return "";
+        }
+        int length = ((key[0] & 0xff) << 24) | ((key[1] & 0xff) << 16) | ((key[2] & 0xff) << 8) | (key[3] & 0xff);
+        if (length < 0 || length > key.length - 4) {
+            return "";
+        }
+        return new String(key, 4, length, StandardCharsets.US_ASCII);
+    }
+
+    private static String sha256Fingerprint(byte[] key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key);
+            return Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    // Entradas del archivo indexadas
+    private static final class Snapshot {
+        private final Map<String, List<Entry>> exact = new HashMap<>();
+        private final List<Entry> hashed = new ArrayList<>();
+        private final List<Entry> patterns = new ArrayList<>();
+        private final List<Entry> all = new ArrayList<>();
+        private final Set<String> revoked = ConcurrentHashMap.newKeySet();
+        private int count;
+    }
+
+    // Entrada de known_hosts
+    private static final class Entry {
+        private final String marker;
+        private final String hostField;
+        private final String type;
+        private final byte[] key;
+        private final String comment;
+        private final boolean revoked;
+        private String[] hosts;
+        private HostPattern[] pattern;
+        private byte[] salt;
+        private byte[] hash;
+
+        private Entry(String marker, String hostField, String type, byte[] key, String comment) {
+            this.marker = marker;
+            this.hostField = hostField;
+            this.type = type;
+            this.key = key;
+            this.comment = comment;
+            this.revoked = MARKER_REVOKED.equals(marker);
+        }
+
+        private boolean matches(String name) {
+            if (salt != null) {
+                return matchesHash(name);
+            }
+            if (pattern != null) {
+                return matchesPattern(name);
+            }
+            for (String host : hosts) {
+                if (host.equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Comparar HMAC-SHA1(salt, host) con el hash de la entrada
+        private boolean matchesHash(String name) {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA1");
+                mac.init(new SecretKeySpec(salt, "HmacSHA1"));
+                return MessageDigest.isEqual(hash, mac.doFinal(name.getBytes(StandardCharsets.UTF_8)));
+            } catch (GeneralSecurityException e) {
+                return false;
+            }
+        }
+
+        private boolean matchesPattern(String name) {
+            boolean matched = false;
+            for (HostPattern hostPattern : pattern) {
+                if (hostPattern.pattern.matcher(name).matches()) {
+                    if (hostPattern.negated) {
+                        return false;
+                    }
+                    matched = true;
+                }
+            }
+            return matched;
+        }
+    }
+
+    private record HostPattern(Pattern pattern, boolean negated) {
+    }
+
+    private record Pin(byte[] key, String fingerprint) {
+    }
+}
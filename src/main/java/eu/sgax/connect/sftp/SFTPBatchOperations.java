@@ -0,0 +1,390 @@
+package eu.sgax.connect.sftp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+
+/**
+ * Clase para ejecutar operaciones remotas SFTP en lote: creación recursiva de directorios (mkdir -p),
+ * borrado masivo, borrado recursivo y renombrado masivo.
+ *
+ * <p>JSch espera la respuesta de cada petición antes de enviar la siguiente en un mismo canal, por lo que
+ * las operaciones se reparten entre varios canales SFTP abiertos sobre la misma sesión SSH. Así se mantienen
+ * hasta {@code concurrency} peticiones en vuelo sin nuevas conexiones ni autenticaciones.
+ * Los canales se abren la primera vez que se necesitan y se reutilizan hasta {@link #close()}.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class SFTPBatchOperations implements AutoCloseable {
+
+    private final SFTPConnect sftpConnect;
+    private final int concurrency;
+    private final ExecutorService executor;
+    private final BlockingQueue<ChannelSftp> channels = new LinkedBlockingQueue<>();
+    private final List<ChannelSftp> openedChannels = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> knownDirectories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor para SFTPBatchOperations.
+     *
+     * @param sftpConnect instancia de SFTPConnect con la sesión SSH a utilizar
+     * @param concurrency número máximo de peticiones simultáneas (canales SFTP)
+     */
+    public SFTPBatchOperations(SFTPConnect sftpConnect, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("La concurrencia debe ser al menos 1: " + concurrency);
+        }
+        this.sftpConnect = sftpConnect;
+        this.concurrency = concurrency;
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "sftp-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Constructor con concurrencia por defecto (8 canales).
+     *
+     * @param sftpConnect instancia de SFTPConnect con la sesión SSH a utilizar
+     */
+    public SFTPBatchOperations(SFTPConnect sftpConnect) {
+        this(sftpConnect, 8);
+    }
+
+    /**
+     * Crea un directorio y todos sus directorios padres que no existan (mkdir -p).
+     * Primero intenta crear el directorio final, por lo que si los padres ya existen solo cuesta una petición.
+     *
+     * @param remotePath ruta del directorio remoto
+     * @throws SftpException si no se puede crear algún directorio
+     */
+    public void createDirectories(String remotePath) throws SftpException {
+        sftpConnect.ensureConnected();
+        mkdirs(sftpConnect.getChannel(), resolve(currentDirectory(), remotePath));
+    }
+
+    /**
+     * Crea en paralelo varios directorios con sus padres (mkdir -p).
+     * Los directorios ya creados o comprobados se recuerdan, de forma que los padres comunes solo se crean una vez.
+     *
+     * @param remotePaths rutas de los directorios remotos
+     * @return resultado del lote
+     * @throws SftpException si no hay conexión disponible
+     */
+    public BatchResult createDirectories(Collection<String> remotePaths) throws SftpException {
+        String base = currentDirectory();
+        List<String> paths = new ArrayList<>(remotePaths.size());
+        for (String path : remotePaths) {
+            paths.add(resolve(base, path));
+        }
+        return run(paths, Function.identity(), this::mkdirs);
+    }
+
+    /**
+     * Borra en paralelo una colección de archivos remotos.
+     *
+     * @param remoteFilePaths rutas de los archivos remotos
+     * @return resultado del lote
+     * @throws SftpException si no hay conexión disponible
+     */
+    public BatchResult deleteFiles(Collection<String> remoteFilePaths) throws SftpException {
+        String base = currentDirectory();
+        List<String> paths = new ArrayList<>(remoteFilePaths.size());
+        for (String path : remoteFilePaths) {
+            paths.add(resolve(base, path));
+        }
+        return run(paths, Function.identity(), ChannelSftp::rm);
+    }
+
+    /**
+     * Renombra en paralelo un conjunto de archivos o directorios.
+     *
+     * @param renames mapa de ruta origen a ruta destino
+     * @return resultado del lote, con los fallos indexados por la ruta origen
+     * @throws SftpException si no hay conexión disponible
+     */
+    public BatchResult renameAll(Map<String, String> renames) throws SftpException {
+        String base = currentDirectory();
+        List<String[]> pairs = new ArrayList<>(renames.size());
+        for (Map.Entry<String, String> rename : renames.entrySet()) {
+            pairs.add(new String[] { resolve(base, rename.getKey()), resolve(base, rename.getValue()) });
+        }
+        return run(pairs, pair -> pair[0], (channel, pair) -> channel.rename(pair[0], pair[1]));
+    }
+
+    /**
+     * Borra un directorio remoto con todo su contenido (rm -r).
+     * Recorre el árbol, borra todos los archivos en paralelo y después elimina los directorios
+     * de mayor a menor profundidad, también en paralelo dentro de cada nivel.
+     *
+     * @param remoteDir ruta del directorio remoto a borrar
+     * @return resultado del lote
+     * @throws SftpException si no se puede recorrer el árbol o no hay conexión disponible
+     */
+    public BatchResult deleteRecursive(String remoteDir) throws SftpException {
+        String root = resolve(currentDirectory(), remoteDir);
+
+        // Recorrer el árbol agrupando los directorios por profundidad
+        List<String> files = new ArrayList<>();
+        List<List<String>> levels = new ArrayList<>();
+        collectTree(root, 0, files, levels);
+
+        BatchResult result = run(files, Function.identity(), ChannelSftp::rm);
+        for (int depth = levels.size() - 1; depth >= 0; depth--) {
+            result.merge(run(levels.get(depth), Function.identity(), ChannelSftp::rmdir));
+            for (String dir : levels.get(depth)) {
+                knownDirectories.remove(dir);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cierra los canales SFTP adicionales y detiene los hilos de trabajo.
+     * La sesión de {@link SFTPConnect} no se cierra.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        synchronized (openedChannels) {
+            for (ChannelSftp channel : openedChannels) {
+                channel.disconnect();
+            }
+            openedChannels.clear();
+        }
+        channels.clear();
+    }
+
+    // Recorrer un directorio y sus subdirectorios
+    private void collectTree(String dir, int depth, List<String> files, List<List<String>> levels) throws SftpException {
+        if (levels.size() <= depth) {
+            levels.add(new ArrayList<>());
+        }
+        levels.get(depth).add(dir);
+        List<String> subDirs = new ArrayList<>();
+        sftpConnect.listEntries(dir, entry -> {
+            String path = child(dir, entry.getFilename());
+            if (entry.getAttrs().isDir()) {
+                subDirs.add(path);
+            } else {
+                files.add(path);
+            }
+            return true;
+        });
+        for (String subDir : subDirs) {
+            collectTree(subDir, depth + 1, files, levels);
+        }
+    }
+
+    // Crear un directorio y sus padres; intenta primero el directorio final
+    private void mkdirs(ChannelSftp channel, String path) throws SftpException {
+        if (path.isEmpty() || path.equals("/") || knownDirectories.contains(path)) {
+            return;
+        }
+        try {
+            channel.mkdir(path);
+        } catch (SftpException e) {
+            if (!isDirectory(channel, path)) {
+                String parent = parent(path);
+                if (parent == null || knownDirectories.contains(parent)) {
+                    throw e;
+                }
+                mkdirs(channel, parent);
+                try {
+                    channel.mkdir(path);
+                } catch (SftpException retry) {
+                    // Otro canal puede haberlo creado entre tanto
+                    if (!isDirectory(channel, path)) {
+                        throw retry;
+                    }
+                }
+            }
+        }
+        knownDirectories.add(path);
+    }
+
+    private static boolean isDirectory(ChannelSftp channel, String path) throws SftpException {
+        try {
+            SftpATTRS attrs = channel.stat(path);
+            return attrs.isDir();
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    // Repartir los elementos entre los canales disponibles y ejecutar la operación sobre cada uno
+    private <T> BatchResult run(List<T> items, Function<T, String> key, ItemOperation<T> operation) throws SftpException {
+        BatchResult result = new BatchResult();
+        if (items.isEmpty()) {
+            return result;
+        }
+
+        int workers = Math.min(concurrency, items.size());
+        List<ChannelSftp> acquired = acquireChannels(workers);
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(acquired.size());
+        for (ChannelSftp channel : acquired) {
+            futures.add(executor.submit(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < items.size()) {
+                    T item = items.get(index);
+                    try {
+                        operation.apply(channel, item);
+                        result.succeeded.incrementAndGet();
+                    } catch (SftpException e) {
+                        result.failures.put(key.apply(item), e);
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SftpException(ChannelSftp.SSH_FX_FAILURE, "Operación en lote interrumpida.", e);
+        } catch (ExecutionException e) {
+            throw new SftpException(ChannelSftp.SSH_FX_FAILURE, "Error en operación en lote: " + e.getCause(), e.getCause());
+        } finally {
+            releaseChannels(acquired);
+        }
+        return result;
+    }
+
+    // Obtener hasta n canales, abriendo los que falten
+    private List<ChannelSftp> acquireChannels(int count) throws SftpException {
+        sftpConnect.ensureConnected();
+        List<ChannelSftp> acquired = new ArrayList<>(count);
+        channels.drainTo(acquired, count);
+        acquired.removeIf(channel -> {
+            if (channel.isConnected()) {
+                return false;
+            }
+            openedChannels.remove(channel);
+            return true;
+        });
+
+        JSchException lastError = null;
+        while (acquired.size() < count) {
+            try {
+                ChannelSftp channel = sftpConnect.openChannel();
+                openedChannels.add(channel);
+                acquired.add(channel);
+            } catch (JSchException e) {
+                // El servidor puede limitar el número de canales por sesión; se continúa con los abiertos
+                lastError = e;
+                break;
+            }
+        }
+        if (acquired.isEmpty()) {
+            throw new SftpException(ChannelSftp.SSH_FX_NO_CONNECTION,
+                    "No se pudo abrir ningún canal SFTP: " + (lastError != null ? lastError.getMessage() : ""), lastError);
+        }
+        return acquired;
+    }
+
+    private void releaseChannels(List<ChannelSftp> acquired) {
+        for (ChannelSftp channel : acquired) {
+            if (channel.isConnected()) {
+                channels.offer(channel);
+            } else {
+                openedChannels.remove(channel);
+            }
+        }
+    }
+
+    private String currentDirectory() throws SftpException {
+        return sftpConnect.getCurrentDirectory();
+    }
+
+    // Resolver rutas relativas contra el directorio de trabajo, ya que los canales adicionales empiezan en el home
+    private static String resolve(String base, String path) {
+        if (path.startsWith("/")) {
+            return normalize(path);
+        }
+        return normalize(base.endsWith("/") ? base + path : base + "/" + path);
+    }
+
+    private static String normalize(String path) {
+        String normalized = path.replaceAll("/+", "/");
+        if (normalized.length() > 1 && normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    private static String child(String dir, String name) {
+        return dir.endsWith("/") ? dir + name : dir + "/" + name;
+    }
+
+    private static String parent(String path) {
+        int idx = path.lastIndexOf('/');
+        if (idx < 0) {
+            return null;
+        }
+        return idx == 0 ? "/" : path.substring(0, idx);
+    }
+
+    // Operación sobre un elemento del lote
+    private interface ItemOperation<T> {
+        void apply(ChannelSftp channel, T item) throws SftpException;
+    }
+
+    // Clase para el resultado de una operación en lote
+    public static class BatchResult {
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final Map<String, SftpException> failures = new ConcurrentHashMap<>();
+
+        // Número de elementos procesados correctamente
+        public int getSucceeded() {
+            return succeeded.get();
+        }
+
+        // Errores por ruta remota
+        public Map<String, SftpException> getFailures() {
+            return failures;
+        }
+
+        // Verificar si todos los elementos se procesaron correctamente
+        public boolean isSuccess() {
+            return failures.isEmpty();
+        }
+
+        private void merge(BatchResult other) {
+            succeeded.addAndGet(other.succeeded.get());
+            failures.putAll(other.failures);
+        }
+
+        @Override
+        public String toString() {
+            return "BatchResult{" +
+                    "succeeded=" + succeeded.get() +
+                    ", failed=" + failures.size() +
+                    '}';
+        }
+    }
+}
@@ -1,16 +1,28 @@
 package eu.sgax.connect.sftp;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
-import java.util.Vector;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Logger;
 import com.jcraft.jsch.Session;
 import com.jcraft.jsch.SftpException;
 
+import eu.sgax.connect.metrics.Counter;
+import eu.sgax.connect.metrics.MetricsRegistry;
+import eu.sgax.connect.metrics.TransferMetrics;
+import eu.sgax.connect.tracing.TransferPhase;
+import eu.sgax.connect.tracing.TransferSpan;
+import eu.sgax.connect.tracing.TransferTracer;
+
 /**
  * Clase para manejar conexiones SFTP (SSH File Transfer Protocol).
  * Proporciona métodos para conectar, desconectar, listar, crear, renombrar y eliminar archivos y directorios.
@@ -30,6 +42,20 @@ public class SFTPConnect {
     private final String password;
     private String privateKeyPath;
     private boolean connected = false;
+    // Conectado por el usuario y aún no desconectado, aunque la sesión actual se haya perdido
+    private boolean connectRequested = false;
+    private SFTPTransportProfile transportProfile = SFTPTransportProfile.defaults();
+    private int keepAliveInterval = 0;
+    private int keepAliveCountMax = 3;
+    private boolean autoReconnect = false;
+    private int maxReconnectAttempts = 3;
+    private long reconnectDelayMillis = 1000;
+    private String workingDirectory;
+    private KnownHostsIndex knownHosts;
+    private Counter connections = MetricsRegistry.NOOP.counter("");
+    private TransferMetrics uploadMetrics = TransferMetrics.NOOP;
+    private TransferMetrics downloadMetrics = TransferMetrics.NOOP;
+    private TransferTracer tracer = TransferTracer.NOOP;
 
     /**
      * Constructor con credenciales de usuario y contraseña.
@@ -98,21 +124,177 @@ public class SFTPConnect {
             session.setPassword(password);
         }
 
-        // Configuración para evitar verificación estricta de host
         Properties config = new Properties();
-        config.put("StrictHostKeyChecking", "no");
+        if (knownHosts != null) {
+            // Verificación estricta contra el índice en memoria de hosts conocidos
+            session.setHostKeyRepository(knownHosts);
+            config.put("StrictHostKeyChecking", "yes");
+            config.put("server_host_key",
+                    knownHosts.preferredHostKeyAlgorithms(host, port, session.getConfig("server_host_key")));
+        } else {
+            // Configuración para evitar verificación estricta de host
+            config.put("StrictHostKeyChecking", "no");
+        }
         session.setConfig(config);
+        transportProfile.applyTo(session);
+
+        // Keepalive a nivel SSH para mantener viva la sesión y detectar conexiones muertas
+        if (keepAliveInterval > 0) {
+            session.setServerAliveInterval(keepAliveInterval);
+            session.setServerAliveCountMax(keepAliveCountMax);
+        }
+
+        TransferSpan span = startSpan("sftp.connect");
+        Logger previousLogger = session.getLogger();
+        if (span.isRecording()) {
+            // JSch no ofrece eventos de conexión: las fases se deducen de sus mensajes de log
+            session.setLogger(new PhaseLogger(previousLogger, span));
+        }
+        try {
+            session.connect(transportProfile.getConnectTimeout());
+            sftpChannel = (ChannelSftp) session.openChannel("sftp");
+            sftpChannel.connect(transportProfile.getConnectTimeout());
+            transportProfile.applyTo(sftpChannel);
+            connected = true;
+            connectRequested = true;
+            connections.increment();
+        } catch (JSchException | RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            session.setLogger(previousLogger);
+            span.end();
+        }
+    }
+
+    /**
+     * Establece el perfil de transporte SSH (compresión, cifrados, opciones TCP).
+     * Se aplica en la siguiente llamada a {@link #connect()}.
+     * 
+     * @param transportProfile perfil de transporte a utilizar
+     */
+    public void setTransportProfile(SFTPTransportProfile transportProfile) {
+        this.transportProfile = transportProfile != null ? transportProfile : SFTPTransportProfile.defaults();
+    }
+
+    // Obtener el perfil de transporte actual
+    public SFTPTransportProfile getTransportProfile() {
+        return transportProfile;
+    }
+
+    /**
+     * Activa las métricas de conexiones y transferencias de esta conexión y de los
+     * {@link SFTPUploader} y {@link SFTPDownloader} que la usan. Las reconexiones cuentan como conexiones nuevas.
+     * 
+     * @param registry registro de métricas (null para desactivarlas)
+     */
+    public void setMetrics(MetricsRegistry registry) {
+        MetricsRegistry target = registry != null ? registry : MetricsRegistry.NOOP;
+        this.connections = target.counter("connect.connections", "connector", "sftp");
+        this.uploadMetrics = new TransferMetrics(target, "sftp", "upload");
+        this.downloadMetrics = new TransferMetrics(target, "sftp", "download");
+    }
+
+    // Métricas de las subidas
+    TransferMetrics getUploadMetrics() {
+        return uploadMetrics;
+    }
 
-        session.connect();
-        sftpChannel = (ChannelSftp) session.openChannel("sftp");
-        sftpChannel.connect();
-        connected = true;
+    // Métricas de las descargas
+    TransferMetrics getDownloadMetrics() {
+        return downloadMetrics;
+    }
+
+    /**
+     * Activa las trazas de la conexión, los listados y las transferencias de esta conexión y de los
+     * {@link SFTPUploader} y {@link SFTPDownloader} que la usan. En la conexión se marcan por separado
+     * la conexión TCP, el intercambio de claves SSH y la autenticación.
+     * 
+     * @param tracer trazador (null para desactivarlas)
+     */
+    public void setTracer(TransferTracer tracer) {
+        this.tracer = tracer != null ? tracer : TransferTracer.NOOP;
+    }
+
+    // Abrir una traza de esta conexión con el servidor como atributo
+    TransferSpan startSpan(String name) {
+        TransferSpan span = tracer.startSpan(name, "sftp");
+        if (span.isRecording()) {
+            span.setAttribute("server.address", host);
+            span.setAttribute("server.port", port);
+        }
+        return span;
+    }
+
+    /**
+     * Activa la verificación estricta de la clave del servidor contra un índice de hosts conocidos.
+     * El índice puede compartirse entre instancias; la verificación no realiza E/S de archivos.
+     * Se aplica en la siguiente llamada a {@link #connect()}.
+     * 
+     * @param knownHosts índice de hosts conocidos (null para desactivar la verificación)
+     */
+    public void setKnownHosts(KnownHostsIndex knownHosts) {
+        this.knownHosts = knownHosts;
+    }
+
+    /**
+     * Activa la verificación estricta de la clave del servidor usando el índice compartido de un archivo known_hosts.
+     * 
+     * @param knownHostsFile ruta del archivo known_hosts
+     * @throws IOException si ocurre un error al leer el archivo la primera vez
+     */
+    public void setKnownHosts(Path knownHostsFile) throws IOException {
+        this.knownHosts = KnownHostsIndex.shared(knownHostsFile);
+    }
+
+    /**
+     * Configura el envío periódico de mensajes keepalive SSH.
+     * Evita que los NAT y firewalls cierren sesiones inactivas y permite detectar sesiones muertas:
+     * si el servidor no responde a {@code countMax} mensajes seguidos, la sesión se cierra.
+     * Se aplica en la siguiente llamada a {@link #connect()}.
+     * 
+     * @param intervalMillis intervalo entre mensajes en milisegundos (0 para desactivar)
+     * @param countMax número de mensajes sin respuesta antes de dar la sesión por muerta
+     */
+    public void setKeepAlive(int intervalMillis, int countMax) {
+        this.keepAliveInterval = intervalMillis;
+        this.keepAliveCountMax = countMax;
+    }
+
+    /**
+     * Activa la reconexión automática cuando se detecta que la sesión se ha perdido.
+     * Al reconectar se restaura el directorio de trabajo y las operaciones idempotentes
+     * (listados, consultas de atributos, cambio de directorio, descargas y subidas de archivos)
+     * se reintentan una vez.
+     * 
+     * @param autoReconnect true para activar la reconexión automática
+     */
+    public void setAutoReconnect(boolean autoReconnect) {
+        this.autoReconnect = autoReconnect;
+    }
+
+    /**
+     * Configura los reintentos de reconexión. La espera entre intentos se duplica en cada fallo.
+     * 
+     * @param maxAttempts número máximo de intentos de reconexión
+     * @param initialDelayMillis espera antes del segundo intento en milisegundos
+     */
+    public void setReconnectPolicy(int maxAttempts, long initialDelayMillis) {
+        this.maxReconnectAttempts = Math.max(1, maxAttempts);
+        this.reconnectDelayMillis = Math.max(0, initialDelayMillis);
     }
 
     /**
      * Desconecta del servidor SFTP de manera segura.
      */
     public void disconnect() {
+        closeQuietly();
+        connectRequested = false;
+        workingDirectory = null;
+    }
+
+    // Cerrar canal y sesión sin olvidar el estado de trabajo
+    private void closeQuietly() {
         if (sftpChannel != null && sftpChannel.isConnected()) {
             sftpChannel.disconnect();
         }
@@ -122,6 +304,127 @@ public class SFTPConnect {
         connected = false;
     }
 
+    /**
+     * Comprueba el estado local de la sesión y el canal sin realizar operaciones de red.
+     * Una sesión cerrada por el keepalive o por un error de transporte se detecta aquí.
+     * 
+     * @return true si la sesión SSH y el canal SFTP siguen abiertos
+     */
+    public boolean isAlive() {
+        return connected && session != null && session.isConnected()
+                && sftpChannel != null && sftpChannel.isConnected() && !sftpChannel.isClosed();
+    }
+
+    /**
+     * Comprueba la conexión con una petición real al servidor (resolución del directorio actual).
+     * Detecta sesiones muertas que aún no se han cerrado localmente.
+     * 
+     * @return true si el servidor ha respondido
+     */
+    public boolean checkAlive() {
+        if (!isAlive()) {
+            return false;
+        }
+        try {
+            sftpChannel.realpath(".");
+            return true;
+        } catch (SftpException e) {
+            return isAlive();
+        }
+    }
+
+    /**
+     * Cierra la sesión actual y vuelve a conectar, restaurando el directorio de trabajo.
+     * 
+     * @throws SftpException si no se consigue reconectar tras los intentos configurados
+     */
+    public void reconnect() throws SftpException {
+        String directory = workingDirectory;
+        closeQuietly();
+
+        long delay = reconnectDelayMillis;
+        JSchException lastError = null;
+        for (int attempt = 1; attempt <= maxReconnectAttempts; attempt++) {
+            try {
+                connect();
+                lastError = null;
+                break;
+            } catch (JSchException e) {
+                lastError = e;
+                closeQuietly();
+                if (attempt < maxReconnectAttempts && delay > 0) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new SftpException(ChannelSftp.SSH_FX_NO_CONNECTION, "Reconexión interrumpida.", ie);
+                    }
+                    delay *= 2;
+                }
+            }
+        }
+        if (lastError != null) {
+            throw new SftpException(ChannelSftp.SSH_FX_NO_CONNECTION,
+                    "No se pudo reconectar al servidor SFTP: " + lastError.getMessage(), lastError);
+        }
+
+        if (directory != null) {
+            sftpChannel.cd(directory);
+            workingDirectory = directory;
+        }
+    }
+
+    /**
+     * Verifica que la conexión está disponible, reconectando si se ha perdido y la reconexión automática está activa.
+     * Si una reconexión anterior agotó sus intentos, se vuelve a intentar en cada llamada hasta {@link #disconnect()}.
+     * 
+     * @throws SftpException si no hay conexión disponible
+     */
+    public void ensureConnected() throws SftpException {
+        if (!connectRequested) {
+            throw new SftpException(0, "No conectado al servidor SFTP.");
+        }
+        if (!isAlive()) {
+            if (!autoReconnect) {
+                throw new SftpException(ChannelSftp.SSH_FX_CONNECTION_LOST, "Conexión SFTP perdida.");
+            }
+            reconnect();
+        }
+    }
+
+    // Reconectar tras un fallo si la causa es la pérdida de la sesión; devuelve true si se puede reintentar
+    boolean reconnectIfLost(SftpException failure) throws SftpException {
+        if (!autoReconnect || !connectRequested) {
+            return false;
+        }
+        boolean lost = failure.id == ChannelSftp.SSH_FX_CONNECTION_LOST
+                || failure.id == ChannelSftp.SSH_FX_NO_CONNECTION
+                || !isAlive();
+        if (!lost) {
+            return false;
+        }
+        reconnect();
+        return true;
+    }
+
+    // Ejecutar una operación idempotente, reintentándola una vez si la sesión se pierde
+    private <T> T executeIdempotent(SftpCall<T> call) throws SftpException {
+        ensureConnected();
+        try {
+            return call.execute(sftpChannel);
+        } catch (SftpException e) {
+            if (!reconnectIfLost(e)) {
+                throw e;
+            }
+            return call.execute(sftpChannel);
+        }
+    }
+
+    // Operación sobre el canal SFTP
+    private interface SftpCall<T> {
+        T execute(ChannelSftp channel) throws SftpException;
+    }
+
     /**
      * Obtiene el canal SFTP subyacente para operaciones avanzadas.
      * 
@@ -131,6 +434,24 @@ public class SFTPConnect {
         return sftpChannel;
     }
 
+    /**
+     * Abre un canal SFTP adicional sobre la misma sesión SSH.
+     * Varios canales permiten tener peticiones simultáneas en vuelo sin nuevas conexiones ni autenticaciones.
+     * El llamante es responsable de desconectar el canal.
+     * 
+     * @return nuevo canal SFTP conectado
+     * @throws JSchException si la sesión no está conectada o no se puede abrir el canal
+     */
+    public ChannelSftp openChannel() throws JSchException {
+        if (session == null || !session.isConnected()) {
+            throw new JSchException("No conectado al servidor SFTP.");
+        }
+        ChannelSftp channel = (ChannelSftp) session.openChannel("sftp");
+        channel.connect(transportProfile.getConnectTimeout());
+        transportProfile.applyTo(channel);
+        return channel;
+    }
+
     /**
      * Verifica si está conectado al servidor SFTP.
      * 
@@ -145,22 +466,23 @@ public class SFTPConnect {
         return listFiles(".");
     }
 
-    @SuppressWarnings("unchecked")
     public List<String> listFiles(String remotePath) throws SftpException {
-        if (!connected) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        List<String> fileNames = new ArrayList<>();
+        listEntries(remotePath, filesOnly(), entry -> fileNames.add(entry.getFilename()));
+        return fileNames;
+    }
 
-        Vector<ChannelSftp.LsEntry> files = sftpChannel.ls(remotePath);
+    /**
+     * Lista los nombres de los archivos de un directorio que coinciden con un patrón glob.
+     * 
+     * @param remotePath ruta del directorio remoto
+     * @param glob patrón glob sobre el nombre del archivo (ej: "*.csv", "factura_202?_*.{xml,pdf}")
+     * @return lista con los nombres de los archivos que coinciden
+     * @throws SftpException si ocurre un error SFTP
+     */
+    public List<String> listFiles(String remotePath, String glob) throws SftpException {
         List<String> fileNames = new ArrayList<>();
-        for (ChannelSftp.LsEntry entry : files) {
-            if (!entry.getAttrs().isDir()) {
-                String name = entry.getFilename();
-                if (!name.equals(".") && !name.equals("..")) {
-                    fileNames.add(name);
-                }
-            }
-        }
+        listEntries(remotePath, filesOnly().and(globFilter(glob)), entry -> fileNames.add(entry.getFilename()));
         return fileNames;
     }
 
@@ -169,82 +491,287 @@ public class SFTPConnect {
         return listDirectories(".");
     }
 
-    @SuppressWarnings("unchecked")
     public List<String> listDirectories(String remotePath) throws SftpException {
-        if (!connected) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
+        List<String> dirNames = new ArrayList<>();
+        listEntries(remotePath, directoriesOnly(), entry -> dirNames.add(entry.getFilename()));
+        return dirNames;
+    }
+
+    /**
+     * Recorre las entradas de un directorio remoto de forma incremental.
+     * Las entradas se entregan al visitante a medida que llegan las respuestas del servidor,
+     * sin construir el listado completo en memoria. Las entradas "." y ".." se omiten.
+     * 
+     * @param remotePath ruta del directorio remoto
+     * @param visitor visitante que recibe cada entrada; si devuelve false el listado se detiene
+     * @throws SftpException si ocurre un error SFTP
+     */
+    public void listEntries(String remotePath, EntryVisitor visitor) throws SftpException {
+        listEntries(remotePath, null, visitor);
+    }
+
+    /**
+     * Recorre las entradas de un directorio remoto que cumplen un filtro, de forma incremental.
+     * El filtro se evalúa antes de entregar la entrada, por lo que las entradas descartadas
+     * no se acumulan en ningún momento.
+     * 
+     * @param remotePath ruta del directorio remoto
+     * @param filter filtro de entradas (puede ser null para aceptar todas)
+     * @param visitor visitante que recibe cada entrada; si devuelve false el listado se detiene
+     * @throws SftpException si ocurre un error SFTP
+     */
+    public void listEntries(String remotePath, Predicate<ChannelSftp.LsEntry> filter, EntryVisitor visitor) throws SftpException {
+        ensureConnected();
+
+        TransferSpan span = startSpan("sftp.list");
+        long[] entries = new long[1];
+        EntryVisitor counting = span.isRecording() ? entry -> {
+            entries[0]++;
+            return visitor.visit(entry);
+        } : visitor;
+
+        // Solo se reintenta si aún no se ha entregado ninguna entrada al visitante
+        boolean[] delivered = new boolean[1];
+        try {
+            try {
+                listEntries(sftpChannel, remotePath, filter, counting, delivered);
+            } catch (SftpException e) {
+                if (delivered[0] || !reconnectIfLost(e)) {
+                    throw e;
+                }
+                listEntries(sftpChannel, remotePath, filter, counting, delivered);
+            }
+            span.event(TransferPhase.LIST);
+            span.setAttribute("file.directory", remotePath);
+            span.setAttribute("entries", entries[0]);
+        } catch (SftpException | RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
         }
+    }
 
-        Vector<ChannelSftp.LsEntry> files = sftpChannel.ls(remotePath);
-        List<String> dirNames = new ArrayList<>();
-        for (ChannelSftp.LsEntry entry : files) {
-            if (entry.getAttrs().isDir()) {
-                String name = entry.getFilename();
-                if (!name.equals(".") && !name.equals("..")) {
-                    dirNames.add(name);
+    private void listEntries(ChannelSftp channel, String remotePath, Predicate<ChannelSftp.LsEntry> filter,
+                             EntryVisitor visitor, boolean[] delivered) throws SftpException {
+        channel.ls(remotePath, entry -> {
+            String name = entry.getFilename();
+            if (name.equals(".") || name.equals("..")) {
+                return ChannelSftp.LsEntrySelector.CONTINUE;
+            }
+            if (filter != null && !filter.test(entry)) {
+                return ChannelSftp.LsEntrySelector.CONTINUE;
+            }
+            delivered[0] = true;
+            return visitor.visit(entry) ? ChannelSftp.LsEntrySelector.CONTINUE : ChannelSftp.LsEntrySelector.BREAK;
+        });
+    }
+
+    /**
+     * Cuenta las entradas de un directorio remoto que cumplen un filtro sin materializar el listado.
+     * 
+     * @param remotePath ruta del directorio remoto
+     * @param filter filtro de entradas (puede ser null para contar todas)
+     * @return número de entradas que cumplen el filtro
+     * @throws SftpException si ocurre un error SFTP
+     */
+    public long countEntries(String remotePath, Predicate<ChannelSftp.LsEntry> filter) throws SftpException {
+        long[] count = new long[1];
+        listEntries(remotePath, filter, entry -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    // Filtro de entradas que son archivos
+    public static Predicate<ChannelSftp.LsEntry> filesOnly() {
+        return entry -> !entry.getAttrs().isDir();
+    }
+
+    // Filtro de entradas que son directorios
+    public static Predicate<ChannelSftp.LsEntry> directoriesOnly() {
+        return entry -> entry.getAttrs().isDir();
+    }
+
+    /**
+     * Crea un filtro que acepta las entradas cuyo nombre coincide con un patrón glob.
+     * Soporta los comodines {@code *}, {@code ?}, clases {@code [abc]} / {@code [!abc]} y alternativas {@code {a,b}}.
+     * 
+     * @param glob patrón glob sobre el nombre de la entrada
+     * @return filtro de entradas
+     */
+    public static Predicate<ChannelSftp.LsEntry> globFilter(String glob) {
+        Pattern pattern = Pattern.compile(globToRegex(glob));
+        return entry -> pattern.matcher(entry.getFilename()).matches();
+    }
+
+    /**
+     * Crea un filtro que acepta las entradas modificadas en o después del instante indicado.
+     * 
+     * @param instant instante mínimo de modificación
+     * @return filtro de entradas
+     */
+    public static Predicate<ChannelSftp.LsEntry> modifiedSince(Instant instant) {
+        long epochSeconds = instant.getEpochSecond();
+        return entry -> Integer.toUnsignedLong(entry.getAttrs().getMTime()) >= epochSeconds;
+    }
+
+    /**
+     * Crea un filtro que acepta las entradas modificadas antes del instante indicado.
+     * 
+     * @param instant instante límite de modificación (excluido)
+     * @return filtro de entradas
+     */
+    public static Predicate<ChannelSftp.LsEntry> modifiedBefore(Instant instant) {
+        long epochSeconds = instant.getEpochSecond();
+        return entry -> Integer.toUnsignedLong(entry.getAttrs().getMTime()) < epochSeconds;
+    }
+
+    // Traducir un patrón glob a expresión regular
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() * 2);
+        boolean inGroup = false;
+        boolean inClass = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> regex.append(inClass ? "*" : ".*");
+                case '?' -> regex.append(inClass ? "?" : ".");
+                case '[' -> {
+                    inClass = true;
+                    regex.append('[');
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '!') {
+                        regex.append('^');
+                        i++;
+                    }
+                }
+                case ']' -> {
+                    inClass = false;
+                    regex.append(']');
+                }
+                case '{' -> {
+                    inGroup = true;
+                    regex.append("(?:");
+                }
+                case '}' -> {
+                    inGroup = false;
+                    regex.append(')');
+                }
+                case ',' -> regex.append(inGroup ? "|" : ",");
+                case '\\' -> {
+                    if (i + 1 < glob.length()) {
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                }
+                default -> {
+                    if (inClass || Character.isLetterOrDigit(c)) {
+                        regex.append(c);
+                    } else {
+                        regex.append('\\').append(c);
+                    }
                 }
             }
         }
-        return dirNames;
+        return regex.toString();
+    }
+
+    // Logger de JSch que marca las fases de la conexión y reenvía los mensajes al logger anterior
+    private static final class PhaseLogger implements Logger {
+        private final Logger delegate;
+        private final TransferSpan span;
+
+        private PhaseLogger(Logger delegate, TransferSpan span) {
+            this.delegate = delegate;
+            this.span = span;
+        }
+
+        @Override
+        public boolean isEnabled(int level) {
+            return level == Logger.INFO || delegate.isEnabled(level);
+        }
+
+        @Override
+        public void log(int level, String message) {
+            if (level == Logger.INFO && message != null) {
+                if (message.startsWith("Connection established")) {
+                    span.event(TransferPhase.CONNECT);
+                } else if (message.startsWith("SSH_MSG_NEWKEYS received")) {
+                    span.event(TransferPhase.HANDSHAKE);
+                } else if (message.startsWith("Authentication succeeded")) {
+                    span.event(TransferPhase.AUTH);
+                }
+            }
+            if (delegate.isEnabled(level)) {
+                delegate.log(level, message);
+            }
+        }
+
+        @Override
+        public void log(int level, String message, Throwable cause) {
+            if (delegate.isEnabled(level)) {
+                delegate.log(level, message, cause);
+            }
+        }
+    }
+
+    // Interfaz para recibir entradas de un listado de forma incremental
+    public interface EntryVisitor {
+        /**
+         * Procesa una entrada del listado.
+         * 
+         * @param entry entrada del directorio remoto
+         * @return true para continuar el listado, false para detenerlo
+         */
+        boolean visit(ChannelSftp.LsEntry entry);
     }
 
     // Crear un directorio
     public void createDirectory(String remotePath) throws SftpException {
-        if (!connected) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        ensureConnected();
         sftpChannel.mkdir(remotePath);
     }
 
     // Borrar un archivo
     public void deleteFile(String remoteFilePath) throws SftpException {
-        if (!connected) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        ensureConnected();
         sftpChannel.rm(remoteFilePath);
     }
 
     // Borrar un directorio
     public void deleteDirectory(String remotePath) throws SftpException {
-        if (!connected) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        ensureConnected();
         sftpChannel.rmdir(remotePath);
     }
 
     // Renombrar un archivo o directorio
     public void rename(String fromPath, String toPath) throws SftpException {
-        if (!connected) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        ensureConnected();
         sftpChannel.rename(fromPath, toPath);
     }
 
     // Cambiar el directorio de trabajo
     public void changeWorkingDirectory(String remotePath) throws SftpException {
-        if (!connected) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
-        sftpChannel.cd(remotePath);
+        workingDirectory = executeIdempotent(channel -> {
+            channel.cd(remotePath);
+            return channel.pwd();
+        });
     }
 
     // Obtener el directorio de trabajo actual
     public String getCurrentDirectory() throws SftpException {
-        if (!connected) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
-        return sftpChannel.pwd();
+        return executeIdempotent(ChannelSftp::pwd);
     }
 
     // Verificar si un archivo o directorio existe
     @SuppressWarnings("unchecked")
     public boolean exists(String remotePath) {
-        if (!connected) {
+        if (!connectRequested) {
             return false;
         }
         try {
             // Intentar obtener atributos del archivo
-            sftpChannel.lstat(remotePath);
+            executeIdempotent(channel -> channel.lstat(remotePath));
             return true;
         } catch (SftpException e) {
             return false;
@@ -253,25 +780,16 @@ public class SFTPConnect {
 
     // Verificar si es un archivo
     public boolean isFile(String remotePath) throws SftpException {
-        if (!connected) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
-        return !sftpChannel.lstat(remotePath).isDir();
+        return !executeIdempotent(channel -> channel.lstat(remotePath)).isDir();
     }
 
     // Verificar si es un directorio
     public boolean isDirectory(String remotePath) throws SftpException {
-        if (!connected) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
-        return sftpChannel.lstat(remotePath).isDir();
+        return executeIdempotent(channel -> channel.lstat(remotePath)).isDir();
     }
 
     // Obtener el tamaño de un archivo
     public long getFileSize(String remoteFilePath) throws SftpException {
-        if (!connected) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
-        return sftpChannel.lstat(remoteFilePath).getSize();
+        return executeIdempotent(channel -> channel.lstat(remoteFilePath)).getSize();
     }
 }
@@ -10,6 +10,11 @@ import java.util.List;
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.SftpException;
 
+import eu.sgax.connect.metrics.TransferMetrics;
+import eu.sgax.connect.tracing.TracingStreams;
+import eu.sgax.connect.tracing.TransferPhase;
+import eu.sgax.connect.tracing.TransferSpan;
+
 /**
  * Clase para descargar archivos desde un servidor SFTP.
  * Proporciona métodos para descargar archivos individuales, directorios completos y streams de archivos.
@@ -40,9 +45,7 @@ public class SFTPDownloader {
      * @throws IOException si ocurre un error de I/O
      */
     public void downloadFile(String remoteFilePath, Path localPath) throws SftpException, IOException {
-        if (!sftpConnect.isConnected()) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        sftpConnect.ensureConnected();
 
         ChannelSftp channel = sftpConnect.getChannel();
 
@@ -51,8 +54,31 @@ public class SFTPDownloader {
             Files.createDirectories(localPath.getParent());
         }
 
-        try (OutputStream outputStream = Files.newOutputStream(localPath)) {
-            channel.get(remoteFilePath, outputStream);
+        TransferMetrics metrics = sftpConnect.getDownloadMetrics();
+        TransferSpan span = sftpConnect.startSpan("sftp.download");
+        span.setAttribute("file.path", remoteFilePath);
+        long start = System.nanoTime();
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(localPath)) {
+                channel.get(remoteFilePath, TracingStreams.firstByte(outputStream, span));
+            } catch (SftpException e) {
+                // La descarga sobrescribe el archivo local, por lo que puede repetirse tras reconectar
+                if (!sftpConnect.reconnectIfLost(e)) {
+                    throw e;
+                }
+                try (OutputStream outputStream = Files.newOutputStream(localPath)) {
+                    sftpConnect.getChannel().get(remoteFilePath, TracingStreams.firstByte(outputStream, span));
+                }
+            }
+            long bytes = Files.size(localPath);
+            metrics.success(start, bytes);
+            span.event(TransferPhase.COMPLETE, bytes);
+        } catch (SftpException | IOException e) {
+            metrics.failure();
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
         }
     }
 
@@ -65,9 +91,7 @@ public class SFTPDownloader {
      * @throws SftpException si ocurre un error SFTP
      */
     public InputStream downloadFileAsStream(String remoteFilePath) throws SftpException {
-        if (!sftpConnect.isConnected()) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        sftpConnect.ensureConnected();
 
         ChannelSftp channel = sftpConnect.getChannel();
         return channel.get(remoteFilePath);
@@ -83,9 +107,7 @@ public class SFTPDownloader {
      * @throws IOException si ocurre un error de I/O
      */
     public void downloadDirectory(String remoteDir, Path localDir) throws SftpException, IOException {
-        if (!sftpConnect.isConnected()) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        sftpConnect.ensureConnected();
 
         Files.createDirectories(localDir);
         
@@ -137,9 +159,7 @@ public class SFTPDownloader {
      * @throws IOException si ocurre un error de I/O
      */
     public void downloadFileWithProgress(String remoteFilePath, Path localPath, ProgressMonitor monitor) throws SftpException, IOException {
-        if (!sftpConnect.isConnected()) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        sftpConnect.ensureConnected();
 
         ChannelSftp channel = sftpConnect.getChannel();
 
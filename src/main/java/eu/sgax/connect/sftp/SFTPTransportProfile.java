@@ -0,0 +1,237 @@
+package eu.sgax.connect.sftp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SocketFactory;
+
+/**
+ * Perfil de transporte SSH para conexiones SFTP.
+ * Agrupa los ajustes de rendimiento de la sesión: compresión, preferencia de cifrados y MACs,
+ * número de peticiones SFTP en vuelo y opciones del socket TCP.
+ *
+ * <p>Se asigna con {@link SFTPConnect#setTransportProfile(SFTPTransportProfile)} antes de conectar.
+ * Los valores no configurados mantienen los valores por defecto de JSch.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class SFTPTransportProfile {
+
+    // Compresión zlib retrasada (tras autenticación) con zlib estándar y sin compresión como alternativas
+    private static final String COMPRESSION_ZLIB = "zlib@openssh.com,zlib,none";
+
+    // Cifrados AEAD primero; JSch descarta los que no estén disponibles en el entorno
+    private static final String FAST_CIPHERS = "aes128-gcm@openssh.com,aes256-gcm@openssh.com,"
+            + "chacha20-poly1305@openssh.com,aes128-ctr,aes192-ctr,aes256-ctr";
+
+    private boolean compression = false;
+    private int compressionLevel = 6;
+    private String ciphers;
+    private String macs;
+    private int bulkRequests = 0;
+    private boolean tcpNoDelay = false;
+    private int sendBufferSize = 0;
+    private int receiveBufferSize = 0;
+    private int connectTimeout = 0;
+    private int socketTimeout = 0;
+
+    /**
+     * Perfil con los valores por defecto de JSch.
+     *
+     * @return nuevo perfil por defecto
+     */
+    public static SFTPTransportProfile defaults() {
+        return new SFTPTransportProfile();
+    }
+
+    /**
+     * Perfil con compresión zlib, adecuado para contenido de texto (CSV, XML, JSON).
+     *
+     * @return nuevo perfil con compresión
+     */
+    public static SFTPTransportProfile compressed() {
+        return new SFTPTransportProfile()
+                .compression(true)
+                .ciphers(FAST_CIPHERS)
+                .bulkRequests(64);
+    }
+
+    /**
+     * Perfil orientado a máximo rendimiento en enlaces rápidos o con alta latencia,
+     * para contenido ya comprimido (ZIP, PDF, imágenes).
+     *
+     * @return nuevo perfil de alto rendimiento
+     */
+    public static SFTPTransportProfile highThroughput() {
+        return new SFTPTransportProfile()
+                .ciphers(FAST_CIPHERS)
+                .bulkRequests(64)
+                .tcpNoDelay(true)
+                .socketBufferSizes(1024 * 1024, 1024 * 1024);
+    }
+
+    // Activar o desactivar la compresión zlib
+    public SFTPTransportProfile compression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    // Nivel de compresión zlib (1 = más rápido, 9 = mayor compresión)
+    public SFTPTransportProfile compressionLevel(int compressionLevel) {
+        if (compressionLevel < 1 || compressionLevel > 9) {
+            throw new IllegalArgumentException("El nivel de compresión debe estar entre 1 y 9: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    // Lista de cifrados en orden de preferencia, separados por comas
+    public SFTPTransportProfile ciphers(String ciphers) {
+        this.ciphers = ciphers;
+        return this;
+    }
+
+    // Lista de MACs en orden de preferencia, separados por comas
+    public SFTPTransportProfile macs(String macs) {
+        this.macs = macs;
+        return this;
+    }
+
+    /**
+     * Número máximo de peticiones de lectura/escritura SFTP en vuelo durante una transferencia.
+     * Valores altos compensan la latencia de red manteniendo lleno el canal SSH.
+     *
+     * @param bulkRequests número de peticiones en vuelo (0 para el valor por defecto de JSch)
+     * @return este perfil
+     */
+    public SFTPTransportProfile bulkRequests(int bulkRequests) {
+        if (bulkRequests < 0) {
+            throw new IllegalArgumentException("El número de peticiones no puede ser negativo: " + bulkRequests);
+        }
+        this.bulkRequests = bulkRequests;
+        return this;
+    }
+
+    // Desactivar el algoritmo de Nagle en el socket
+    public SFTPTransportProfile tcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+        return this;
+    }
+
+    /**
+     * Tamaños de los buffers del socket TCP. Se aplican antes de conectar
+     * para que el escalado de ventana TCP los tenga en cuenta.
+     *
+     * @param sendBufferSize tamaño del buffer de envío en bytes (0 para el valor del sistema)
+     * @param receiveBufferSize tamaño del buffer de recepción en bytes (0 para el valor del sistema)
+     * @return este perfil
+     */
+    public SFTPTransportProfile socketBufferSizes(int sendBufferSize, int receiveBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+        this.receiveBufferSize = receiveBufferSize;
+        return this;
+    }
+
+    // Tiempo máximo de conexión en milisegundos (0 sin límite)
+    public SFTPTransportProfile connectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    // Tiempo máximo de espera de lectura del socket en milisegundos (0 sin límite)
+    public SFTPTransportProfile socketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+        return this;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public int getBulkRequests() {
+        return bulkRequests;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    // Aplicar el perfil a la sesión antes de conectar
+    void applyTo(Session session) throws JSchException {
+        if (compression) {
+            session.setConfig("compression.s2c", COMPRESSION_ZLIB);
+            session.setConfig("compression.c2s", COMPRESSION_ZLIB);
+            session.setConfig("compression_level", String.valueOf(compressionLevel));
+        }
+        if (ciphers != null && !ciphers.isEmpty()) {
+            session.setConfig("cipher.s2c", ciphers);
+            session.setConfig("cipher.c2s", ciphers);
+        }
+        if (macs != null && !macs.isEmpty()) {
+            session.setConfig("mac.s2c", macs);
+            session.setConfig("mac.c2s", macs);
+        }
+        if (socketTimeout > 0) {
+            session.setTimeout(socketTimeout);
+        }
+        if (tcpNoDelay || sendBufferSize > 0 || receiveBufferSize > 0) {
+            session.setSocketFactory(new TunedSocketFactory());
+        }
+    }
+
+    // Aplicar el perfil al canal SFTP una vez abierto
+    void applyTo(ChannelSftp channel) throws JSchException {
+        if (bulkRequests > 0) {
+            channel.setBulkRequests(bulkRequests);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SFTPTransportProfile{" +
+                "compression=" + compression +
+                ", compressionLevel=" + compressionLevel +
+                ", ciphers='" + ciphers + '\'' +
+                ", macs='" + macs + '\'' +
+                ", bulkRequests=" + bulkRequests +
+                ", tcpNoDelay=" + tcpNoDelay +
+                ", sendBufferSize=" + sendBufferSize +
+                ", receiveBufferSize=" + receiveBufferSize +
+                '}';
+    }
+
+    // Factoría de sockets que aplica las opciones TCP del perfil
+    private class TunedSocketFactory implements SocketFactory {
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            Socket socket = new Socket();
+            socket.setTcpNoDelay(tcpNoDelay);
+            if (sendBufferSize > 0) {
+                socket.setSendBufferSize(sendBufferSize);
+            }
+            if (receiveBufferSize > 0) {
+                socket.setReceiveBufferSize(receiveBufferSize);
+            }
+            socket.connect(new InetSocketAddress(host, port), connectTimeout);
+            return socket;
+        }
+
+        @Override
+        public InputStream getInputStream(Socket socket) throws IOException {
+            return socket.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream(Socket socket) throws IOException {
+            return socket.getOutputStream();
+        }
+    }
+}
@@ -9,6 +9,11 @@ import java.util.List;
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.SftpException;
 
+import eu.sgax.connect.metrics.TransferMetrics;
+import eu.sgax.connect.tracing.TracingStreams;
+import eu.sgax.connect.tracing.TransferPhase;
+import eu.sgax.connect.tracing.TransferSpan;
+
 /**
  * Clase para subir archivos a un servidor SFTP.
  * Proporciona métodos para subir archivos individuales, directorios completos y streams de archivos.
@@ -38,17 +43,38 @@ public class SFTPUploader {
      * @throws IOException si ocurre un error de I/O
      */
     public void uploadFile(Path localPath, String remoteFilePath) throws SftpException, IOException {
-        if (!sftpConnect.isConnected()) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        sftpConnect.ensureConnected();
 
         if (!Files.exists(localPath)) {
             throw new IOException("El archivo local no existe: " + localPath);
         }
 
-        ChannelSftp channel = sftpConnect.getChannel();
-        try (InputStream inputStream = Files.newInputStream(localPath)) {
-            channel.put(inputStream, remoteFilePath);
+        TransferMetrics metrics = sftpConnect.getUploadMetrics();
+        TransferSpan span = sftpConnect.startSpan("sftp.upload");
+        span.setAttribute("file.path", remoteFilePath);
+        long start = System.nanoTime();
+        try {
+            ChannelSftp channel = sftpConnect.getChannel();
+            try (InputStream inputStream = Files.newInputStream(localPath)) {
+                channel.put(TracingStreams.firstByte(inputStream, span), remoteFilePath);
+            } catch (SftpException e) {
+                // La subida desde un archivo local sobrescribe el remoto, por lo que puede repetirse tras reconectar
+                if (!sftpConnect.reconnectIfLost(e)) {
+                    throw e;
+                }
+                try (InputStream inputStream = Files.newInputStream(localPath)) {
+                    sftpConnect.getChannel().put(TracingStreams.firstByte(inputStream, span), remoteFilePath);
+                }
+            }
+            long bytes = Files.size(localPath);
+            metrics.success(start, bytes);
+            span.event(TransferPhase.COMPLETE, bytes);
+        } catch (SftpException | IOException e) {
+            metrics.failure();
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
         }
     }
 
@@ -61,9 +87,7 @@ public class SFTPUploader {
      * @throws SftpException si ocurre un error SFTP
      */
     public void uploadFile(InputStream inputStream, String remoteFilePath) throws SftpException {
-        if (!sftpConnect.isConnected()) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        sftpConnect.ensureConnected();
 
         ChannelSftp channel = sftpConnect.getChannel();
         channel.put(inputStream, remoteFilePath);
@@ -79,9 +103,7 @@ public class SFTPUploader {
      * @throws IOException si ocurre un error de I/O
      */
     public void uploadDirectory(Path localDir, String remoteDir) throws SftpException, IOException {
-        if (!sftpConnect.isConnected()) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        sftpConnect.ensureConnected();
 
         if (!Files.exists(localDir) || !Files.isDirectory(localDir)) {
             throw new IOException("El directorio local no existe o no es un directorio: " + localDir);
@@ -141,9 +163,7 @@ public class SFTPUploader {
      * @throws IOException si ocurre un error de I/O
      */
     public void uploadFileOverwrite(Path localPath, String remoteFilePath) throws SftpException, IOException {
-        if (!sftpConnect.isConnected()) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        sftpConnect.ensureConnected();
 
         // Borrar el archivo remoto si existe
         if (sftpConnect.exists(remoteFilePath)) {
@@ -155,9 +175,7 @@ public class SFTPUploader {
 
     // Subir con monitor de progreso
     public void uploadFileWithProgress(Path localPath, String remoteFilePath, ProgressMonitor monitor) throws SftpException, IOException {
-        if (!sftpConnect.isConnected()) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        sftpConnect.ensureConnected();
 
         if (!Files.exists(localPath)) {
             throw new IOException("El archivo local no existe: " + localPath);
@@ -204,17 +222,28 @@ public class SFTPUploader {
 
     // Subir archivo con modo de transferencia específico
     public void uploadFile(Path localPath, String remoteFilePath, int mode) throws SftpException, IOException {
-        if (!sftpConnect.isConnected()) {
-            throw new SftpException(0, "No conectado al servidor SFTP.");
-        }
+        sftpConnect.ensureConnected();
 
         if (!Files.exists(localPath)) {
             throw new IOException("El archivo local no existe: " + localPath);
         }
 
+        TransferMetrics metrics = sftpConnect.getUploadMetrics();
+        TransferSpan span = sftpConnect.startSpan("sftp.upload");
+        span.setAttribute("file.path", remoteFilePath);
+        long start = System.nanoTime();
         ChannelSftp channel = sftpConnect.getChannel();
         try (InputStream inputStream = Files.newInputStream(localPath)) {
-            channel.put(inputStream, remoteFilePath, mode);
+            channel.put(TracingStreams.firstByte(inputStream, span), remoteFilePath, mode);
+            long bytes = Files.size(localPath);
+            metrics.success(start, bytes);
+            span.event(TransferPhase.COMPLETE, bytes);
+        } catch (SftpException | IOException e) {
+            metrics.failure();
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
         }
     }
 }
@@ -0,0 +1,188 @@
+package eu.sgax.connect.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trazador que guarda en memoria las trazas terminadas, para pruebas y diagnóstico.
+ * Permite comprobar qué fases ha marcado un conector y cuánto ha durado cada una sin montar un colector de
+ * OpenTelemetry. Es seguro entre hilos; las trazas se conservan hasta llamar a {@link #clear()}.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class InMemoryTracer implements TransferTracer {
+
+    private final List<RecordedSpan> spans = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public TransferSpan startSpan(String name, String connector) {
+        return new RecordedSpan(this, name, connector);
+    }
+
+    // Trazas terminadas, en orden de finalización
+    public List<RecordedSpan> getSpans() {
+        synchronized (spans) {
+            return new ArrayList<>(spans);
+        }
+    }
+
+    // Trazas terminadas con el nombre indicado
+    public List<RecordedSpan> getSpans(String name) {
+        List<RecordedSpan> matching = new ArrayList<>();
+        for (RecordedSpan span : getSpans()) {
+            if (span.getName().equals(name)) {
+                matching.add(span);
+            }
+        }
+        return matching;
+    }
+
+    // Descartar las trazas guardadas
+    public void clear() {
+        spans.clear();
+    }
+
+    // Traza registrada en memoria
+    public static class RecordedSpan implements TransferSpan {
+        private final InMemoryTracer tracer;
+        private final String name;
+        private final String connector;
+        private final long startNanos = System.nanoTime();
+        private final Map<String, Object> attributes = new LinkedHashMap<>();
+        private final List<PhaseEvent> events = new ArrayList<>();
+        private long endNanos = -1;
+        private Throwable error;
+
+        private RecordedSpan(InMemoryTracer tracer, String name, String connector) {
+            this.tracer = tracer;
+            this.name = name;
+            this.connector = connector;
+        }
+
+        @Override
+        public boolean isRecording() {
+            return true;
+        }
+
+        @Override
+        public synchronized TransferSpan setAttribute(String key, String value) {
+            attributes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public synchronized TransferSpan setAttribute(String key, long value) {
+            attributes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public synchronized void event(TransferPhase phase, long bytes) {
+            events.add(new PhaseEvent(phase, System.nanoTime() - startNanos, bytes));
+        }
+
+        @Override
+        public synchronized void error(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void end() {
+            synchronized (this) {
+                if (endNanos >= 0) {
+                    return;
+                }
+                endNanos = System.nanoTime();
+            }
+            tracer.spans.add(this);
+        }
+
+        // Nombre de la operación
+        public String getName() {
+            return name;
+        }
+
+        // Nombre del conector
+        public String getConnector() {
+            return connector;
+        }
+
+        // Duración total en nanosegundos
+        public synchronized long getDurationNanos() {
+            return endNanos < 0 ? -1 : endNanos - startNanos;
+        }
+
+        // Atributos de la traza
+        public synchronized Map<String, Object> getAttributes() {
+            return new LinkedHashMap<>(attributes);
+        }
+
+        // Eventos de fase en orden
+        public synchronized List<PhaseEvent> getEvents() {
+            return new ArrayList<>(events);
+        }
+
+        // Primer evento de una fase (null si no se ha marcado)
+        public synchronized PhaseEvent getEvent(TransferPhase phase) {
+            for (PhaseEvent event : events) {
+                if (event.getPhase() == phase) {
+                    return event;
+                }
+            }
+            return null;
+        }
+
+        // Error de la operación (null si terminó correctamente)
+        public synchronized Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "RecordedSpan{" +
+                    "name='" + name + '\'' +
+                    ", durationNanos=" + getDurationNanos() +
+                    ", attributes=" + attributes +
+                    ", events=" + events +
+                    ", error=" + error +
+                    '}';
+        }
+    }
+
+    // Evento de fase con su instante relativo al inicio de la traza
+    public static class PhaseEvent {
+        private final TransferPhase phase;
+        private final long offsetNanos;
+        private final long bytes;
+
+        private PhaseEvent(TransferPhase phase, long offsetNanos, long bytes) {
+            this.phase = phase;
+            this.offsetNanos = offsetNanos;
+            this.bytes = bytes;
+        }
+
+        // Fase terminada
+        public TransferPhase getPhase() {
+            return phase;
+        }
+
+        // Nanosegundos desde el inicio de la traza
+        public long getOffsetNanos() {
+            return offsetNanos;
+        }
+
+        // Bytes asociados (negativo si no aplica)
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return phase.getEventName() + "@" + offsetNanos / 1000 + "us" + (bytes >= 0 ? "(" + bytes + "B)" : "");
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package eu.sgax.connect.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+
+/**
+ * Adaptador que envía las trazas de los conectores a OpenTelemetry.
+ * Cada operación es un span de tipo {@code CLIENT} hijo del span activo en el hilo que la llama, de modo que
+ * las fases aparecen dentro de la traza del trabajo que las usa; cada fase es un evento del span con el atributo
+ * {@code bytes} cuando se conoce el tamaño. OpenTelemetry es una dependencia opcional: hay que añadir
+ * {@code opentelemetry-api} al proyecto para usar esta clase. Para pruebas, el {@code InMemorySpanExporter} de
+ * {@code opentelemetry-sdk-testing} recoge los spans sin colector.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public class OpenTelemetryTracer implements TransferTracer {
+
+    // Nombre del ámbito de instrumentación
+    public static final String INSTRUMENTATION_NAME = "eu.sgax.connect";
+
+    private static final AttributeKey<String> CONNECTOR = AttributeKey.stringKey("connector");
+    private static final AttributeKey<Long> BYTES = AttributeKey.longKey("bytes");
+
+    private final Tracer tracer;
+
+    /**
+     * Constructor con una instancia de OpenTelemetry.
+     *
+     * @param openTelemetry instancia configurada de OpenTelemetry
+     */
+    public OpenTelemetryTracer(OpenTelemetry openTelemetry) {
+        this(openTelemetry.getTracer(INSTRUMENTATION_NAME));
+    }
+
+    /**
+     * Constructor con un trazador de OpenTelemetry.
+     *
+     * @param tracer trazador de OpenTelemetry
+     */
+    public OpenTelemetryTracer(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public TransferSpan startSpan(String name, String connector) {
+        Span span = tracer.spanBuilder(name)
+                .setSpanKind(SpanKind.CLIENT)
+                .setAttribute(CONNECTOR, connector)
+                .startSpan();
+        return new OpenTelemetrySpan(span);
+    }
+
+    // Span de OpenTelemetry visto como traza de un conector
+    private static final class OpenTelemetrySpan implements TransferSpan {
+        private final Span span;
+
+        private OpenTelemetrySpan(Span span) {
+            this.span = span;
+        }
+
+        @Override
+        public boolean isRecording() {
+            return span.isRecording();
+        }
+
+        @Override
+        public TransferSpan setAttribute(String key, String value) {
+            span.setAttribute(key, value);
+            return this;
+        }
+
+        @Override
+        public TransferSpan setAttribute(String key, long value) {
+            span.setAttribute(key, value);
+            return this;
+        }
+
+        @Override
+        public void event(TransferPhase phase, long bytes) {
+            if (bytes >= 0) {
+                span.addEvent(phase.getEventName(), Attributes.of(BYTES, bytes));
+            } else {
+                span.addEvent(phase.getEventName());
+            }
+        }
+
+        @Override
+        public void error(Throwable error) {
+            span.recordException(error);
+            span.setStatus(StatusCode.ERROR, error.getMessage() != null ? error.getMessage() : "");
+        }
+
+        @Override
+        public void end() {
+            span.end();
+        }
+    }
+}
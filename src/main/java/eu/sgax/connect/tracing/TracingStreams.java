@@ -0,0 +1,94 @@
+package eu.sgax.connect.tracing;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Envoltorios de streams que marcan {@link TransferPhase#FIRST_BYTE} cuando pasa el primer byte.
+ * Los conectores los colocan entre la biblioteca del protocolo y el archivo local: en una subida el primer byte
+ * leído es el primero que se envía, y en una descarga el primero escrito es el primero recibido.
+ * Si la traza no se registra se devuelve el stream original, sin coste añadido.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public final class TracingStreams {
+
+    private TracingStreams() {
+    }
+
+    /**
+     * Envuelve el stream de origen de una subida.
+     *
+     * @param in stream de origen
+     * @param span traza de la subida
+     * @return stream que marca el primer byte leído
+     */
+    public static InputStream firstByte(InputStream in, TransferSpan span) {
+        if (!span.isRecording()) {
+            return in;
+        }
+        return new FilterInputStream(in) {
+            private boolean started = false;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                onData(b >= 0 ? 1 : 0);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = in.read(buffer, offset, length);
+                onData(read);
+                return read;
+            }
+
+            private void onData(int read) {
+                if (!started && read > 0) {
+                    started = true;
+                    span.event(TransferPhase.FIRST_BYTE);
+                }
+            }
+        };
+    }
+
+    /**
+     * Envuelve el stream de destino de una descarga.
+     *
+     * @param out stream de destino
+     * @param span traza de la descarga
+     * @return stream que marca el primer byte escrito
+     */
+    public static OutputStream firstByte(OutputStream out, TransferSpan span) {
+        if (!span.isRecording()) {
+            return out;
+        }
+        return new FilterOutputStream(out) {
+            private boolean started = false;
+
+            @Override
+            public void write(int b) throws IOException {
+                onData(1);
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                onData(length);
+                out.write(buffer, offset, length);
+            }
+
+            private void onData(int length) {
+                if (!started && length > 0) {
+                    started = true;
+                    span.event(TransferPhase.FIRST_BYTE);
+                }
+            }
+        };
+    }
+}
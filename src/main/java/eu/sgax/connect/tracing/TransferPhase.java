@@ -0,0 +1,36 @@
+package eu.sgax.connect.tracing;
+
+/**
+ * Fases de una operación de un conector que se marcan como eventos en su {@link TransferSpan}.
+ * Cada evento se registra cuando termina la fase, de modo que la diferencia entre dos eventos
+ * consecutivos es la duración de la fase.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public enum TransferPhase {
+
+    // Conexión TCP establecida (en FTP incluye el saludo del servidor)
+    CONNECT("connect"),
+    // Negociación del protocolo completada (intercambio de claves SSH)
+    HANDSHAKE("handshake"),
+    // Autenticación completada
+    AUTH("auth"),
+    // Listado de directorio recibido
+    LIST("list"),
+    // Primer byte de datos enviado o recibido
+    FIRST_BYTE("first_byte"),
+    // Transferencia completada
+    COMPLETE("complete");
+
+    private final String eventName;
+
+    TransferPhase(String eventName) {
+        this.eventName = eventName;
+    }
+
+    // Nombre del evento en la traza
+    public String getEventName() {
+        return eventName;
+    }
+}
@@ -0,0 +1,97 @@
+package eu.sgax.connect.tracing;
+
+/**
+ * Traza de una operación de un conector (conexión, listado o transferencia) con sus fases como eventos.
+ * La crea un {@link TransferTracer} y debe terminarse con {@link #end()}, también cuando la operación falla.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+public interface TransferSpan extends AutoCloseable {
+
+    // Traza que descarta todo, devuelta por TransferTracer.NOOP
+    TransferSpan NOOP = new TransferSpan() {
+        @Override
+        public boolean isRecording() {
+            return false;
+        }
+
+        @Override
+        public TransferSpan setAttribute(String key, String value) {
+            return this;
+        }
+
+        @Override
+        public TransferSpan setAttribute(String key, long value) {
+            return this;
+        }
+
+        @Override
+        public void event(TransferPhase phase, long bytes) {
+        }
+
+        @Override
+        public void error(Throwable error) {
+        }
+
+        @Override
+        public void end() {
+        }
+    };
+
+    /**
+     * Indica si la traza se está registrando. Los conectores lo consultan para no preparar
+     * datos ni envolver streams cuando no hace falta.
+     *
+     * @return true si la traza se registra
+     */
+    boolean isRecording();
+
+    /**
+     * Añade un atributo de texto a la traza.
+     *
+     * @param key nombre del atributo
+     * @param value valor del atributo
+     * @return esta traza
+     */
+    TransferSpan setAttribute(String key, String value);
+
+    /**
+     * Añade un atributo numérico a la traza.
+     *
+     * @param key nombre del atributo
+     * @param value valor del atributo
+     * @return esta traza
+     */
+    TransferSpan setAttribute(String key, long value);
+
+    /**
+     * Marca el final de una fase.
+     *
+     * @param phase fase terminada
+     * @param bytes bytes asociados a la fase (negativo si no aplica)
+     */
+    void event(TransferPhase phase, long bytes);
+
+    // Marcar el final de una fase sin tamaño
+    default void event(TransferPhase phase) {
+        event(phase, -1);
+    }
+
+    /**
+     * Marca la operación como fallida.
+     *
+     * @param error causa del fallo
+     */
+    void error(Throwable error);
+
+    /**
+     * Termina la traza. Las llamadas posteriores no tienen efecto.
+     */
+    void end();
+
+    @Override
+    default void close() {
+        end();
+    }
+}
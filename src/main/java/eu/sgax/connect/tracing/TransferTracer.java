@@ -0,0 +1,29 @@
+package eu.sgax.connect.tracing;
+
+/**
+ * Punto de extensión para trazar las operaciones de los conectores.
+ * Cada conexión, listado o transferencia abre una traza con un nombre como {@code ftp.connect},
+ * {@code sftp.list} o {@code s3.upload} y marca sus fases ({@link TransferPhase}) como eventos, de modo que
+ * puede verse si el tiempo se fue en conectar, autenticar, listar o transferir datos.
+ *
+ * <p>Por defecto se usa {@link #NOOP}, que no registra nada ni crea objetos. {@link InMemoryTracer} guarda las
+ * trazas en memoria para pruebas y diagnóstico, y {@link OpenTelemetryTracer} las envía a OpenTelemetry.</p>
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface TransferTracer {
+
+    // Trazador que no registra nada
+    TransferTracer NOOP = (name, connector) -> TransferSpan.NOOP;
+
+    /**
+     * Abre una traza.
+     *
+     * @param name nombre de la operación (por ejemplo {@code ftp.download})
+     * @param connector nombre del conector (ftp, sftp, s3, smtp)
+     * @return traza abierta, que debe terminarse con {@link TransferSpan#end()}
+     */
+    TransferSpan startSpan(String name, String connector);
+}
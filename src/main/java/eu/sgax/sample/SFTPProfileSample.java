@@ -0,0 +1,128 @@
+package eu.sgax.sample;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import eu.sgax.connect.sftp.SFTPConnect;
+import eu.sgax.connect.sftp.SFTPDownloader;
+import eu.sgax.connect.sftp.SFTPTransportProfile;
+import eu.sgax.connect.sftp.SFTPUploader;
+
+/**
+ * SFTP transport profile benchmark
+ * This class uploads and downloads the same CSV file with each transport profile and prints the throughput
+ */
+public class SFTPProfileSample {
+
+    public static void main(String[] args) {
+        Path csv = null;
+        Path downloadDir = null;
+        try {
+            // SFTP server configuration (using environment variables or defaults)
+            String host = System.getenv().getOrDefault("SFTP_HOST", "localhost");
+            int port = Integer.parseInt(System.getenv().getOrDefault("SFTP_PORT", "2222"));
+            String username = System.getenv().getOrDefault("SFTP_USER", "minioadmin");
+            String password = System.getenv().getOrDefault("SFTP_PASS", "minioadmin");
+            String workDir = System.getenv().getOrDefault("SFTP_WORK_DIR", "/upload");
+            int sizeMb = Integer.parseInt(System.getenv().getOrDefault("SFTP_BENCH_MB", "32"));
+            int rounds = Integer.parseInt(System.getenv().getOrDefault("SFTP_BENCH_ROUNDS", "3"));
+
+            System.out.println("\n=== Starting SFTP profile benchmark ===");
+
+            // Generate a text-heavy CSV file similar to the usual feeds
+            csv = Files.createTempFile("sftp-bench", ".csv");
+            writeCsv(csv, sizeMb * 1024L * 1024L);
+            downloadDir = Files.createTempDirectory("sftp-bench");
+            long size = Files.size(csv);
+            System.out.println("Test file: " + csv + " (" + size / (1024 * 1024) + " MB)");
+
+            Map<String, SFTPTransportProfile> profiles = new LinkedHashMap<>();
+            profiles.put("defaults", SFTPTransportProfile.defaults());
+            profiles.put("compressed", SFTPTransportProfile.compressed());
+            profiles.put("highThroughput", SFTPTransportProfile.highThroughput());
+
+            for (Map.Entry<String, SFTPTransportProfile> profile : profiles.entrySet()) {
+                SFTPConnect sftp = new SFTPConnect(host, port, username, password);
+                sftp.setTransportProfile(profile.getValue());
+                try {
+                    long connectStart = System.nanoTime();
+                    sftp.connect();
+                    long connectMillis = (System.nanoTime() - connectStart) / 1_000_000;
+                    sftp.changeWorkingDirectory(workDir);
+
+                    SFTPUploader uploader = new SFTPUploader(sftp);
+                    SFTPDownloader downloader = new SFTPDownloader(sftp);
+                    String remoteName = "bench-" + profile.getKey() + ".csv";
+
+                    // Warm-up round (JIT, TCP slow start)
+                    uploader.uploadFile(csv, remoteName);
+
+                    long uploadNanos = 0;
+                    long downloadNanos = 0;
+                    for (int i = 0; i < rounds; i++) {
+                        long start = System.nanoTime();
+                        uploader.uploadFile(csv, remoteName);
+                        uploadNanos += System.nanoTime() - start;
+
+                        start = System.nanoTime();
+                        downloader.downloadFile(remoteName, downloadDir.resolve(remoteName));
+                        downloadNanos += System.nanoTime() - start;
+                    }
+                    sftp.deleteFile(remoteName);
+
+                    System.out.printf("%-15s connect %5d ms | upload %8.1f MB/s | download %8.1f MB/s%n",
+                            profile.getKey(), connectMillis,
+                            throughput(size * rounds, uploadNanos), throughput(size * rounds, downloadNanos));
+                } finally {
+                    sftp.disconnect();
+                }
+            }
+
+            System.out.println("=== SFTP profile benchmark completed ===\n");
+        } catch (Exception e) {
+            System.err.println("Failure in SFTP benchmark: " + e.getMessage());
+            System.err.println("Verify that the SFTP server is active, endpoint and credentials.");
+            e.printStackTrace();
+        } finally {
+            // Clean up temporary files
+            try {
+                if (csv != null) {
+                    Files.deleteIfExists(csv);
+                }
+                if (downloadDir != null) {
+                    try (var files = Files.list(downloadDir)) {
+                        for (Path file : files.toList()) {
+                            Files.deleteIfExists(file);
+                        }
+                    }
+                    Files.deleteIfExists(downloadDir);
+                }
+            } catch (Exception e) {
+                // Ignore cleanup errors
+            }
+        }
+    }
+
+    // Write a CSV file of approximately the given size
+    private static void writeCsv(Path path, long targetBytes) throws Exception {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("id;date;customer;country;amount;status\n");
+            long written = 0;
+            long id = 0;
+            while (written < targetBytes) {
+                String line = id + ";2024-" + (1 + id % 12) + "-" + (1 + id % 28) + ";CUSTOMER_" + (id % 5000)
+                        + ";ES;" + (id % 100000) / 100.0 + ";" + (id % 3 == 0 ? "PAID" : "PENDING") + "\n";
+                writer.write(line);
+                written += line.length();
+                id++;
+            }
+        }
+    }
+
+    private static double throughput(long bytes, long nanos) {
+        return nanos == 0 ? 0 : (bytes / (1024.0 * 1024.0)) / (nanos / 1_000_000_000.0);
+    }
+}
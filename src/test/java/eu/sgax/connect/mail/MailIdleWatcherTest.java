@@ -0,0 +1,68 @@
+package eu.sgax.connect.mail;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.icegreen.greenmail.user.GreenMailUser;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+/**
+ * Pruebas del vigilante IMAP IDLE contra un servidor IMAP local.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+class MailIdleWatcherTest {
+
+    private static final String USER = "watcher@localhost";
+    private static final String PASSWORD = "secret";
+
+    private GreenMail greenMail;
+    private GreenMailUser user;
+
+    @BeforeEach
+    void startServer() {
+        greenMail = new GreenMail(ServerSetupTest.IMAP.dynamicPort());
+        greenMail.start();
+        user = greenMail.setUser(USER, USER, PASSWORD);
+    }
+
+    @AfterEach
+    void stopServer() {
+        greenMail.stop();
+    }
+
+    @Test
+    void notifiesOnlyMessagesArrivedAfterStart() throws Exception {
+        user.deliver(GreenMailUtil.createTextEmail(USER, "from@localhost", "old", "body", greenMail.getImap().getServerSetup()));
+
+        BlockingQueue<ReadMail.MessageSummary> received = new LinkedBlockingQueue<>();
+        ReadMail account = new ReadMail("127.0.0.1", greenMail.getImap().getPort(), USER, PASSWORD, false, "imap");
+        try (MailIdleWatcher watcher = new MailIdleWatcher(account, "INBOX").addListener(received::addAll)) {
+            watcher.start();
+            assertTrue(watcher.isIdleSupported());
+            for (int i = 0; i < 3; i++) {
+                user.deliver(GreenMailUtil.createTextEmail(USER, "from@localhost", "new-" + i, "body",
+                        greenMail.getImap().getServerSetup()));
+            }
+
+            for (int i = 0; i < 3; i++) {
+                ReadMail.MessageSummary summary = received.poll(10, TimeUnit.SECONDS);
+                assertEquals("new-" + i, summary != null ? summary.subject : null);
+            }
+            // El mensaje anterior al arranque no se notifica, ni se repite ninguno
+            assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package eu.sgax.connect.mail;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+import jakarta.mail.Address;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Pruebas de la cola de envío con spool contra servidores SMTP locales.
+ *
+ * @author SGAX
+ * @version 1.0
+ */
+class MailQueueTest {
+
+    private static final String SENDER = "sender@localhost";
+    private static final String PASSWORD = "secret";
+    private static final String RECIPIENT = "rcpt@localhost";
+    private static final String ACCEPTED = "accepted@a.localhost";
+    private static final String GREYLISTED = "greylisted@b.localhost";
+    private static final String REJECTED = "rejected@c.localhost";
+
+    @TempDir
+    Path spoolDir;
+
+    private GreenMail greenMail;
+
+    @BeforeEach
+    void startServer() {
+        greenMail = new GreenMail(ServerSetupTest.SMTP.dynamicPort());
+        greenMail.start();
+        greenMail.setUser(SENDER, SENDER, PASSWORD);
+    }
+
+    @AfterEach
+    void stopServer() {
+        greenMail.stop();
+    }
+
+    @Test
+    void recoversSpoolWithoutResendingNewMessages() throws Exception {
+        SendMail sender = sender(greenMail.getSmtp().getPort());
+        // Mensajes que quedaron en el spool de una ejecución anterior
+        for (int i = 0; i < 5; i++) {
+            MimeMessage message = sender.buildMessage(RECIPIENT, null, null, "recovered-" + i, "body", null, false);
+            message.saveChanges();
+            try (OutputStream out = Files.newOutputStream(spoolDir.resolve("0-" + i + ".eml"))) {
+                message.writeTo(out);
+            }
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (MailQueue queue = new MailQueue(sender, 100, 4, spoolDir)) {
+            for (int i = 0; i < 20; i++) {
+                futures.add(queue.sendEmailAsync(RECIPIENT, "new-" + i, "body"));
+            }
+            for (CompletableFuture<Void> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            assertTrue(greenMail.waitForIncomingEmail(10_000, 25));
+        }
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        Set<String> subjects = new HashSet<>();
+        for (MimeMessage message : received) {
+            subjects.add(message.getSubject());
+        }
+        assertEquals(25, received.length);
+        assertEquals(25, subjects.size());
+        assertEquals(0, countSpooled(spoolDir));
+    }
+
+    @Test
+    void keepsTransientFailuresInSpool() throws Exception {
+        try (StubSmtpServer stub = new StubSmtpServer("451 4.7.1 Greylisted")) {
+            try (MailQueue queue = new MailQueue(sender(stub.getPort()), 10, 1, spoolDir)) {
+                queue.setMaxRetries(1);
+                queue.setRetryDelay(Duration.ofMillis(10));
+                CompletableFuture<Void> future = queue.sendEmailAsync(RECIPIENT, "greylisted", "body");
+                assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(2, stub.getRecipientAttempts());
+        }
+        assertEquals(1, countSpooled(spoolDir));
+        assertEquals(0, countSpooled(spoolDir.resolve("failed")));
+
+        // Al reiniciar con el servidor disponible, el mensaje se envía y sale del spool
+        try (MailQueue queue = new MailQueue(sender(greenMail.getSmtp().getPort()), 10, 1, spoolDir)) {
+            assertTrue(greenMail.waitForIncomingEmail(10_000, 1));
+        }
+        assertEquals("greylisted", greenMail.getReceivedMessages()[0].getSubject());
+        assertEquals(0, countSpooled(spoolDir));
+    }
+
+    @Test
+    void movesPermanentFailuresToFailed() throws Exception {
+        try (StubSmtpServer stub = new StubSmtpServer("550 5.1.1 No such user")) {
+            try (MailQueue queue = new MailQueue(sender(stub.getPort()), 10, 1, spoolDir)) {
+                queue.setRetryDelay(Duration.ofMillis(10));
+                CompletableFuture<Void> future = queue.sendEmailAsync(RECIPIENT, "rejected", "body");
+                assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, stub.getRecipientAttempts());
+        }
+        assertEquals(0, countSpooled(spoolDir));
+        assertEquals(1, countSpooled(spoolDir.resolve("failed")));
+    }
+
+    @Test
+    void reportsRecipientsRejectedBeforeSuccessfulRetry() throws Exception {
+        // El segundo destinatario se acepta al reintentar; el tercero se rechaza siempre
+        try (StubSmtpServer stub = new StubSmtpServer((address, attempt) -> mixedReply(address, attempt > 1))) {
+            try (MailQueue queue = new MailQueue(sender(stub.getPort()), 10, 1, spoolDir)) {
+                queue.setRetryDelay(Duration.ofMillis(10));
+                CompletableFuture<Void> future = queue.submit(mixedMessage(sender(stub.getPort())));
+                ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+                SendFailedException failed = assertInstanceOf(SendFailedException.class, error.getCause());
+                assertArrayEquals(new Address[] {new InternetAddress(REJECTED)}, failed.getInvalidAddresses());
+            }
+            assertEquals(List.of(List.of(ACCEPTED, GREYLISTED)), stub.getDeliveries());
+        }
+        assertEquals(0, countSpooled(spoolDir));
+    }
+
+    @Test
+    void recoversOnlyPendingRecipientsFromSpool() throws Exception {
+        try (StubSmtpServer stub = new StubSmtpServer((address, attempt) -> mixedReply(address, false))) {
+            try (MailQueue queue = new MailQueue(sender(stub.getPort()), 10, 1, spoolDir)) {
+                queue.setMaxRetries(0);
+                CompletableFuture<Void> future = queue.submit(mixedMessage(sender(stub.getPort())));
+                assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(List.of(), stub.getDeliveries());
+        }
+        assertEquals(1, countSpooled(spoolDir));
+
+        // Al reiniciar solo se envía a los pendientes, nunca al rechazado de forma definitiva
+        try (MailQueue queue = new MailQueue(sender(greenMail.getSmtp().getPort()), 10, 1, spoolDir)) {
+            assertTrue(greenMail.waitForIncomingEmail(10_000, 1));
+        }
+        // Una copia por buzón: los pendientes tienen buzón y el rechazado no llega a tenerlo
+        assertEquals(2, greenMail.getReceivedMessages().length);
+        assertNotNull(greenMail.getUserManager().getUserByEmail(ACCEPTED));
+        assertNotNull(greenMail.getUserManager().getUserByEmail(GREYLISTED));
+        assertNull(greenMail.getUserManager().getUserByEmail(REJECTED));
+        assertEquals(0, countSpooled(spoolDir));
+    }
+
+    private static String mixedReply(String address, boolean greylistPassed) {
+        if (address.contains(REJECTED)) {
+            return "550 5.1.1 No such user";
+        }
+        if (address.contains(GREYLISTED) && !greylistPassed) {
+            return "451 4.7.1 Greylisted";
+        }
+        return "250 ok";
+    }
+
+    private static MimeMessage mixedMessage(SendMail sender) throws Exception {
+        MimeMessage message = sender.buildMessage(ACCEPTED + "," + GREYLISTED + "," + REJECTED, null, null, "mixed", "body", null, false);
+        message.saveChanges();
+        return message;
+    }
+
+    private static SendMail sender(int port) {
+        return new SendMail("127.0.0.1", port, SENDER, PASSWORD, false, false);
+    }
+
+    private static long countSpooled(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".eml")).count();
+        }
+    }
+
+    // Servidor SMTP mínimo con la respuesta a RCPT TO según la dirección y el número de intento para ella
+    private static final class StubSmtpServer implements AutoCloseable {
+        private final ServerSocket serverSocket;
+        private final BiFunction<String, Integer, String> recipientReply;
+        private final AtomicInteger recipientAttempts = new AtomicInteger();
+        private final Map<String, AtomicInteger> attemptsByRecipient = new ConcurrentHashMap<>();
+        private final List<List<String>> deliveries = new ArrayList<>();
+
+        private StubSmtpServer(String recipientReply) throws IOException {
+            this((address, attempt) -> recipientReply);
+        }
+
+        private StubSmtpServer(BiFunction<String, Integer, String> recipientReply) throws IOException {
+            this.recipientReply = recipientReply;
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::accept, "stub-smtp");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private int getRecipientAttempts() {
+            return recipientAttempts.get();
+        }
+
+        // Destinatarios aceptados de cada mensaje recibido tras DATA
+        private List<List<String>> getDeliveries() {
+            synchronized (deliveries) {
+                return new ArrayList<>(deliveries);
+            }
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    Thread handler = new Thread(() -> handle(socket), "stub-smtp-session");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+                reply(out, "220 stub ESMTP");
+                List<String> accepted = new ArrayList<>();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                    switch (command) {
+                        case "RCPT" -> {
+                            recipientAttempts.incrementAndGet();
+                            String address = line.substring(line.indexOf(':') + 1).trim();
+                            int attempt = attemptsByRecipient.computeIfAbsent(address, key -> new AtomicInteger()).incrementAndGet();
+                            String response = recipientReply.apply(address, attempt);
+                            if (response.startsWith("2")) {
+                                accepted.add(address.replaceAll("[<>]", ""));
+                            }
+                            reply(out, response);
+                        }
+                        case "DATA" -> {
+                            reply(out, "354 go ahead");
+                            while ((line = in.readLine()) != null && !line.equals(".")) {
+                                // Descartar el contenido del mensaje
+                            }
+                            synchronized (deliveries) {
+                                deliveries.add(List.copyOf(accepted));
+                            }
+                            accepted.clear();
+                            reply(out, "250 ok");
+                        }
+                        case "RSET" -> {
+                            accepted.clear();
+                            reply(out, "250 ok");
+                        }
+                        case "QUIT" -> {
+                            reply(out, "221 bye");
+                            return;
+                        }
+                        default -> reply(out, "250 ok");
+                    }
+                }
+            } catch (IOException e) {
+                // Sesión cerrada por el cliente
+            }
+        }
+
+        private static void reply(Writer out, String reply) throws IOException {
+            out.write(reply + "\r\n");
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}